@@ -1,8 +1,6 @@
 package com.kircherelectronics.simplelinearacceleration;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.text.DecimalFormat;
 import java.text.FieldPosition;
@@ -11,14 +9,22 @@ import java.text.ParsePosition;
 import java.util.Calendar;
 import com.androidplot.xy.XYPlot;
 import com.kircherelectronics.simplelinearacceleration.dialog.SettingsDialog;
+import com.kircherelectronics.simplelinearacceleration.filter.Decimator;
 import com.kircherelectronics.simplelinearacceleration.filter.LPFWikipedia;
+import com.kircherelectronics.simplelinearacceleration.filter.LinearAccelerationConfig;
 import com.kircherelectronics.simplelinearacceleration.filter.LowPassFilter;
 import com.kircherelectronics.simplelinearacceleration.filter.MeanFilter;
 import com.kircherelectronics.simplelinearacceleration.filter.SimpleLinearAcceleration;
 import com.kircherelectronics.simplelinearacceleration.gauge.GaugeAccelerationHolo;
 import com.kircherelectronics.simplelinearacceleration.gauge.GaugeRotationHolo;
+import com.kircherelectronics.simplelinearacceleration.log.CsvLogger;
+import com.kircherelectronics.simplelinearacceleration.log.RecordingLogger;
+import com.kircherelectronics.simplelinearacceleration.log.SampleLogger;
 import com.kircherelectronics.simplelinearacceleration.plot.DynamicPlot;
 import com.kircherelectronics.simplelinearacceleration.plot.PlotColor;
+import com.kircherelectronics.simplelinearacceleration.recording.RecordingHeader;
+import com.kircherelectronics.simplelinearacceleration.recording.RecordingRecovery;
+import com.kircherelectronics.simplelinearacceleration.recording.SegmentedRecordingWriter;
 
 import android.graphics.Color;
 import android.hardware.Sensor;
@@ -75,16 +81,49 @@ import android.widget.Toast;
 public class SimpleLinearAccelerationActivity extends Activity implements
 		SensorEventListener, Runnable, OnTouchListener
 {
+	private static final String TAG = SimpleLinearAccelerationActivity.class
+			.getSimpleName();
 
-	// The size of the sample window that determines RMS Amplitude Noise
-	// (standard deviation)
-	private final static int SAMPLE_WINDOW = 50;
+	// The default rate in Hz of the plotted and logged output, one sample per
+	// update of the UI.
+	private static final float OUTPUT_RATE = 10;
 
-	// Indicate if the output should be logged to a .csv file
+	// The sensor rate in Hz assumed if the sensor does not report its
+	// fastest rate.
+	private static final float SENSOR_RATE = 50;
+
+	// The number of channels of the decimated output, the acceleration and
+	// the linear acceleration.
+	private static final int OUTPUT_CHANNELS = 6;
+
+	// The number of decimated samples held between updates of the UI.
+	private static final int OUTPUT_CAPACITY = 64;
+
+	// Indicate if the output should be logged to a file
 	private boolean logData = false;
 
+	// Indicate if the log should be a binary recording instead of a .csv file
+	private boolean logBinary = true;
+
+	// The size in MB and the duration in minutes a segment of a binary
+	// recording rolls over at.
+	private int logSegmentSize = 16;
+	private int logSegmentDuration = 10;
+
+	// The disk budget of a binary recording in MB, zero for none.
+	private int logBudget = 0;
+
+	// The interval in ms and the size in KB after which the samples of a
+	// binary recording are synced to storage, zero for no limit.
+	private int logCommitInterval = 1000;
+	private int logCommitSize = 0;
+
+	private boolean lpfAccelerationActive = false;
+
 	private boolean lpfAccelerationStaticAlpha = false;
 
+	private boolean meanFilterAccelerationActive = false;
+
 	// Decimal formats for the UI outputs
 	private DecimalFormat df;
 
@@ -120,10 +159,10 @@ public class SimpleLinearAccelerationActivity extends Activity implements
 
 	private float accelerationLPFAlpha;
 
-	private int accelerationMeanFilterWindow;
+	// The rate in Hz of the plotted and logged output.
+	private float outputRate;
 
-	// The generation of the log output
-	private int generation = 0;
+	private int accelerationMeanFilterWindow;
 
 	// Plot keys for the acceleration plot
 	private int plotAccelXAxisKey = 0;
@@ -145,8 +184,20 @@ public class SimpleLinearAccelerationActivity extends Activity implements
 	private int plotLinearAccelYAxisColor;
 	private int plotLinearAccelZAxisColor;
 
-	// Log output time stamp
-	private long logTime = 0;
+	// Low-pass filters and downsamples the acceleration and the linear
+	// acceleration to the output rate.
+	private Decimator decimator;
+
+	// The acceleration and linear acceleration of a sensor sample.
+	private float[] decimatorInput = new float[OUTPUT_CHANNELS];
+
+	// The decimated samples waiting for the next update of the UI.
+	private float[] output = new float[OUTPUT_CAPACITY * OUTPUT_CHANNELS];
+	private long[] outputTimestamps = new long[OUTPUT_CAPACITY];
+	private int outputCount = 0;
+
+	// The linear acceleration of the latest decimated sample.
+	private float[] linear = new float[3];
 
 	// Low-Pass Filters
 	private SimpleLinearAcceleration simpleLinearAcceleration;
@@ -173,24 +224,14 @@ public class SimpleLinearAccelerationActivity extends Activity implements
 	private String plotLinearAccelYAxisTitle = "WY";
 	private String plotLinearAccelZAxisTitle = "WZ";
 
-	// Output log
-	private String log;
+	// Output log, written on its own thread
+	private SampleLogger log;
 
 	// Acceleration UI outputs
 	private TextView xAxis;
 	private TextView yAxis;
 	private TextView zAxis;
 
-	/**
-	 * Get the sample window size for the standard deviation.
-	 * 
-	 * @return Sample window size for the standard deviation.
-	 */
-	public static int getSampleWindow()
-	{
-		return SAMPLE_WINDOW;
-	}
-
 	@Override
 	public void onCreate(Bundle savedInstanceState)
 	{
@@ -230,8 +271,8 @@ public class SimpleLinearAccelerationActivity extends Activity implements
 		initFilters();
 
 		// Create the low-pass filters
-		simpleLinearAcceleration = new SimpleLinearAcceleration(this,
-				lpfAcceleration, meanFilterAcceleration);
+		simpleLinearAcceleration = new SimpleLinearAcceleration(
+				createConfig(), lpfAcceleration, meanFilterAcceleration);
 
 		// Initialize the plots
 		initColor();
@@ -239,6 +280,8 @@ public class SimpleLinearAccelerationActivity extends Activity implements
 		initGauges();
 
 		handler = new Handler();
+
+		recoverLogs();
 	}
 
 	@Override
@@ -250,7 +293,7 @@ public class SimpleLinearAccelerationActivity extends Activity implements
 
 		if (logData)
 		{
-			writeLogToFile();
+			stopDataLog();
 		}
 
 		handler.removeCallbacks(this);
@@ -263,11 +306,22 @@ public class SimpleLinearAccelerationActivity extends Activity implements
 
 		readPrefs();
 
+		Sensor sensor = sensorManager
+				.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+
+		// The sensor runs at its fastest rate, the minimum delay.
+		float sensorRate = (sensor.getMinDelay() > 0) ? 1000000f / sensor
+				.getMinDelay() : SENSOR_RATE;
+
+		decimator = new Decimator(OUTPUT_CHANNELS, Decimator.getFactor(
+				sensorRate, outputRate));
+
+		outputCount = 0;
+
 		handler.post(this);
 
 		// Register for sensor updates.
-		sensorManager.registerListener(this,
-				sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER),
+		sensorManager.registerListener(this, sensor,
 				SensorManager.SENSOR_DELAY_FASTEST);
 	}
 
@@ -288,7 +342,28 @@ public class SimpleLinearAccelerationActivity extends Activity implements
 					event.values.length);
 		}
 
-		linearAcceleration = simpleLinearAcceleration.addSamples(acceleration);
+		linearAcceleration = simpleLinearAcceleration.addSamples(acceleration,
+				event.timestamp);
+
+		System.arraycopy(acceleration, 0, decimatorInput, 0, 3);
+		System.arraycopy(linearAcceleration, 0, decimatorInput, 3, 3);
+
+		// Log every sample at the sensor rate.
+		if (logData)
+		{
+			log.log(event.timestamp, decimatorInput, 0);
+		}
+
+		// The sensor events and the UI updates both run on the main thread.
+		// If the UI falls behind, the samples that do not fit are dropped.
+		if (decimator.addSample(decimatorInput, event.timestamp)
+				&& outputCount < OUTPUT_CAPACITY)
+		{
+			System.arraycopy(decimator.getOutput(), 0, output, outputCount
+					* OUTPUT_CHANNELS, OUTPUT_CHANNELS);
+
+			outputTimestamps[outputCount++] = decimator.getTimestamp();
+		}
 	}
 
 	@Override
@@ -376,7 +451,8 @@ public class SimpleLinearAccelerationActivity extends Activity implements
 		handler.postDelayed(this, 100);
 
 		plotData();
-		logData();
+
+		outputCount = 0;
 	}
 
 	/**
@@ -422,6 +498,26 @@ public class SimpleLinearAccelerationActivity extends Activity implements
 		meanFilterAcceleration.setWindowSize(accelerationMeanFilterWindow);
 	}
 
+	/**
+	 * Create the configuration of the linear acceleration pipeline from the
+	 * user preferences.
+	 * 
+	 * @return The configuration of the pipeline.
+	 */
+	private LinearAccelerationConfig createConfig()
+	{
+		LinearAccelerationConfig config = new LinearAccelerationConfig();
+
+		config.setLpfAccelerationActive(lpfAccelerationActive);
+		config.setLpfAccelerationStaticAlpha(lpfAccelerationStaticAlpha);
+		config.setLpfAccelerationAlpha(accelerationLPFAlpha);
+		config.setMeanFilterAccelerationActive(meanFilterAccelerationActive);
+		config.setMeanFilterAccelerationWindow(accelerationMeanFilterWindow);
+		config.setGravity(SensorManager.GRAVITY_EARTH);
+
+		return config;
+	}
+
 	/**
 	 * Create the RMS Noise bar chart.
 	 */
@@ -490,18 +586,12 @@ public class SimpleLinearAccelerationActivity extends Activity implements
 	}
 
 	/**
-	 * Begin logging data to an external .csv file.
+	 * Begin logging data to an external binary recording or .csv file.
 	 */
 	private void startDataLog()
 	{
 		if (logData == false)
 		{
-			CharSequence text = "Logging Data";
-			int duration = Toast.LENGTH_SHORT;
-
-			Toast toast = Toast.makeText(this, text, duration);
-			toast.show();
-
 			String headers = "Generation" + ",";
 
 			headers += "Timestamp" + ",";
@@ -518,7 +608,41 @@ public class SimpleLinearAccelerationActivity extends Activity implements
 
 			headers += this.plotLinearAccelZAxisTitle + ",";
 
-			log = headers + "\n";
+			try
+			{
+				if (logBinary)
+				{
+					log = new RecordingLogger(createLogFile(""),
+							createRecordingHeader(),
+							(long) logSegmentSize << 20,
+							logSegmentDuration * 60000000000L,
+							(logBudget > 0) ? (long) logBudget << 20
+									: SegmentedRecordingWriter.UNLIMITED,
+							logCommitInterval * 1000000L,
+							(long) logCommitSize << 10);
+				}
+				else
+				{
+					log = new CsvLogger(createLogFile(".csv"), headers,
+							OUTPUT_CHANNELS);
+				}
+			}
+			catch (IOException e)
+			{
+				CharSequence text = e.toString();
+				int duration = Toast.LENGTH_SHORT;
+
+				Toast toast = Toast.makeText(this, text, duration);
+				toast.show();
+
+				return;
+			}
+
+			CharSequence text = "Logging Data";
+			int duration = Toast.LENGTH_SHORT;
+
+			Toast toast = Toast.makeText(this, text, duration);
+			toast.show();
 
 			iconLogger.setVisibility(View.VISIBLE);
 
@@ -526,140 +650,256 @@ public class SimpleLinearAccelerationActivity extends Activity implements
 		}
 		else
 		{
-			iconLogger.setVisibility(View.INVISIBLE);
+			stopDataLog();
+		}
+	}
+
+	/**
+	 * Stop logging data. The log finishes writing on its own thread, and
+	 * whether it was saved is shown once it has.
+	 */
+	private void stopDataLog()
+	{
+		iconLogger.setVisibility(View.INVISIBLE);
+
+		logData = false;
+
+		final SampleLogger log = this.log;
+
+		log.close();
 
-			logData = false;
-			writeLogToFile();
+		new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					log.join();
+				}
+				catch (InterruptedException e)
+				{
+					return;
+				}
+
+				handler.post(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						logClosed(log);
+					}
+				});
+			}
+		}, "LogClose").start();
+	}
+
+	/**
+	 * Show whether a closed log was saved, or the error that stopped it, and
+	 * make the saved log visible.
+	 * 
+	 * @param log
+	 *            The log, finished writing.
+	 */
+	private void logClosed(SampleLogger log)
+	{
+		CharSequence text = "Log Saved";
+		int duration = Toast.LENGTH_SHORT;
+
+		if (log.getError() != null)
+		{
+			Log.e(TAG, "Cannot write the log", log.getError());
+
+			text = "Log Not Saved, " + log.getError();
+			duration = Toast.LENGTH_LONG;
+		}
+		else if (log.getOverflows() > 0)
+		{
+			text = "Log Saved, " + log.getOverflows() + " of "
+					+ (log.getSamples() + log.getOverflows())
+					+ " samples dropped";
 		}
+
+		Toast toast = Toast.makeText(getApplicationContext(), text, duration);
+		toast.show();
+
+		// Update the MediaStore so we can view the file without rebooting.
+		// Note that it appears that the ACTION_MEDIA_MOUNTED approach is
+		// now blocked for non-system apps on Android 4.4.
+		MediaScannerConnection.scanFile(getApplicationContext(), new String[]
+		{ "file://" + Environment.getExternalStorageDirectory() }, null,
+				new MediaScannerConnection.OnScanCompletedListener()
+				{
+					@Override
+					public void onScanCompleted(final String path,
+							final Uri uri)
+					{
+
+					}
+				});
 	}
 
 	/**
-	 * Plot the output data in the UI.
+	 * Plot the decimated output data in the UI.
 	 */
 	private void plotData()
 	{
-		g[0] = acceleration[0] / SensorManager.GRAVITY_EARTH;
-		g[1] = acceleration[1] / SensorManager.GRAVITY_EARTH;
-		g[2] = acceleration[2] / SensorManager.GRAVITY_EARTH;
-
-		dynamicPlot.setData(g[0], plotAccelXAxisKey);
-		dynamicPlot.setData(g[1], plotAccelYAxisKey);
-		dynamicPlot.setData(g[2], plotAccelZAxisKey);
+		if (outputCount == 0)
+		{
+			return;
+		}
 
-		dynamicPlot.setData(linearAcceleration[0], plotLinearAccelXAxisKey);
-		dynamicPlot.setData(linearAcceleration[1], plotLinearAccelYAxisKey);
-		dynamicPlot.setData(linearAcceleration[2], plotLinearAccelZAxisKey);
+		for (int i = 0, j = 0; i < outputCount; i++, j += OUTPUT_CHANNELS)
+		{
+			dynamicPlot.setData(output[j] / SensorManager.GRAVITY_EARTH,
+					plotAccelXAxisKey);
+			dynamicPlot.setData(output[j + 1] / SensorManager.GRAVITY_EARTH,
+					plotAccelYAxisKey);
+			dynamicPlot.setData(output[j + 2] / SensorManager.GRAVITY_EARTH,
+					plotAccelZAxisKey);
+
+			dynamicPlot.setData(output[j + 3], plotLinearAccelXAxisKey);
+			dynamicPlot.setData(output[j + 4], plotLinearAccelYAxisKey);
+			dynamicPlot.setData(output[j + 5], plotLinearAccelZAxisKey);
+		}
 
 		dynamicPlot.draw();
 
+		// The latest decimated sample.
+		int last = (outputCount - 1) * OUTPUT_CHANNELS;
+
+		g[0] = output[last] / SensorManager.GRAVITY_EARTH;
+		g[1] = output[last + 1] / SensorManager.GRAVITY_EARTH;
+		g[2] = output[last + 2] / SensorManager.GRAVITY_EARTH;
+
+		linear[0] = output[last + 3];
+		linear[1] = output[last + 4];
+		linear[2] = output[last + 5];
+
 		// Update the view with the new acceleration data
 		xAxis.setText(df.format(g[0]));
 		yAxis.setText(df.format(g[1]));
 		zAxis.setText(df.format(g[2]));
 
 		gaugeAccelerationTilt.updateRotation(g);
-		gaugeLinearAccelTilt.updateRotation(linearAcceleration);
+		gaugeLinearAccelTilt.updateRotation(linear);
 
-		gaugeAcceleration.updatePoint(acceleration[0], acceleration[1],
+		gaugeAcceleration.updatePoint(output[last], output[last + 1],
 				Color.parseColor("#33b5e5"));
 
-		gaugeLinearAcceleration.updatePoint(linearAcceleration[0]
-				* SensorManager.GRAVITY_EARTH, linearAcceleration[1]
+		gaugeLinearAcceleration.updatePoint(linear[0]
+				* SensorManager.GRAVITY_EARTH, linear[1]
 				* SensorManager.GRAVITY_EARTH, Color.parseColor("#33b5e5"));
 	}
 
 	/**
-	 * Log output data to an external .csv file.
+	 * Create the header of a new recording with the sensor and filter
+	 * metadata.
 	 */
-	private void logData()
+	private RecordingHeader createRecordingHeader()
 	{
-		if (logData)
-		{
-			if (generation == 0)
-			{
-				logTime = System.currentTimeMillis();
-			}
+		RecordingHeader header = new RecordingHeader();
 
-			log += System.getProperty("line.separator");
-			log += generation++ + ",";
-			log += System.currentTimeMillis() - logTime + ",";
+		header.setEncoding(RecordingHeader.ENCODING_GORILLA);
 
-			log += acceleration[0] + ",";
-			log += acceleration[1] + ",";
-			log += acceleration[2] + ",";
+		Sensor sensor = sensorManager
+				.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
 
-			log += linearAcceleration[0] + ",";
-			log += linearAcceleration[1] + ",";
-			log += linearAcceleration[2] + ",";
-		}
+		header.put("columns", plotAccelXAxisTitle + "," + plotAccelYAxisTitle
+				+ "," + plotAccelZAxisTitle + "," + plotLinearAccelXAxisTitle
+				+ "," + plotLinearAccelYAxisTitle + ","
+				+ plotLinearAccelZAxisTitle);
+		header.put("start_time", String.valueOf(System.currentTimeMillis()));
+
+		header.put("sensor.name", sensor.getName());
+		header.put("sensor.vendor", sensor.getVendor());
+		header.put("sensor.resolution", String.valueOf(sensor.getResolution()));
+		header.put("sensor.maximum_range",
+				String.valueOf(sensor.getMaximumRange()));
+		header.put("sensor.min_delay", String.valueOf(sensor.getMinDelay()));
+
+		header.putConfig(createConfig());
+
+		return header;
 	}
 
 	/**
-	 * Write the logged data out to a persisted file.
+	 * Create the file for a new log.
+	 * 
+	 * @param extension
+	 *            The file extension of the log, empty for the directory of a
+	 *            session.
 	 */
-	private void writeLogToFile()
+	private File createLogFile(String extension)
 	{
 		Calendar c = Calendar.getInstance();
 		String filename = "SimpleLinearAcceleration-" + c.get(Calendar.YEAR)
 				+ "-" + c.get(Calendar.DAY_OF_WEEK_IN_MONTH) + "-"
 				+ c.get(Calendar.HOUR) + "-" + c.get(Calendar.HOUR) + "-"
 				+ c.get(Calendar.MINUTE) + "-" + c.get(Calendar.SECOND)
-				+ ".csv";
+				+ extension;
 
-		File dir = new File(Environment.getExternalStorageDirectory()
-				+ File.separator + "LinearAcceleration" + File.separator
-				+ "Logs" + File.separator + "Acceleration");
+		File dir = getLogDirectory();
 		if (!dir.exists())
 		{
 			dir.mkdirs();
 		}
 
-		File file = new File(dir, filename);
+		return new File(dir, filename);
+	}
 
-		FileOutputStream fos;
-		byte[] data = log.getBytes();
-		try
-		{
-			fos = new FileOutputStream(file);
-			fos.write(data);
-			fos.flush();
-			fos.close();
+	/**
+	 * Get the directory of the logs.
+	 */
+	private File getLogDirectory()
+	{
+		return new File(Environment.getExternalStorageDirectory()
+				+ File.separator + "LinearAcceleration" + File.separator
+				+ "Logs" + File.separator + "Acceleration");
+	}
 
-			CharSequence text = "Log Saved";
-			int duration = Toast.LENGTH_SHORT;
+	/**
+	 * Recover the binary recordings that were not closed because the
+	 * application was killed while logging. The logs present now are
+	 * recovered on a thread of their own, so a log started meanwhile is not
+	 * touched. A log whose writer is still closing it, after the activity was
+	 * recreated, is locked by the writer and skipped by RecordingRecovery.
+	 */
+	private void recoverLogs()
+	{
+		final File[] files = getLogDirectory().listFiles();
 
-			Toast toast = Toast.makeText(this, text, duration);
-			toast.show();
-		}
-		catch (FileNotFoundException e)
+		if (files == null)
 		{
-			CharSequence text = e.toString();
-			int duration = Toast.LENGTH_SHORT;
-
-			Toast toast = Toast.makeText(this, text, duration);
-			toast.show();
+			return;
 		}
-		catch (IOException e)
-		{
-			// handle exception
-		}
-		finally
+
+		new Thread(new Runnable()
 		{
-			// Update the MediaStore so we can view the file without rebooting.
-			// Note that it appears that the ACTION_MEDIA_MOUNTED approach is
-			// now blocked for non-system apps on Android 4.4.
-			MediaScannerConnection.scanFile(this, new String[]
-			{ "file://" + Environment.getExternalStorageDirectory() }, null,
-					new MediaScannerConnection.OnScanCompletedListener()
+			@Override
+			public void run()
+			{
+				for (File file : files)
+				{
+					try
 					{
-						@Override
-						public void onScanCompleted(final String path,
-								final Uri uri)
+						if (file.isDirectory())
 						{
-						
+							RecordingRecovery.recoverAll(file);
 						}
-					});
-		}
+						else if (file.getName().endsWith(
+								RecordingHeader.EXTENSION))
+						{
+							RecordingRecovery.recover(file);
+						}
+					}
+					catch (IOException e)
+					{
+						Log.w(TAG, "Cannot recover " + file, e);
+					}
+				}
+			}
+		}, "RecordingRecovery").start();
 	}
 
 	/**
@@ -692,5 +932,25 @@ public class SimpleLinearAccelerationActivity extends Activity implements
 	
 		this.accelerationMeanFilterWindow = prefs.getInt(
 				"mean_filter_acceleration_window_value", 10);
+
+		this.lpfAccelerationActive = prefs
+				.getBoolean("lpf_acceleration", false);
+
+		this.meanFilterAccelerationActive = prefs.getBoolean(
+				"mean_filter_acceleration", false);
+
+		this.outputRate = prefs.getFloat("output_rate", OUTPUT_RATE);
+
+		this.logBinary = prefs.getBoolean("log_binary", true);
+
+		this.logSegmentSize = prefs.getInt("log_segment_size", 16);
+
+		this.logSegmentDuration = prefs.getInt("log_segment_duration", 10);
+
+		this.logBudget = prefs.getInt("log_budget", 0);
+
+		this.logCommitInterval = prefs.getInt("log_commit_interval", 1000);
+
+		this.logCommitSize = prefs.getInt("log_commit_size", 0);
 	}
 }
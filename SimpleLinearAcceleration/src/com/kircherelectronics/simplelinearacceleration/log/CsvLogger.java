@@ -0,0 +1,173 @@
+package com.kircherelectronics.simplelinearacceleration.log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Logs samples to a .csv log. The writer thread formats the rows into a
+ * reusable byte buffer and writes the buffer to the file through a
+ * FileChannel in large sequential chunks.
+ * 
+ * The Generation column is the sequence number of the sample, so a dropped
+ * sample leaves a gap in it. The Timestamp column is in milliseconds since the
+ * first row.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class CsvLogger extends SampleLogger
+{
+	private static final long NANOS_PER_MILLI = 1000000L;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	// The longest Float.toString() and Long.toString() of a column.
+	private static final int MAX_COLUMN_LENGTH = 32;
+
+	private static final String LINE_SEPARATOR = System
+			.getProperty("line.separator");
+
+	private int columns;
+
+	// The timestamp of the first row in nanoseconds.
+	private long firstTimestamp;
+
+	private boolean rows = false;
+
+	private FileOutputStream stream;
+
+	private FileChannel channel;
+
+	private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+	private StringBuilder row;
+
+	/**
+	 * Create a .csv log and start its writer thread.
+	 * 
+	 * @param file
+	 *            The .csv log.
+	 * @param header
+	 *            The header row, without a line separator.
+	 * @param columns
+	 *            The number of values in a row after the generation and the
+	 *            timestamp.
+	 * @throws IOException
+	 *             If the log cannot be created.
+	 */
+	public CsvLogger(File file, String header, int columns) throws IOException
+	{
+		super(columns);
+
+		this.columns = columns;
+
+		row = new StringBuilder((columns + 2) * MAX_COLUMN_LENGTH);
+
+		stream = new FileOutputStream(file);
+		channel = stream.getChannel();
+
+		row.append(header);
+
+		put(row);
+
+		start();
+	}
+
+	@Override
+	protected void write(long[] sequences, long[] timestamps, float[] values,
+			int length) throws IOException
+	{
+		if (!rows)
+		{
+			firstTimestamp = timestamps[0];
+
+			rows = true;
+		}
+
+		for (int i = 0, j = 0; i < length; i++)
+		{
+			row.setLength(0);
+
+			row.append(LINE_SEPARATOR);
+			row.append(sequences[i]).append(',');
+			row.append((timestamps[i] - firstTimestamp) / NANOS_PER_MILLI)
+					.append(',');
+
+			for (int k = 0; k < columns; k++, j++)
+			{
+				row.append(values[j]).append(',');
+			}
+
+			put(row);
+		}
+	}
+
+	@Override
+	protected void finish(boolean flush) throws IOException
+	{
+		try
+		{
+			if (flush)
+			{
+				flush();
+			}
+		}
+		finally
+		{
+			channel.close();
+			stream.close();
+		}
+	}
+
+	/**
+	 * Copy a row into the buffer, writing the buffer out first if it is full.
+	 */
+	private void put(StringBuilder row) throws IOException
+	{
+		if (buffer.remaining() < row.length())
+		{
+			flush();
+		}
+
+		for (int i = 0; i < row.length(); i++)
+		{
+			buffer.put((byte) row.charAt(i));
+		}
+	}
+
+	/**
+	 * Write the buffer to the file.
+	 */
+	private void flush() throws IOException
+	{
+		buffer.flip();
+
+		while (buffer.hasRemaining())
+		{
+			channel.write(buffer);
+		}
+
+		buffer.clear();
+	}
+}
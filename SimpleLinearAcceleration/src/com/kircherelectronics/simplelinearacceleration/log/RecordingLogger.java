@@ -0,0 +1,99 @@
+package com.kircherelectronics.simplelinearacceleration.log;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.kircherelectronics.simplelinearacceleration.recording.RecordingHeader;
+import com.kircherelectronics.simplelinearacceleration.recording.SegmentedRecordingWriter;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Logs samples to a binary recording, see RecordingHeader for the format. The
+ * writer thread stores each batch column by column into the current block and
+ * appends whole blocks to the file, so no value is formatted as text. The
+ * recording is a session directory of segments that roll over by size or
+ * time within a disk budget, see SegmentedRecordingWriter. The samples are
+ * committed to storage by the commit policy of RecordingWriter, so a crash
+ * loses at most the samples since the last commit. Samples dropped because
+ * the writer thread fell behind leave gaps in the sequence numbers, which are
+ * recorded as dropped counts in the blocks, see RecordingWriter.drop(). The
+ * ExportCsv tool converts a session to a .csv log with the same gaps in its
+ * Generation column as CsvLogger writes.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class RecordingLogger extends SampleLogger
+{
+	private SegmentedRecordingWriter writer;
+
+	/**
+	 * Create a session and start its writer thread.
+	 * 
+	 * @param directory
+	 *            The directory of the session.
+	 * @param header
+	 *            The header of each segment, with the sensor and filter
+	 *            metadata.
+	 * @param segmentSize
+	 *            The size in bytes a segment is closed at.
+	 * @param segmentDuration
+	 *            The time in nanoseconds a segment is closed after.
+	 * @param budget
+	 *            The largest total size in bytes of the segments, the oldest
+	 *            are deleted to stay within it.
+	 * @param commitInterval
+	 *            The time in nanoseconds after which the samples are synced
+	 *            to storage, zero for no limit.
+	 * @param commitSize
+	 *            The size in bytes of uncompressed samples after which they
+	 *            are synced to storage, zero for no limit.
+	 * @throws IOException
+	 *             If the session cannot be created.
+	 */
+	public RecordingLogger(File directory, RecordingHeader header,
+			long segmentSize, long segmentDuration, long budget,
+			long commitInterval, long commitSize) throws IOException
+	{
+		super(header.getColumns());
+
+		writer = new SegmentedRecordingWriter(directory, header, segmentSize,
+				segmentDuration, budget);
+
+		writer.setCommitPolicy(commitInterval, commitSize);
+
+		start();
+	}
+
+	@Override
+	protected void write(long[] sequences, long[] timestamps, float[] values,
+			int length) throws IOException
+	{
+		writer.write(sequences, timestamps, values, length);
+	}
+
+	@Override
+	protected void finish(boolean flush) throws IOException
+	{
+		// The partial block is written even after an error, the complete
+		// blocks and segments before it are still readable.
+		writer.close();
+	}
+}
@@ -0,0 +1,249 @@
+package com.kircherelectronics.simplelinearacceleration.log;
+
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Logs samples on a dedicated writer thread, so the thread producing the
+ * samples never formats or writes them. Samples are offered to a preallocated
+ * SampleRing without locks or allocation, so a sensor callback can log every
+ * sample at the full sensor rate. The writer thread drains the ring in
+ * batches and hands them to the subclass, which writes them to its file. The
+ * memory used is constant however long the recording runs.
+ * 
+ * A sample dropped because the writer thread fell behind by the whole ring is
+ * counted by getOverflows(). A write error stops the log; the remaining
+ * samples are discarded and the error is available from getError().
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public abstract class SampleLogger
+{
+	// The number of samples the ring holds, 20 seconds at 200 Hz.
+	private static final int RING_CAPACITY = 4096;
+
+	// The largest number of samples drained at a time.
+	private static final int BATCH_SIZE = 256;
+
+	// How long the writer thread sleeps when the ring is empty.
+	private static final long IDLE_NANOS = 10000000L;
+
+	private SampleRing ring;
+
+	// The batch drained from the ring.
+	private long[] sequences = new long[BATCH_SIZE];
+	private long[] timestamps = new long[BATCH_SIZE];
+	private float[] values;
+
+	private Thread writer;
+
+	private volatile IOException error;
+
+	private volatile boolean closed = false;
+
+	/**
+	 * Create a log.
+	 * 
+	 * @param columns
+	 *            The number of values in a sample.
+	 */
+	protected SampleLogger(int columns)
+	{
+		ring = new SampleRing(RING_CAPACITY, columns);
+
+		values = new float[BATCH_SIZE * columns];
+	}
+
+	/**
+	 * Start the writer thread, called by the subclass once its file is open.
+	 */
+	protected void start()
+	{
+		writer = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				drain();
+			}
+		}, getClass().getSimpleName());
+
+		writer.start();
+	}
+
+	/**
+	 * Write a batch of samples, called on the writer thread.
+	 * 
+	 * @param sequences
+	 *            The sequence number of each sample, with gaps where samples
+	 *            were dropped.
+	 * @param timestamps
+	 *            The sensor timestamp of each sample in nanoseconds.
+	 * @param values
+	 *            The interleaved values of the samples.
+	 * @param length
+	 *            The number of samples in the batch.
+	 * @throws IOException
+	 *             If the samples cannot be written.
+	 */
+	protected abstract void write(long[] sequences, long[] timestamps,
+			float[] values, int length) throws IOException;
+
+	/**
+	 * Write anything buffered and close the file, called on the writer thread
+	 * once the log is closed, also after an error.
+	 * 
+	 * @param flush
+	 *            True if buffered samples should be written, false after an
+	 *            error.
+	 * @throws IOException
+	 *             If the file cannot be written or closed.
+	 */
+	protected abstract void finish(boolean flush) throws IOException;
+
+	/**
+	 * Add a sample to the log, only called from one thread. This does not
+	 * lock, allocate or wait for the writer thread.
+	 * 
+	 * @param timestamp
+	 *            The sensor timestamp of the sample in nanoseconds.
+	 * @param values
+	 *            The array holding the values of the sample.
+	 * @param offset
+	 *            The offset of the first value of the sample in the array.
+	 * @return True if the sample was added, false if it was dropped.
+	 */
+	public boolean log(long timestamp, float[] values, int offset)
+	{
+		if (closed)
+		{
+			return false;
+		}
+
+		return ring.offer(timestamp, values, offset);
+	}
+
+	/**
+	 * Close the log. The samples still in the ring are written and the file
+	 * is closed on the writer thread, this returns without waiting for it.
+	 */
+	public void close()
+	{
+		if (closed)
+		{
+			return;
+		}
+
+		closed = true;
+
+		LockSupport.unpark(writer);
+	}
+
+	/**
+	 * Wait for the writer thread to finish writing a closed log.
+	 * 
+	 * @throws InterruptedException
+	 *             If the wait is interrupted.
+	 */
+	public void join() throws InterruptedException
+	{
+		writer.join();
+	}
+
+	/**
+	 * Get the error that stopped the log.
+	 * 
+	 * @return The error, or null if there was none.
+	 */
+	public IOException getError()
+	{
+		return error;
+	}
+
+	/**
+	 * Get the number of samples dropped because the writer thread fell
+	 * behind.
+	 */
+	public long getOverflows()
+	{
+		return ring.getOverflows();
+	}
+
+	/**
+	 * Get the number of samples added to the log.
+	 */
+	public long getSamples()
+	{
+		return ring.getSamples();
+	}
+
+	/**
+	 * The writer thread, drain and write batches until the log is closed and
+	 * the ring is empty.
+	 */
+	private void drain()
+	{
+		while (true)
+		{
+			// Read the flag before draining so no sample offered before the
+			// close is missed.
+			boolean closing = closed;
+
+			int length = ring.drain(sequences, timestamps, values, BATCH_SIZE);
+
+			if (length > 0)
+			{
+				if (error == null)
+				{
+					try
+					{
+						write(sequences, timestamps, values, length);
+					}
+					catch (IOException e)
+					{
+						error = e;
+					}
+				}
+			}
+			else if (closing)
+			{
+				break;
+			}
+			else
+			{
+				LockSupport.parkNanos(IDLE_NANOS);
+			}
+		}
+
+		try
+		{
+			finish(error == null);
+		}
+		catch (IOException e)
+		{
+			if (error == null)
+			{
+				error = e;
+			}
+		}
+	}
+}
@@ -0,0 +1,212 @@
+package com.kircherelectronics.simplelinearacceleration.log;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * A preallocated single-producer, single-consumer ring of samples, each a
+ * timestamp and a fixed number of values. One thread offers samples and one
+ * other thread drains them. Neither locks nor allocates: each side owns its
+ * index, publishes it with an ordered write after copying the samples and
+ * reads the index of the other side only when its cached copy says the ring
+ * is full or empty.
+ * 
+ * A sample offered to a full ring is dropped and counted rather than waiting
+ * for the consumer, so the producer never blocks. Every offered sample gets
+ * the next sequence number, dropped or not, so gaps in the sequence numbers
+ * of the drained samples show where samples were dropped.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class SampleRing
+{
+	private int columns;
+
+	private int mask;
+
+	// The sequence number, timestamp and values of each slot.
+	private long[] sequences;
+	private long[] timestamps;
+	private float[] values;
+
+	// The number of samples written, written by the producer only.
+	private AtomicLong tail = new AtomicLong();
+
+	// The number of samples read, written by the consumer only.
+	private AtomicLong head = new AtomicLong();
+
+	// The number of samples dropped, written by the producer only.
+	private AtomicLong overflows = new AtomicLong();
+
+	// The producer's copy of head.
+	private long headCached = 0;
+
+	// The consumer's copy of tail.
+	private long tailCached = 0;
+
+	// The sequence number of the next sample offered.
+	private long sequence = 0;
+
+	/**
+	 * Create a ring.
+	 * 
+	 * @param capacity
+	 *            The number of samples the ring holds, rounded up to a power
+	 *            of two.
+	 * @param columns
+	 *            The number of values in a sample.
+	 */
+	public SampleRing(int capacity, int columns)
+	{
+		capacity = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+
+		this.columns = columns;
+
+		mask = capacity - 1;
+
+		sequences = new long[capacity];
+		timestamps = new long[capacity];
+		values = new float[capacity * columns];
+	}
+
+	/**
+	 * Offer a sample, only called from the producing thread.
+	 * 
+	 * @param timestamp
+	 *            The timestamp of the sample.
+	 * @param values
+	 *            The array holding the values of the sample.
+	 * @param offset
+	 *            The offset of the first value of the sample in the array.
+	 * @return True if the sample was added, false if the ring was full and
+	 *         the sample was dropped.
+	 */
+	public boolean offer(long timestamp, float[] values, int offset)
+	{
+		long t = tail.get();
+
+		if (t - headCached > mask)
+		{
+			headCached = head.get();
+
+			if (t - headCached > mask)
+			{
+				sequence++;
+
+				overflows.lazySet(overflows.get() + 1);
+
+				return false;
+			}
+		}
+
+		int slot = (int) t & mask;
+
+		sequences[slot] = sequence++;
+		timestamps[slot] = timestamp;
+
+		System.arraycopy(values, offset, this.values, slot * columns, columns);
+
+		// Publish the sample after it has been written.
+		tail.lazySet(t + 1);
+
+		return true;
+	}
+
+	/**
+	 * Drain up to a batch of samples, only called from the consuming thread.
+	 * 
+	 * @param sequences
+	 *            The sequence number of each sample drained.
+	 * @param timestamps
+	 *            The timestamp of each sample drained.
+	 * @param values
+	 *            The interleaved values of the samples drained.
+	 * @param max
+	 *            The largest number of samples to drain.
+	 * @return The number of samples drained, zero if the ring is empty.
+	 */
+	public int drain(long[] sequences, long[] timestamps, float[] values,
+			int max)
+	{
+		long h = head.get();
+
+		if (tailCached - h < max)
+		{
+			tailCached = tail.get();
+		}
+
+		int length = (int) Math.min(tailCached - h, max);
+
+		for (int i = 0; i < length;)
+		{
+			int slot = (int) (h + i) & mask;
+
+			// Copy up to the end of the ring in one go.
+			int run = Math.min(length - i, mask + 1 - slot);
+
+			System.arraycopy(this.sequences, slot, sequences, i, run);
+			System.arraycopy(this.timestamps, slot, timestamps, i, run);
+			System.arraycopy(this.values, slot * columns, values, i * columns,
+					run * columns);
+
+			i += run;
+		}
+
+		// Release the slots after they have been read.
+		head.lazySet(h + length);
+
+		return length;
+	}
+
+	/**
+	 * Indicate if the ring has no samples to drain.
+	 */
+	public boolean isEmpty()
+	{
+		return head.get() == tail.get();
+	}
+
+	/**
+	 * Get the number of samples dropped because the ring was full.
+	 */
+	public long getOverflows()
+	{
+		return overflows.get();
+	}
+
+	/**
+	 * Get the number of samples added to the ring.
+	 */
+	public long getSamples()
+	{
+		return tail.get();
+	}
+
+	public int getCapacity()
+	{
+		return mask + 1;
+	}
+
+	public int getColumns()
+	{
+		return columns;
+	}
+}
@@ -0,0 +1,258 @@
+package com.kircherelectronics.simplelinearacceleration.spectrum;
+
+import org.apache.commons.math3.transform.DftNormalization;
+import org.apache.commons.math3.transform.FastFourierTransformer;
+import org.apache.commons.math3.transform.TransformType;
+
+import com.kircherelectronics.simplelinearacceleration.filter.FilterStage;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Computes the full amplitude spectrum of the x, y and z axes over the last
+ * size samples every hop samples. Added to the end of a FilterChain it
+ * observes the linear acceleration and passes the samples through unchanged.
+ * Where SlidingDFT tracks a few bins on every sample, this gives every bin at
+ * the hop rate.
+ * 
+ * The samples are kept in a ring, so no more than one window is buffered.
+ * Each spectrum applies a Hann window and runs the in-place FFT of
+ * commons-math3 over preallocated arrays, O(size log size) per hop and
+ * without allocation.
+ * 
+ * @author Kaleb
+ * @see http://en.wikipedia.org/wiki/Short-time_Fourier_transform
+ * @version %I%, %G%
+ */
+public class SpectrumAnalyzer implements FilterStage
+{
+	private static final int AXES = 3;
+
+	private int size;
+
+	private int hop;
+
+	// The number of samples seen, up to the window size.
+	private int count = 0;
+
+	// The number of samples since the last spectrum.
+	private int sinceHop = 0;
+
+	// The ring index the next sample is written to.
+	private int position = 0;
+
+	// The number of spectra computed.
+	private long spectra = 0;
+
+	// The last size samples laid out as [sample][axis].
+	private float[] ring;
+
+	// The timestamp of each sample in the ring in nanoseconds.
+	private long[] timestamps;
+
+	private double[] window;
+
+	// The sum of the window, the gain of the window at DC.
+	private double windowGain;
+
+	// The real and imaginary parts the FFT runs in place on.
+	private double[][] data;
+
+	// The amplitude of each bin, zero to size / 2, of each axis.
+	private float[][] amplitudes;
+
+	private long timestamp;
+
+	private double sampleRate;
+
+	/**
+	 * Create a spectrum analyzer.
+	 * 
+	 * @param size
+	 *            The number of samples in the window, rounded up to a power of
+	 *            two.
+	 * @param hop
+	 *            The number of samples between spectra, clamped to 1 to the
+	 *            window size.
+	 */
+	public SpectrumAnalyzer(int size, int hop)
+	{
+		this.size = Integer.highestOneBit(Math.max(2, size) - 1) << 1;
+		this.hop = Math.min(Math.max(1, hop), this.size);
+
+		ring = new float[this.size * AXES];
+		timestamps = new long[this.size];
+
+		window = new double[this.size];
+
+		for (int i = 0; i < this.size; i++)
+		{
+			window[i] = 0.5 - 0.5 * Math.cos(2 * Math.PI * i / this.size);
+
+			windowGain += window[i];
+		}
+
+		data = new double[2][this.size];
+		amplitudes = new float[AXES][this.size / 2 + 1];
+	}
+
+	public void process(float[] buffer, long[] timestamps, int length)
+	{
+		for (int i = 0, j = 0; i < length; i++, j += AXES)
+		{
+			System.arraycopy(buffer, j, ring, position * AXES, AXES);
+
+			if (timestamps != null)
+			{
+				this.timestamps[position] = timestamps[i];
+			}
+
+			if (++position == size)
+			{
+				position = 0;
+			}
+
+			if (count < size)
+			{
+				count++;
+			}
+
+			if (++sinceHop >= hop && count == size)
+			{
+				sinceHop = 0;
+
+				transform();
+			}
+		}
+	}
+
+	/**
+	 * Compute the spectrum of the window ending at the newest sample.
+	 */
+	private void transform()
+	{
+		double[] real = data[0];
+		double[] imaginary = data[1];
+
+		for (int axis = 0; axis < AXES; axis++)
+		{
+			// The oldest sample is at the write position of the full ring.
+			for (int i = 0, slot = position; i < size; i++)
+			{
+				real[i] = ring[slot * AXES + axis] * window[i];
+				imaginary[i] = 0;
+
+				if (++slot == size)
+				{
+					slot = 0;
+				}
+			}
+
+			FastFourierTransformer.transformInPlace(data,
+					DftNormalization.STANDARD, TransformType.FORWARD);
+
+			float[] amplitude = amplitudes[axis];
+
+			for (int k = 0; k <= size / 2; k++)
+			{
+				// The energy of a real sinusoid is split between k and
+				// size - k, except at zero and the Nyquist frequency.
+				double scale = (k == 0 || k == size / 2) ? 1 : 2;
+
+				amplitude[k] = (float) (scale
+						* Math.sqrt(real[k] * real[k] + imaginary[k]
+								* imaginary[k]) / windowGain);
+			}
+		}
+
+		long newest = timestamps[(position + size - 1) % size];
+		long oldest = timestamps[position];
+
+		timestamp = newest;
+		sampleRate = (newest > oldest) ? (size - 1) * 1000000000.0
+				/ (newest - oldest) : 0;
+
+		spectra++;
+	}
+
+	/**
+	 * Get the amplitude spectrum of an axis, scaled so a sinusoid at the
+	 * frequency of a bin reads as its amplitude. The array is reused and
+	 * updated every hop samples.
+	 * 
+	 * @param axis
+	 *            The axis, 0 to 2 for x, y and z.
+	 * @return The amplitude of bins zero to size / 2.
+	 */
+	public float[] getAmplitudes(int axis)
+	{
+		return amplitudes[axis];
+	}
+
+	/**
+	 * Get the frequency of a bin for the sample rate measured over the window
+	 * of the last spectrum.
+	 * 
+	 * @param bin
+	 *            The bin, zero to size / 2.
+	 * @return The frequency in Hz, or zero if the samples have no timestamps.
+	 */
+	public double getFrequency(int bin)
+	{
+		return bin * sampleRate / size;
+	}
+
+	/**
+	 * Get the average sample rate over the window of the last spectrum.
+	 * 
+	 * @return The sample rate in Hz, or zero if the samples have no
+	 *         timestamps.
+	 */
+	public double getSampleRate()
+	{
+		return sampleRate;
+	}
+
+	/**
+	 * Get the timestamp of the newest sample of the last spectrum.
+	 */
+	public long getTimestamp()
+	{
+		return timestamp;
+	}
+
+	/**
+	 * Get the number of spectra computed, which changes when a new spectrum
+	 * is available.
+	 */
+	public long getSpectrumCount()
+	{
+		return spectra;
+	}
+
+	public int getSize()
+	{
+		return size;
+	}
+
+	public int getHop()
+	{
+		return hop;
+	}
+}
@@ -0,0 +1,72 @@
+package com.kircherelectronics.simplelinearacceleration.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Runs the benchmarks with the GC profiler, so every score is reported with
+ * its allocation rate per operation, as the average time per operation in
+ * nanoseconds, and writes the results to
+ * benchmarks.json. The optional argument is a regular expression selecting
+ * the benchmarks to run.
+ * 
+ * <pre>
+ * BenchmarkMain [regexp]
+ * </pre>
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class BenchmarkMain
+{
+	public static void main(String[] args) throws RunnerException
+	{
+		String include = (args.length > 0) ? args[0] : BenchmarkMain.class
+				.getPackage().getName() + ".*";
+
+		// The benchmarks run in a forked JVM that needs the recorded log.
+		String log = System.getProperty("benchmark.log");
+
+		String[] jvmArgs = (log != null) ? new String[]
+		{ "--add-modules", "jdk.incubator.vector", "-Dbenchmark.log=" + log }
+				: new String[]
+				{ "--add-modules", "jdk.incubator.vector" };
+
+		Options options = new OptionsBuilder().include(include)
+				.addProfiler(GCProfiler.class).mode(Mode.AverageTime)
+				.timeUnit(TimeUnit.NANOSECONDS).forks(1).warmupIterations(5)
+				.warmupTime(TimeValue.seconds(1)).measurementIterations(5)
+				.measurementTime(TimeValue.seconds(1))
+				.jvmArgsAppend(jvmArgs)
+				.resultFormat(ResultFormatType.JSON).result("benchmarks.json")
+				.build();
+
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,87 @@
+package com.kircherelectronics.simplelinearacceleration.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.kircherelectronics.simplelinearacceleration.filter.Decimator;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Benchmarks Decimator on its own, one sample at a time and in batches, over a
+ * range of decimation factors. The filter has a fixed number of taps per
+ * output phase, so the cost per input sample should stay about the same as the
+ * factor grows. Scores are per input sample.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+@State(Scope.Thread)
+public class DecimatorBenchmark extends SampleBenchmark
+{
+	@Param(
+	{ "2", "5", "20", "50" })
+	public int factor;
+
+	private Decimator decimator;
+
+	// The decimated output and its timestamps.
+	private float[] decimated = new float[SampleData.BLOCK * 3];
+	private long[] decimatedTimestamps = new long[SampleData.BLOCK];
+
+	@Setup
+	public void createDecimator()
+	{
+		decimator = new Decimator(3, factor);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SampleData.BLOCK)
+	public void single(Blackhole blackhole)
+	{
+		nextBlock();
+
+		for (int i = 0, j = 0; i < SampleData.BLOCK; i++, j += 3)
+		{
+			sample[0] = acceleration[j];
+			sample[1] = acceleration[j + 1];
+			sample[2] = acceleration[j + 2];
+
+			if (decimator.addSample(sample, timestamps[i]))
+			{
+				blackhole.consume(decimator.getOutput());
+			}
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SampleData.BLOCK)
+	public int batch()
+	{
+		nextBlock();
+
+		return decimator.addSamples(acceleration, timestamps,
+				SampleData.BLOCK, decimated, decimatedTimestamps);
+	}
+}
@@ -0,0 +1,121 @@
+package com.kircherelectronics.simplelinearacceleration.benchmark;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.kircherelectronics.simplelinearacceleration.filter.FilterBank;
+import com.kircherelectronics.simplelinearacceleration.filter.LinearAccelerationConfig;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Benchmarks a FilterBank stepping many streams in lockstep, with the filters
+ * on and off and a range of stream counts. Each stream starts at a different
+ * offset into the samples. Scores are per step of every stream.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+@State(Scope.Thread)
+public class FilterBankBenchmark
+{
+	// The number of steps of input prepared for the streams.
+	private static final int STEPS = 64;
+
+	@Param(
+	{ "false", "true" })
+	public boolean lpf;
+
+	@Param(
+	{ "false", "true" })
+	public boolean mean;
+
+	@Param(
+	{ "16", "256", "4096" })
+	public int streams;
+
+	private int step = 0;
+
+	private FilterBank filterBank;
+
+	// The x, y and z acceleration of each stream for each step.
+	private float[][][] acceleration;
+
+	// The timestamp of each stream for each step.
+	private long[][] timestamps;
+
+	private float[][] linearAcceleration;
+
+	@Setup
+	public void createBank() throws IOException
+	{
+		LinearAccelerationConfig config = new LinearAccelerationConfig();
+
+		config.setLpfAccelerationActive(lpf);
+		config.setMeanFilterAccelerationActive(mean);
+
+		filterBank = new FilterBank(config, streams);
+
+		SampleData data = SampleData.load();
+
+		acceleration = new float[STEPS][3][streams];
+		timestamps = new long[STEPS][streams];
+		linearAcceleration = new float[3][streams];
+
+		for (int i = 0; i < STEPS; i++)
+		{
+			for (int stream = 0; stream < streams; stream++)
+			{
+				int sample = (i + stream * 17)
+						% (data.blocks * SampleData.BLOCK);
+
+				int block = sample / SampleData.BLOCK;
+				int offset = sample % SampleData.BLOCK;
+
+				for (int axis = 0; axis < 3; axis++)
+				{
+					acceleration[i][axis][stream] = data.acceleration[block][offset
+							* 3 + axis];
+				}
+
+				// The streams share a clock.
+				timestamps[i][stream] = data.timestamps[0][0] + i * 5000000L;
+			}
+		}
+	}
+
+	@Benchmark
+	public float[][] step()
+	{
+		filterBank.step(acceleration[step], timestamps[step],
+				linearAcceleration);
+
+		if (++step == STEPS)
+		{
+			step = 0;
+		}
+
+		return linearAcceleration;
+	}
+}
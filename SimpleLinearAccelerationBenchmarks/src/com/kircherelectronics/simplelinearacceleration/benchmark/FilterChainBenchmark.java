@@ -0,0 +1,102 @@
+package com.kircherelectronics.simplelinearacceleration.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.kircherelectronics.simplelinearacceleration.filter.FilterChain;
+import com.kircherelectronics.simplelinearacceleration.filter.FilterStage;
+import com.kircherelectronics.simplelinearacceleration.filter.LPFWikipedia;
+import com.kircherelectronics.simplelinearacceleration.filter.LowPassFilterStage;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Benchmarks a FilterChain of static alpha low-pass filter stages against
+ * running the same stages one after the other over the whole block, to show
+ * the cost of a stage in the chain. Scores are per sample.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+@State(Scope.Thread)
+public class FilterChainBenchmark extends SampleBenchmark
+{
+	@Param(
+	{ "1", "3", "5" })
+	public int stages;
+
+	private FilterChain chain;
+
+	private FilterStage[] passes;
+
+	@Setup
+	public void createChain()
+	{
+		chain = new FilterChain();
+
+		passes = new FilterStage[stages];
+
+		for (int i = 0; i < stages; i++)
+		{
+			chain.addStage(new LowPassFilterStage(createFilter()));
+
+			passes[i] = new LowPassFilterStage(createFilter());
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SampleData.BLOCK)
+	public float[] chain()
+	{
+		nextBlock();
+
+		chain.process(acceleration, timestamps, SampleData.BLOCK, output);
+
+		return output;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SampleData.BLOCK)
+	public float[] passes()
+	{
+		nextBlock();
+
+		System.arraycopy(acceleration, 0, output, 0, SampleData.BLOCK * 3);
+
+		for (int i = 0; i < passes.length; i++)
+		{
+			passes[i].process(output, timestamps, SampleData.BLOCK);
+		}
+
+		return output;
+	}
+
+	private static LPFWikipedia createFilter()
+	{
+		LPFWikipedia lpf = new LPFWikipedia();
+		lpf.setAlphaStatic(true);
+		lpf.setAlpha(0.4f);
+
+		return lpf;
+	}
+}
@@ -0,0 +1,121 @@
+package com.kircherelectronics.simplelinearacceleration.benchmark;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.kircherelectronics.simplelinearacceleration.filter.LinearAccelerationConfig;
+import com.kircherelectronics.simplelinearacceleration.filter.SimpleLinearAcceleration;
+import com.kircherelectronics.simplelinearacceleration.fixedpoint.FixedPoint;
+import com.kircherelectronics.simplelinearacceleration.fixedpoint.FixedPointLinearAcceleration;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Benchmarks FixedPointLinearAcceleration against SimpleLinearAcceleration in
+ * batches with the same configuration. The samples are converted to Q16.16
+ * once up front. Scores are per sample.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+@State(Scope.Thread)
+public class FixedPointBenchmark extends SampleBenchmark
+{
+	@Param(
+	{ "false", "true" })
+	public boolean lpf;
+
+	@Param(
+	{ "false", "true" })
+	public boolean mean;
+
+	private SimpleLinearAcceleration simpleLinearAcceleration;
+
+	private FixedPointLinearAcceleration fixedPointLinearAcceleration;
+
+	// The samples in Q16.16, block by block.
+	private int[][] fixedAcceleration;
+
+	private long[][] fixedTimestamps;
+
+	private int fixedBlock = 0;
+
+	private int[] fixedOutput = new int[SampleData.BLOCK * 3];
+
+	@Setup
+	public void createPipeline() throws IOException
+	{
+		LinearAccelerationConfig config = new LinearAccelerationConfig();
+
+		config.setLpfAccelerationActive(lpf);
+		config.setMeanFilterAccelerationActive(mean);
+
+		simpleLinearAcceleration = new SimpleLinearAcceleration(config);
+		fixedPointLinearAcceleration = new FixedPointLinearAcceleration(config);
+
+		SampleData data = SampleData.load();
+
+		fixedAcceleration = new int[data.blocks][SampleData.BLOCK * 3];
+		fixedTimestamps = data.timestamps;
+
+		for (int i = 0; i < data.blocks; i++)
+		{
+			for (int j = 0; j < SampleData.BLOCK * 3; j++)
+			{
+				fixedAcceleration[i][j] = FixedPoint
+						.toFixed(data.acceleration[i][j]);
+			}
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SampleData.BLOCK)
+	public float[] floatingPoint()
+	{
+		nextBlock();
+
+		simpleLinearAcceleration.addSamples(acceleration, timestamps,
+				SampleData.BLOCK, output);
+
+		return output;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SampleData.BLOCK)
+	public int[] fixedPoint()
+	{
+		int block = fixedBlock;
+
+		if (++fixedBlock == fixedAcceleration.length)
+		{
+			fixedBlock = 0;
+		}
+
+		fixedPointLinearAcceleration.addSamples(fixedAcceleration[block],
+				fixedTimestamps[block], SampleData.BLOCK, fixedOutput);
+
+		return fixedOutput;
+	}
+}
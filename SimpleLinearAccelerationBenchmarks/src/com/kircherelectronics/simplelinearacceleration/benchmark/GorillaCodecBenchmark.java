@@ -0,0 +1,182 @@
+package com.kircherelectronics.simplelinearacceleration.benchmark;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.kircherelectronics.simplelinearacceleration.filter.LinearAccelerationConfig;
+import com.kircherelectronics.simplelinearacceleration.filter.SimpleLinearAcceleration;
+import com.kircherelectronics.simplelinearacceleration.recording.GorillaCodec;
+import com.kircherelectronics.simplelinearacceleration.recording.RecordingHeader;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Benchmarks GorillaCodec encoding and decoding blocks of the columns of a
+ * recording, the x, y, z acceleration and the linear acceleration the pipeline
+ * computes from it. The setup checks that every block decodes to the same
+ * timestamps and float bits it was encoded from, and fails the run if one
+ * does not. Scores are per sample of all columns.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+@State(Scope.Thread)
+public class GorillaCodecBenchmark extends SampleBenchmark
+{
+	// The number of blocks encoded up front.
+	private static final int BLOCKS = 16;
+
+	private static final int COLUMNS = RecordingHeader.COLUMNS;
+
+	private GorillaCodec codec;
+
+	// The timestamps and the values, column by column, of each block.
+	private long[][] blockTimestamps = new long[BLOCKS][SampleData.BLOCK];
+	private float[][] blockValues = new float[BLOCKS][SampleData.BLOCK
+			* COLUMNS];
+
+	// The encoded blocks.
+	private ByteBuffer[] encoded = new ByteBuffer[BLOCKS];
+
+	private ByteBuffer buffer;
+
+	private long[] decodedTimestamps = new long[SampleData.BLOCK];
+	private float[] decodedValues = new float[SampleData.BLOCK * COLUMNS];
+
+	private int next = 0;
+
+	@Setup
+	public void encodeBlocks() throws IOException
+	{
+		loadSamples();
+
+		codec = new GorillaCodec(SampleData.BLOCK, COLUMNS);
+
+		buffer = ByteBuffer.allocate(codec.getMaxEncodedSize());
+
+		SimpleLinearAcceleration simpleLinearAcceleration = new SimpleLinearAcceleration(
+				new LinearAccelerationConfig());
+
+		for (int b = 0; b < BLOCKS; b++)
+		{
+			nextBlock();
+
+			simpleLinearAcceleration.addSamples(acceleration, timestamps,
+					SampleData.BLOCK, output);
+
+			System.arraycopy(timestamps, 0, blockTimestamps[b], 0,
+					SampleData.BLOCK);
+
+			for (int c = 0; c < 3; c++)
+			{
+				for (int i = 0; i < SampleData.BLOCK; i++)
+				{
+					blockValues[b][c * SampleData.BLOCK + i] = acceleration[i
+							* 3 + c];
+					blockValues[b][(c + 3) * SampleData.BLOCK + i] = output[i
+							* 3 + c];
+				}
+			}
+
+			buffer.clear();
+
+			int length = codec.encode(blockTimestamps[b], blockValues[b],
+					SampleData.BLOCK, buffer);
+
+			encoded[b] = ByteBuffer.allocate(length);
+			encoded[b].put(buffer.array(), 0, length).flip();
+
+			verify(b);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SampleData.BLOCK)
+	public int encode()
+	{
+		int b = nextEncoded();
+
+		buffer.clear();
+
+		return codec.encode(blockTimestamps[b], blockValues[b],
+				SampleData.BLOCK, buffer);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SampleData.BLOCK)
+	public float decode()
+	{
+		decode(nextEncoded());
+
+		return decodedValues[SampleData.BLOCK - 1];
+	}
+
+	/**
+	 * Check that a block decodes losslessly.
+	 */
+	private void verify(int b)
+	{
+		decode(b);
+
+		for (int i = 0; i < SampleData.BLOCK; i++)
+		{
+			if (decodedTimestamps[i] != blockTimestamps[b][i])
+			{
+				throw new IllegalStateException("Timestamp " + i + " of block "
+						+ b + " does not round-trip");
+			}
+		}
+
+		for (int i = 0; i < SampleData.BLOCK * COLUMNS; i++)
+		{
+			if (Float.floatToRawIntBits(decodedValues[i]) != Float
+					.floatToRawIntBits(blockValues[b][i]))
+			{
+				throw new IllegalStateException("Value " + i + " of block "
+						+ b + " does not round-trip");
+			}
+		}
+	}
+
+	private void decode(int b)
+	{
+		encoded[b].clear();
+
+		codec.decode(encoded[b], encoded[b].limit(), SampleData.BLOCK,
+				decodedTimestamps, decodedValues);
+	}
+
+	private int nextEncoded()
+	{
+		int b = next;
+
+		if (++next == BLOCKS)
+		{
+			next = 0;
+		}
+
+		return b;
+	}
+}
@@ -0,0 +1,88 @@
+package com.kircherelectronics.simplelinearacceleration.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.kircherelectronics.simplelinearacceleration.filter.GravityEstimator;
+import com.kircherelectronics.simplelinearacceleration.filter.KalmanGravityEstimator;
+import com.kircherelectronics.simplelinearacceleration.filter.LinearAccelerationConfig;
+import com.kircherelectronics.simplelinearacceleration.filter.VarianceGatedGravityEstimator;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Benchmarks the gravity estimators on their own, the variance gate over a
+ * range of standard deviation windows and the Kalman filter, whose cost does
+ * not depend on a window. Scores are per sample.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+@State(Scope.Thread)
+public class GravityEstimatorBenchmark extends SampleBenchmark
+{
+	@Param(
+	{ "variance", "kalman" })
+	public String estimator;
+
+	@Param(
+	{ "50", "200" })
+	public int sampleWindow;
+
+	private GravityEstimator gravityEstimator;
+
+	@Setup
+	public void createEstimator()
+	{
+		LinearAccelerationConfig config = new LinearAccelerationConfig();
+
+		config.setSampleWindow(sampleWindow);
+
+		gravityEstimator = estimator.equals("kalman") ? new KalmanGravityEstimator(
+				config) : new VarianceGatedGravityEstimator(config);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SampleData.BLOCK)
+	public void addSample(Blackhole blackhole)
+	{
+		nextBlock();
+
+		for (int j = 0; j < SampleData.BLOCK * 3; j += 3)
+		{
+			blackhole.consume(gravityEstimator.addSample(acceleration, j));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SampleData.BLOCK)
+	public float[] addSamples()
+	{
+		nextBlock();
+
+		gravityEstimator.addSamples(acceleration, SampleData.BLOCK, output);
+
+		return output;
+	}
+}
@@ -0,0 +1,113 @@
+package com.kircherelectronics.simplelinearacceleration.benchmark;
+
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.kircherelectronics.simplelinearacceleration.filter.Kernels;
+import com.kircherelectronics.simplelinearacceleration.filter.LinearAccelerationConfig;
+import com.kircherelectronics.simplelinearacceleration.filter.ScalarKernels;
+import com.kircherelectronics.simplelinearacceleration.tools.VectorKernels;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Compares the scalar kernels with the Vector API kernels over one step of a
+ * FilterBank with a range of stream counts. The vector kernels need the
+ * benchmark JVM to run with --add-modules jdk.incubator.vector. Scores are
+ * per step of every stream.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+@State(Scope.Thread)
+public class KernelsBenchmark
+{
+	@Param(
+	{ "scalar", "vector" })
+	public String kernels;
+
+	@Param(
+	{ "16", "256", "4096" })
+	public int streams;
+
+	private Kernels implementation;
+
+	private float[] input;
+	private float[] output;
+	private float[] alpha;
+
+	// The x, y and z of every stream one after another, as FilterBank
+	// subtracts gravity one axis at a time.
+	private float[] acceleration;
+	private float[] components;
+	private float[] linearAcceleration;
+
+	@Setup
+	public void createKernels()
+	{
+		implementation = kernels.equals("vector") ? new VectorKernels()
+				: new ScalarKernels();
+
+		Random random = new Random(42);
+
+		input = new float[streams];
+		output = new float[streams];
+		alpha = new float[streams];
+
+		acceleration = new float[streams * 3];
+		components = new float[streams * 3];
+		linearAcceleration = new float[streams * 3];
+
+		for (int i = 0; i < streams; i++)
+		{
+			input[i] = random.nextFloat() * 20 - 10;
+			output[i] = random.nextFloat() * 20 - 10;
+			alpha[i] = random.nextFloat();
+		}
+
+		for (int i = 0; i < streams * 3; i++)
+		{
+			acceleration[i] = random.nextFloat() * 20 - 10;
+			components[i] = random.nextFloat() * 20 - 10;
+		}
+	}
+
+	@Benchmark
+	public float[] lowPass()
+	{
+		implementation.lowPass(input, output, alpha, 0, streams);
+
+		return output;
+	}
+
+	@Benchmark
+	public float[] subtractGravity()
+	{
+		implementation.subtractGravity(acceleration, components,
+				linearAcceleration, LinearAccelerationConfig.GRAVITY_EARTH, 0,
+				streams * 3);
+
+		return linearAcceleration;
+	}
+}
@@ -0,0 +1,82 @@
+package com.kircherelectronics.simplelinearacceleration.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.kircherelectronics.simplelinearacceleration.filter.LPFWikipedia;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Benchmarks LPFWikipedia on its own, one sample at a time and in batches,
+ * with a static alpha and with alpha derived from the sensor timestamps.
+ * Scores are per sample.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+@State(Scope.Thread)
+public class LPFWikipediaBenchmark extends SampleBenchmark
+{
+	@Param(
+	{ "true", "false" })
+	public boolean alphaStatic;
+
+	private LPFWikipedia lpf;
+
+	@Setup
+	public void createFilter()
+	{
+		lpf = new LPFWikipedia();
+		lpf.setAlphaStatic(alphaStatic);
+		lpf.setAlpha(0.4f);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SampleData.BLOCK)
+	public void single(Blackhole blackhole)
+	{
+		nextBlock();
+
+		for (int i = 0, j = 0; i < SampleData.BLOCK; i++, j += 3)
+		{
+			sample[0] = acceleration[j];
+			sample[1] = acceleration[j + 1];
+			sample[2] = acceleration[j + 2];
+
+			blackhole.consume(lpf.addSamples(sample, timestamps[i]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SampleData.BLOCK)
+	public float[] batch()
+	{
+		nextBlock();
+
+		lpf.addSamples(acceleration, timestamps, SampleData.BLOCK, output);
+
+		return output;
+	}
+}
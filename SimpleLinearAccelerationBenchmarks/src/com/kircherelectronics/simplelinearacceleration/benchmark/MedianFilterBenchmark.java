@@ -0,0 +1,84 @@
+package com.kircherelectronics.simplelinearacceleration.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.kircherelectronics.simplelinearacceleration.filter.MedianFilter;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Benchmarks MedianFilter on its own, one sample at a time and in batches,
+ * over a range of window sizes. The cost per sample should grow with the
+ * logarithm of the window size. Scores are per sample.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+@State(Scope.Thread)
+public class MedianFilterBenchmark extends SampleBenchmark
+{
+	@Param(
+	{ "10", "50", "200", "1000" })
+	public int window;
+
+	private MedianFilter medianFilter;
+
+	// The output of the single sample entry point.
+	private float[] median = new float[3];
+
+	@Setup
+	public void createFilter()
+	{
+		medianFilter = new MedianFilter();
+		medianFilter.setWindowSize(window);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SampleData.BLOCK)
+	public void single(Blackhole blackhole)
+	{
+		nextBlock();
+
+		for (int j = 0; j < SampleData.BLOCK * 3; j += 3)
+		{
+			sample[0] = acceleration[j];
+			sample[1] = acceleration[j + 1];
+			sample[2] = acceleration[j + 2];
+
+			blackhole.consume(medianFilter.filterFloat(sample, median));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SampleData.BLOCK)
+	public float[] batch()
+	{
+		nextBlock();
+
+		medianFilter.filterFloat(acceleration, 3, SampleData.BLOCK, output);
+
+		return output;
+	}
+}
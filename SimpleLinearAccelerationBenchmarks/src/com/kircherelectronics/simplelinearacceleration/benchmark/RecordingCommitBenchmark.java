@@ -0,0 +1,167 @@
+package com.kircherelectronics.simplelinearacceleration.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.kircherelectronics.simplelinearacceleration.filter.LinearAccelerationConfig;
+import com.kircherelectronics.simplelinearacceleration.filter.SimpleLinearAcceleration;
+import com.kircherelectronics.simplelinearacceleration.recording.RecordingHeader;
+import com.kircherelectronics.simplelinearacceleration.recording.SegmentedRecordingWriter;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Benchmarks recording a session with each commit policy, the cost of the
+ * durability of the samples. The samples are written a block at a time, as
+ * the logger drains them, to segments in a temporary directory whose budget
+ * keeps it bounded. The commit policy is given in samples, so the score does
+ * not depend on how fast the benchmark runs: at 200 Hz, 20 samples is a
+ * commit every 100 ms and 200 samples one every second. Zero only syncs when
+ * a segment is closed. Scores are per sample.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+@State(Scope.Thread)
+public class RecordingCommitBenchmark extends SampleBenchmark
+{
+	// The number of blocks computed up front.
+	private static final int BLOCKS = 16;
+
+	// The budget of the temporary session.
+	private static final long BUDGET = 4 * SegmentedRecordingWriter.SEGMENT_SIZE;
+
+	private static final int COLUMNS = RecordingHeader.COLUMNS;
+
+	@Param(
+	{ "0", "20", "200", "2000" })
+	public int commitSamples;
+
+	@Param(
+	{ "0", "1" })
+	public int encoding;
+
+	private File directory;
+
+	private SegmentedRecordingWriter writer;
+
+	// The interleaved values of all columns of each block.
+	private float[][] blockValues = new float[BLOCKS][SampleData.BLOCK
+			* COLUMNS];
+
+	// The time of each block since its first sample.
+	private long[][] blockTimes = new long[BLOCKS][SampleData.BLOCK];
+
+	// The timestamps of the block being written.
+	private long[] blockTimestamps = new long[SampleData.BLOCK];
+
+	// The timestamp of the next block.
+	private long timestamp = 0;
+
+	private int next = 0;
+
+	@Setup
+	public void createWriter() throws IOException
+	{
+		loadSamples();
+
+		SimpleLinearAcceleration simpleLinearAcceleration = new SimpleLinearAcceleration(
+				new LinearAccelerationConfig());
+
+		for (int b = 0; b < BLOCKS; b++)
+		{
+			nextBlock();
+
+			simpleLinearAcceleration.addSamples(acceleration, timestamps,
+					SampleData.BLOCK, output);
+
+			for (int i = 0; i < SampleData.BLOCK; i++)
+			{
+				blockTimes[b][i] = timestamps[i] - timestamps[0];
+
+				System.arraycopy(acceleration, i * 3, blockValues[b], i
+						* COLUMNS, 3);
+				System.arraycopy(output, i * 3, blockValues[b], i * COLUMNS
+						+ 3, 3);
+			}
+		}
+
+		directory = Files.createTempDirectory("recording").toFile();
+
+		RecordingHeader header = new RecordingHeader();
+
+		header.setEncoding(encoding);
+
+		writer = new SegmentedRecordingWriter(directory, header,
+				SegmentedRecordingWriter.SEGMENT_SIZE,
+				SegmentedRecordingWriter.UNLIMITED, BUDGET);
+
+		// The size of the samples since the last commit is counted as raw
+		// samples, whatever the encoding.
+		writer.setCommitPolicy(0, (long) commitSamples * (8 + 4 * COLUMNS));
+	}
+
+	@TearDown
+	public void deleteSession() throws IOException
+	{
+		writer.close();
+
+		for (File file : directory.listFiles())
+		{
+			file.delete();
+		}
+
+		directory.delete();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SampleData.BLOCK)
+	public long write() throws IOException
+	{
+		int b = next;
+
+		if (++next == BLOCKS)
+		{
+			next = 0;
+		}
+
+		// Keep the timestamps increasing across the repeated blocks.
+		for (int i = 0; i < SampleData.BLOCK; i++)
+		{
+			blockTimestamps[i] = timestamp + blockTimes[b][i];
+		}
+
+		// Start the next block a mean sample period later.
+		timestamp = blockTimestamps[SampleData.BLOCK - 1]
+				+ blockTimes[b][SampleData.BLOCK - 1] / (SampleData.BLOCK - 1);
+
+		writer.write(blockTimestamps, blockValues[b], SampleData.BLOCK);
+
+		return writer.getSamples();
+	}
+}
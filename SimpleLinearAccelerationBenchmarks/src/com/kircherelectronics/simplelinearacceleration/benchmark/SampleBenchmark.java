@@ -0,0 +1,91 @@
+package com.kircherelectronics.simplelinearacceleration.benchmark;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * The base class of the benchmarks that feed the samples through a filter.
+ * Each invocation calls nextBlock() to move on to the next block of
+ * SampleData, wrapping around at the end, so the filters see a continuous
+ * recording. This is done inside the benchmark rather than in a per
+ * invocation fixture, whose timing overhead is larger than a block.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+@State(Scope.Thread)
+public abstract class SampleBenchmark
+{
+	private static SampleData data;
+
+	private int block = 0;
+
+	// The interleaved x, y, z acceleration of the current block.
+	protected float[] acceleration;
+
+	// The sensor timestamps of the current block in nanoseconds.
+	protected long[] timestamps;
+
+	// The interleaved output of the current block.
+	protected float[] output = new float[SampleData.BLOCK * 3];
+
+	// Scratch for the single sample entry points.
+	protected float[] sample = new float[3];
+
+	/**
+	 * Load the samples and start at the first block. JMH does not run the
+	 * Setup methods of a superclass before those of its subclasses, so a
+	 * subclass whose Setup reads the samples calls this first.
+	 * 
+	 * @throws IOException
+	 *             If the recorded log cannot be read.
+	 */
+	@Setup
+	public void loadSamples() throws IOException
+	{
+		synchronized (SampleBenchmark.class)
+		{
+			if (data == null)
+			{
+				data = SampleData.load();
+			}
+		}
+
+		block = 0;
+	}
+
+	/**
+	 * Move on to the next block of samples.
+	 */
+	protected void nextBlock()
+	{
+		acceleration = data.acceleration[block];
+		timestamps = data.timestamps[block];
+
+		if (++block == data.blocks)
+		{
+			block = 0;
+		}
+	}
+}
@@ -0,0 +1,190 @@
+package com.kircherelectronics.simplelinearacceleration.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import com.kircherelectronics.simplelinearacceleration.tools.CsvLogReader;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * The input for the benchmarks. By default this is a synthetic accelerometer
+ * recording at 200 Hz: gravity on a slowly changing tilt, alternating static
+ * and moving periods, sensor noise and timestamp jitter. If the system
+ * property benchmark.log names a .csv log written by the application, the
+ * recorded samples are used instead. The samples are split into blocks of
+ * BLOCK samples so every benchmark invocation does the same amount of work.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class SampleData
+{
+	// The number of samples in the synthetic recording.
+	public static final int SAMPLES = 1 << 16;
+
+	// The number of samples processed per benchmark invocation.
+	public static final int BLOCK = 1024;
+
+	private static final float GRAVITY = 9.80665f;
+
+	private static final long PERIOD_NANOS = 5000000L;
+
+	// The interleaved x, y, z acceleration of each block.
+	public final float[][] acceleration;
+
+	// The sensor timestamp of each sample of each block in nanoseconds.
+	public final long[][] timestamps;
+
+	public final int blocks;
+
+	private SampleData(float[] acceleration, long[] timestamps, int length)
+	{
+		blocks = length / BLOCK;
+
+		this.acceleration = new float[blocks][BLOCK * 3];
+		this.timestamps = new long[blocks][BLOCK];
+
+		for (int i = 0; i < blocks; i++)
+		{
+			System.arraycopy(acceleration, i * BLOCK * 3, this.acceleration[i],
+					0, BLOCK * 3);
+			System.arraycopy(timestamps, i * BLOCK, this.timestamps[i], 0,
+					BLOCK);
+		}
+	}
+
+	/**
+	 * Load the recorded log named by benchmark.log, or create the synthetic
+	 * recording.
+	 * 
+	 * @return The samples.
+	 * @throws IOException
+	 *             If the recorded log cannot be read.
+	 */
+	public static SampleData load() throws IOException
+	{
+		String log = System.getProperty("benchmark.log");
+
+		return (log != null) ? recorded(new File(log)) : synthetic(SAMPLES);
+	}
+
+	/**
+	 * Create a synthetic recording.
+	 * 
+	 * @param length
+	 *            The number of samples.
+	 * @return The samples.
+	 */
+	public static SampleData synthetic(int length)
+	{
+		Random random = new Random(42);
+
+		float[] acceleration = new float[length * 3];
+		long[] timestamps = new long[length];
+
+		long timestamp = 0;
+
+		for (int i = 0, j = 0; i < length; i++, j += 3)
+		{
+			double tilt = 0.3 * Math.sin(i * 0.0005);
+
+			// Two seconds static, then two seconds of motion.
+			boolean moving = (i / 400) % 2 == 1;
+			double motion = moving ? 3 * Math.sin(i * 0.05) : 0;
+
+			acceleration[j] = (float) (GRAVITY * Math.sin(tilt) + motion + random
+					.nextGaussian() * 0.02);
+			acceleration[j + 1] = (float) (0.5 * motion + random
+					.nextGaussian() * 0.02);
+			acceleration[j + 2] = (float) (GRAVITY * Math.cos(tilt) + random
+					.nextGaussian() * 0.02);
+
+			timestamp += PERIOD_NANOS + random.nextInt(100000) - 50000;
+			timestamps[i] = timestamp;
+		}
+
+		return new SampleData(acceleration, timestamps, length);
+	}
+
+	/**
+	 * Load a recorded .csv log.
+	 * 
+	 * @param file
+	 *            The .csv log.
+	 * @return The samples.
+	 * @throws IOException
+	 *             If the log cannot be read or is shorter than a block.
+	 */
+	public static SampleData recorded(File file) throws IOException
+	{
+		int batch = 8192;
+
+		long[] batchTimestamps = new long[batch];
+		float[] batchAcceleration = new float[batch * 3];
+
+		long[] timestamps = new long[batch];
+		float[] acceleration = new float[batch * 3];
+
+		int length = 0;
+
+		CsvLogReader reader = new CsvLogReader(file);
+
+		try
+		{
+			int read;
+
+			while ((read = reader.read(batchTimestamps, batchAcceleration,
+					null, batch)) >= 0)
+			{
+				if (length + read > timestamps.length)
+				{
+					timestamps = Arrays.copyOf(timestamps, timestamps.length * 2);
+					acceleration = Arrays.copyOf(acceleration,
+							acceleration.length * 2);
+				}
+
+				System.arraycopy(batchTimestamps, 0, timestamps, length, read);
+				System.arraycopy(batchAcceleration, 0, acceleration, length * 3,
+						read * 3);
+
+				length += read;
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+
+		if (length < BLOCK)
+		{
+			throw new IOException(file + " has fewer than " + BLOCK + " samples");
+		}
+
+		// The logs record milliseconds since the start of the session.
+		for (int i = 0; i < length; i++)
+		{
+			timestamps[i] *= 1000000L;
+		}
+
+		return new SampleData(acceleration, timestamps, length);
+	}
+}
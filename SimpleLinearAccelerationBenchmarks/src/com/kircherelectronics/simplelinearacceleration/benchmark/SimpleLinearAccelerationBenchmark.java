@@ -0,0 +1,98 @@
+package com.kircherelectronics.simplelinearacceleration.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.kircherelectronics.simplelinearacceleration.filter.LinearAccelerationConfig;
+import com.kircherelectronics.simplelinearacceleration.filter.SimpleLinearAcceleration;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Benchmarks the full linear acceleration pipeline, one sample at a time as
+ * the Activity drives it and in batches as the tools drive it, with every
+ * combination of the low-pass and mean filters and a range of standard
+ * deviation windows. Scores are per sample.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+@State(Scope.Thread)
+public class SimpleLinearAccelerationBenchmark extends SampleBenchmark
+{
+	@Param(
+	{ "false", "true" })
+	public boolean lpf;
+
+	@Param(
+	{ "false", "true" })
+	public boolean mean;
+
+	@Param(
+	{ "50", "200" })
+	public int sampleWindow;
+
+	private SimpleLinearAcceleration simpleLinearAcceleration;
+
+	@Setup
+	public void createPipeline()
+	{
+		LinearAccelerationConfig config = new LinearAccelerationConfig();
+
+		config.setLpfAccelerationActive(lpf);
+		config.setMeanFilterAccelerationActive(mean);
+		config.setSampleWindow(sampleWindow);
+
+		simpleLinearAcceleration = new SimpleLinearAcceleration(config);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SampleData.BLOCK)
+	public void single(Blackhole blackhole)
+	{
+		nextBlock();
+
+		for (int i = 0, j = 0; i < SampleData.BLOCK; i++, j += 3)
+		{
+			sample[0] = acceleration[j];
+			sample[1] = acceleration[j + 1];
+			sample[2] = acceleration[j + 2];
+
+			blackhole.consume(simpleLinearAcceleration.addSamples(sample,
+					timestamps[i]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SampleData.BLOCK)
+	public float[] batch()
+	{
+		nextBlock();
+
+		simpleLinearAcceleration.addSamples(acceleration, timestamps,
+				SampleData.BLOCK, output);
+
+		return output;
+	}
+}
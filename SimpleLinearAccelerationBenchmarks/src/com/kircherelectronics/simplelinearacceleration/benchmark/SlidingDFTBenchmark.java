@@ -0,0 +1,74 @@
+package com.kircherelectronics.simplelinearacceleration.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.kircherelectronics.simplelinearacceleration.spectrum.SlidingDFT;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Benchmarks SlidingDFT on its own over a range of window sizes and numbers of
+ * tracked bins. The cost per sample should grow with the number of bins and
+ * not with the window size. Scores are per sample.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+@State(Scope.Thread)
+public class SlidingDFTBenchmark extends SampleBenchmark
+{
+	@Param(
+	{ "64", "1024" })
+	public int size;
+
+	@Param(
+	{ "1", "4", "16" })
+	public int bins;
+
+	private SlidingDFT slidingDFT;
+
+	@Setup
+	public void createDFT()
+	{
+		int[] tracked = new int[bins];
+
+		for (int i = 0; i < bins; i++)
+		{
+			tracked[i] = (i + 1) * size / (2 * bins + 1);
+		}
+
+		slidingDFT = new SlidingDFT(size, tracked);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SampleData.BLOCK)
+	public float batch()
+	{
+		nextBlock();
+
+		slidingDFT.process(acceleration, timestamps, SampleData.BLOCK);
+
+		return slidingDFT.getAmplitude(0, 0);
+	}
+}
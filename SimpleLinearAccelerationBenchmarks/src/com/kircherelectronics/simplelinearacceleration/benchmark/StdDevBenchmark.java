@@ -0,0 +1,72 @@
+package com.kircherelectronics.simplelinearacceleration.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.kircherelectronics.simplelinearacceleration.statistics.StdDev;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Benchmarks StdDev on the magnitude of the acceleration, the way
+ * SimpleLinearAcceleration uses it, over a range of window sizes. Scores are
+ * per sample.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+@State(Scope.Thread)
+public class StdDevBenchmark extends SampleBenchmark
+{
+	@Param(
+	{ "10", "50", "200", "1000" })
+	public int window;
+
+	private StdDev stdDev;
+
+	@Setup
+	public void createStdDev()
+	{
+		stdDev = new StdDev(window);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SampleData.BLOCK)
+	public double addSample()
+	{
+		nextBlock();
+
+		double sum = 0;
+
+		for (int j = 0; j < SampleData.BLOCK * 3; j += 3)
+		{
+			float x = acceleration[j];
+			float y = acceleration[j + 1];
+			float z = acceleration[j + 2];
+
+			sum += stdDev.addSample(Math.sqrt(x * x + y * y + z * z));
+		}
+
+		return sum;
+	}
+}
@@ -0,0 +1,312 @@
+package com.kircherelectronics.simplelinearacceleration.filter;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Low-pass filters and downsamples a stream of interleaved samples by an
+ * integer factor, so a consumer that needs a lower rate, such as a plot or a
+ * log, sees the stream without the content above its Nyquist frequency
+ * aliased into it instead of arbitrary point samples.
+ * 
+ * The anti-aliasing filter is a Blackman windowed-sinc FIR of
+ * factor * tapsPerPhase taps with its cutoff at 0.4 of the output rate. Like a
+ * polyphase decimator only the samples that are kept are computed, each as
+ * one dot product over the history, so the cost is O(taps / factor) per
+ * input sample. The history is kept twice in a row in one array so the dot
+ * product never wraps, and it is primed with the first sample so the output
+ * does not rise from zero. Each output carries the timestamp of the input
+ * sample at the center of the filter, which is where the output is aligned.
+ * 
+ * @author Kaleb
+ * @see http://en.wikipedia.org/wiki/Decimation_(signal_processing)
+ * @version %I%, %G%
+ */
+public class Decimator
+{
+	// The default number of taps of the filter per unit of the factor.
+	public static final int TAPS_PER_PHASE = 8;
+
+	// The cutoff of the filter as a fraction of the output Nyquist frequency.
+	private static final double CUTOFF = 0.8;
+
+	private boolean primed = false;
+
+	private int channels;
+
+	private int factor;
+
+	private int taps;
+
+	// The number of input samples since the last output.
+	private int phase = 0;
+
+	// The ring index the next sample is written to.
+	private int position = 0;
+
+	private float[] coefficients;
+
+	// The last taps samples laid out as [sample][channel], written twice, at
+	// position and position + taps.
+	private float[] history;
+
+	// The timestamp of each sample in the history ring.
+	private long[] timestamps;
+
+	private float[] output;
+
+	private long timestamp;
+
+	/**
+	 * Create a decimator with the default number of taps.
+	 * 
+	 * @param channels
+	 *            The number of channels in each sample.
+	 * @param factor
+	 *            The factor the rate is reduced by.
+	 */
+	public Decimator(int channels, int factor)
+	{
+		this(channels, factor, TAPS_PER_PHASE);
+	}
+
+	/**
+	 * Create a decimator.
+	 * 
+	 * @param channels
+	 *            The number of channels in each sample.
+	 * @param factor
+	 *            The factor the rate is reduced by, a factor of one passes
+	 *            the samples through.
+	 * @param tapsPerPhase
+	 *            The number of taps of the filter per unit of the factor, more
+	 *            taps give a sharper cutoff.
+	 */
+	public Decimator(int channels, int factor, int tapsPerPhase)
+	{
+		this.channels = channels;
+		this.factor = Math.max(1, factor);
+
+		taps = (this.factor == 1) ? 1 : this.factor * Math.max(1, tapsPerPhase);
+
+		coefficients = design(taps, CUTOFF * 0.5 / this.factor);
+
+		history = new float[2 * taps * channels];
+		timestamps = new long[taps];
+		output = new float[channels];
+	}
+
+	/**
+	 * Get the factor that reduces an input rate closest to an output rate.
+	 * 
+	 * @param inputRate
+	 *            The input rate in Hz.
+	 * @param outputRate
+	 *            The output rate in Hz.
+	 * @return The factor, at least one.
+	 */
+	public static int getFactor(double inputRate, double outputRate)
+	{
+		if (outputRate <= 0 || inputRate <= outputRate)
+		{
+			return 1;
+		}
+
+		return (int) Math.round(inputRate / outputRate);
+	}
+
+	/**
+	 * Add a sample.
+	 * 
+	 * @param sample
+	 *            The sample.
+	 * @param timestamp
+	 *            The timestamp of the sample in nanoseconds.
+	 * @return True if an output sample is ready, see getOutput() and
+	 *         getTimestamp().
+	 */
+	public boolean addSample(float[] sample, long timestamp)
+	{
+		return add(sample, 0, timestamp);
+	}
+
+	/**
+	 * Add a batch of samples.
+	 * 
+	 * @param input
+	 *            The interleaved samples.
+	 * @param timestamps
+	 *            The timestamp of each sample in nanoseconds.
+	 * @param length
+	 *            The number of samples in the batch.
+	 * @param output
+	 *            The interleaved output samples, at least length / factor + 1
+	 *            samples long.
+	 * @param outputTimestamps
+	 *            The timestamp of each output sample.
+	 * @return The number of output samples.
+	 */
+	public int addSamples(float[] input, long[] timestamps, int length,
+			float[] output, long[] outputTimestamps)
+	{
+		int outputs = 0;
+
+		for (int i = 0; i < length; i++)
+		{
+			if (add(input, i * channels, timestamps[i]))
+			{
+				System.arraycopy(this.output, 0, output, outputs * channels,
+						channels);
+
+				outputTimestamps[outputs++] = this.timestamp;
+			}
+		}
+
+		return outputs;
+	}
+
+	/**
+	 * Get the last output sample. The array is reused.
+	 * 
+	 * @return The output sample.
+	 */
+	public float[] getOutput()
+	{
+		return output;
+	}
+
+	/**
+	 * Get the timestamp of the last output sample.
+	 * 
+	 * @return The timestamp in nanoseconds.
+	 */
+	public long getTimestamp()
+	{
+		return timestamp;
+	}
+
+	public int getFactor()
+	{
+		return factor;
+	}
+
+	/**
+	 * Add a sample to the history and compute an output every factor
+	 * samples.
+	 */
+	private boolean add(float[] input, int offset, long timestamp)
+	{
+		if (!primed)
+		{
+			// Fill the history with the first sample.
+			for (int i = 0; i < 2 * taps; i++)
+			{
+				System.arraycopy(input, offset, history, i * channels,
+						channels);
+			}
+
+			for (int i = 0; i < taps; i++)
+			{
+				timestamps[i] = timestamp;
+			}
+
+			primed = true;
+		}
+
+		System.arraycopy(input, offset, history, position * channels, channels);
+		System.arraycopy(input, offset, history, (position + taps) * channels,
+				channels);
+
+		timestamps[position] = timestamp;
+
+		// The oldest sample of the history is the one after the newest.
+		if (++position == taps)
+		{
+			position = 0;
+		}
+
+		if (++phase < factor)
+		{
+			return false;
+		}
+
+		phase = 0;
+
+		for (int k = 0; k < channels; k++)
+		{
+			float sum = 0;
+
+			int j = position * channels + k;
+
+			for (int i = 0; i < taps; i++, j += channels)
+			{
+				sum += coefficients[i] * history[j];
+			}
+
+			output[k] = sum;
+		}
+
+		this.timestamp = timestamps[(position + taps / 2) % taps];
+
+		return true;
+	}
+
+	/**
+	 * Design a Blackman windowed-sinc low-pass filter with unit gain at DC.
+	 * 
+	 * @param taps
+	 *            The number of taps.
+	 * @param cutoff
+	 *            The cutoff as a fraction of the input rate.
+	 * @return The coefficients.
+	 */
+	private static float[] design(int taps, double cutoff)
+	{
+		double[] h = new double[taps];
+
+		double sum = 0;
+
+		double center = (taps - 1) / 2.0;
+
+		for (int i = 0; i < taps; i++)
+		{
+			double x = i - center;
+
+			double sinc = (x == 0) ? 2 * cutoff : Math.sin(2 * Math.PI
+					* cutoff * x)
+					/ (Math.PI * x);
+
+			double window = (taps == 1) ? 1 : 0.42 - 0.5
+					* Math.cos(2 * Math.PI * i / (taps - 1)) + 0.08
+					* Math.cos(4 * Math.PI * i / (taps - 1));
+
+			h[i] = sinc * window;
+
+			sum += h[i];
+		}
+
+		float[] coefficients = new float[taps];
+
+		for (int i = 0; i < taps; i++)
+		{
+			coefficients[i] = (float) (h[i] / sum);
+		}
+
+		return coefficients;
+	}
+}
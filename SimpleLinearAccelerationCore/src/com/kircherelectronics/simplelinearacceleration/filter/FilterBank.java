@@ -0,0 +1,521 @@
+package com.kircherelectronics.simplelinearacceleration.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.kircherelectronics.simplelinearacceleration.statistics.StdDev;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Runs the linear acceleration pipeline for many independent streams at once.
+ * The low-pass filter state, mean filter windows, standard deviation windows
+ * and gravity components of every stream are held in flat primitive arrays,
+ * one array per axis, indexed by stream. Each step advances every stream by
+ * one sample with loops that run across the streams, and the stream range can
+ * be split into shards that run on an ExecutorService.
+ * 
+ * All of the streams share one LinearAccelerationConfig and advance in lock
+ * step, so the window positions are shared and only the values are per
+ * stream. Each stream produces the same output, bit for bit, as a
+ * SimpleLinearAcceleration fed the same samples with timestamps. The
+ * element-wise stages run on the Kernels selected at runtime. The low-pass
+ * stage is always the Wikipedia filter and gravity is always estimated with
+ * the variance gate, Butterworth and Kalman configurations are ignored, as is
+ * the median filter.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class FilterBank
+{
+	private int streams;
+
+	private boolean lpfAccelerationActive;
+	private boolean lpfAccelerationStaticAlpha;
+	private boolean meanFilterAccelerationActive;
+
+	private int meanFilterWindow;
+	private int sampleWindow;
+
+	private double varianceThreshold;
+
+	private float gravity;
+
+	private Kernels kernels;
+
+	// The shared state of the low-pass filters.
+	private boolean timestampInit = false;
+	private int lpfCount = 0;
+	private int periods = 0;
+
+	// The shared state of the mean filter windows.
+	private int meanCount = 0;
+	private int meanHead = 0;
+
+	// The shared state of the standard deviation windows.
+	private int varianceCount = 0;
+	private int varianceHead = 0;
+	private int sinceResync = 0;
+
+	// The low-pass filter state of each stream.
+	private float[][] lpfOutput;
+	private float[] alpha;
+	private double[] dtSmoothed;
+	private long[] timestampPrevious;
+
+	// The mean filter windows of each stream laid out as [sample][stream].
+	private float[][] meanRing;
+	private double[][] meanSums;
+	private double[][] meanCompensations;
+	private float[][] meanOutput;
+
+	// The standard deviation windows of each stream laid out as
+	// [sample][stream].
+	private double[] varianceRing;
+	private double[] varianceMean;
+	private double[] varianceM2;
+	private double[] stdDev;
+
+	// The gravity components of each stream.
+	private float[][] components;
+
+	/**
+	 * Create a bank of streams.
+	 * 
+	 * @param config
+	 *            The configuration shared by every stream.
+	 * @param streams
+	 *            The number of streams.
+	 */
+	public FilterBank(LinearAccelerationConfig config, int streams)
+	{
+		this(config, streams, Kernels.getDefault());
+	}
+
+	/**
+	 * Create a bank of streams that runs on specific kernels.
+	 * 
+	 * @param config
+	 *            The configuration shared by every stream.
+	 * @param streams
+	 *            The number of streams.
+	 * @param kernels
+	 *            The kernels for the element-wise stages.
+	 */
+	public FilterBank(LinearAccelerationConfig config, int streams,
+			Kernels kernels)
+	{
+		this.streams = streams;
+		this.kernels = kernels;
+
+		lpfAccelerationActive = config.isLpfAccelerationActive();
+		lpfAccelerationStaticAlpha = config.isLpfAccelerationStaticAlpha();
+		meanFilterAccelerationActive = config.isMeanFilterAccelerationActive();
+
+		meanFilterWindow = Math.max(1,
+				config.getMeanFilterAccelerationWindow());
+		sampleWindow = Math.max(1, config.getSampleWindow());
+
+		varianceThreshold = config.getVarianceThreshold();
+		gravity = config.getGravity();
+
+		lpfOutput = new float[3][streams];
+		alpha = new float[streams];
+		dtSmoothed = new double[streams];
+		timestampPrevious = new long[streams];
+
+		Arrays.fill(alpha,
+				lpfAccelerationStaticAlpha ? config.getLpfAccelerationAlpha()
+						: LPFWikipedia.INITIAL_ALPHA);
+
+		if (meanFilterAccelerationActive)
+		{
+			meanRing = new float[3][meanFilterWindow * streams];
+			meanSums = new double[3][streams];
+			meanCompensations = new double[3][streams];
+			meanOutput = new float[3][streams];
+		}
+
+		varianceRing = new double[sampleWindow * streams];
+		varianceMean = new double[streams];
+		varianceM2 = new double[streams];
+		stdDev = new double[streams];
+
+		components = new float[3][streams];
+	}
+
+	/**
+	 * Get the number of streams in the bank.
+	 * 
+	 * @return The number of streams.
+	 */
+	public int getStreams()
+	{
+		return streams;
+	}
+
+	/**
+	 * Advance every stream by one sample.
+	 * 
+	 * @param acceleration
+	 *            The x, y and z acceleration of each stream as three arrays
+	 *            indexed by stream.
+	 * @param timestamps
+	 *            The sensor timestamp of each stream in nanoseconds, may be
+	 *            null if the low-pass filter is inactive or alpha is static.
+	 * @param linearAcceleration
+	 *            The x, y and z linear acceleration output of each stream as
+	 *            three arrays indexed by stream.
+	 */
+	public void step(float[][] acceleration, long[] timestamps,
+			float[][] linearAcceleration)
+	{
+		advance(acceleration, timestamps, linearAcceleration, 0, streams);
+
+		commit();
+	}
+
+	/**
+	 * Advance every stream by one sample, splitting the streams into
+	 * contiguous shards that run on an executor.
+	 * 
+	 * @param acceleration
+	 *            The x, y and z acceleration of each stream as three arrays
+	 *            indexed by stream.
+	 * @param timestamps
+	 *            The sensor timestamp of each stream in nanoseconds, may be
+	 *            null if the low-pass filter is inactive or alpha is static.
+	 * @param linearAcceleration
+	 *            The x, y and z linear acceleration output of each stream as
+	 *            three arrays indexed by stream.
+	 * @param executor
+	 *            The executor that runs the shards.
+	 * @param shards
+	 *            The number of shards to split the streams into.
+	 * @throws InterruptedException
+	 *             If interrupted while waiting for the shards.
+	 */
+	public void step(final float[][] acceleration, final long[] timestamps,
+			final float[][] linearAcceleration, ExecutorService executor,
+			int shards) throws InterruptedException
+	{
+		shards = Math.max(1, Math.min(shards, streams));
+
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(shards);
+
+		for (int i = 0; i < shards; i++)
+		{
+			final int from = (int) ((long) streams * i / shards);
+			final int to = (int) ((long) streams * (i + 1) / shards);
+
+			tasks.add(new Callable<Void>()
+			{
+				@Override
+				public Void call()
+				{
+					advance(acceleration, timestamps, linearAcceleration,
+							from, to);
+
+					return null;
+				}
+			});
+		}
+
+		for (Future<Void> future : executor.invokeAll(tasks))
+		{
+			try
+			{
+				future.get();
+			}
+			catch (ExecutionException e)
+			{
+				throw new RuntimeException(e.getCause());
+			}
+		}
+
+		commit();
+	}
+
+	/**
+	 * Advance a range of streams by one sample without moving the shared
+	 * window positions.
+	 */
+	private void advance(float[][] acceleration, long[] timestamps,
+			float[][] linearAcceleration, int from, int to)
+	{
+		float[][] filtered = acceleration;
+
+		if (lpfAccelerationActive)
+		{
+			filterLowPass(acceleration, timestamps, from, to);
+
+			filtered = lpfOutput;
+		}
+
+		if (meanFilterAccelerationActive)
+		{
+			filterMean(filtered, from, to);
+
+			filtered = meanOutput;
+		}
+
+		subtractGravity(filtered, linearAcceleration, from, to);
+	}
+
+	/**
+	 * The low-pass filter stage, equivalent to LPFWikipedia.
+	 */
+	private void filterLowPass(float[][] acceleration, long[] timestamps,
+			int from, int to)
+	{
+		if (!lpfAccelerationStaticAlpha)
+		{
+			if (timestampInit)
+			{
+				double weight = Math.max(1.0 / (periods + 1),
+						LPFWikipedia.DT_SMOOTHING);
+
+				for (int s = from; s < to; s++)
+				{
+					double period = (timestamps[s] - timestampPrevious[s])
+							/ 1000000000.0;
+
+					dtSmoothed[s] += weight * (period - dtSmoothed[s]);
+
+					alpha[s] = (float) (dtSmoothed[s] / (LPFWikipedia.TIME_CONSTANT
+							+ dtSmoothed[s]));
+				}
+			}
+
+			System.arraycopy(timestamps, from, timestampPrevious, from, to
+					- from);
+		}
+
+		if (lpfCount + 1 > LPFWikipedia.WARM_UP_SAMPLES)
+		{
+			for (int axis = 0; axis < 3; axis++)
+			{
+				kernels.lowPass(acceleration[axis], lpfOutput[axis], alpha,
+						from, to);
+			}
+		}
+	}
+
+	/**
+	 * The mean filter stage, equivalent to MeanFilter.
+	 */
+	private void filterMean(float[][] acceleration, int from, int to)
+	{
+		boolean full = meanCount == meanFilterWindow;
+
+		int count = full ? meanCount : meanCount + 1;
+		int base = (full ? meanHead : (meanHead + meanCount) % meanFilterWindow)
+				* streams;
+
+		for (int axis = 0; axis < 3; axis++)
+		{
+			float[] input = acceleration[axis];
+			float[] ring = meanRing[axis];
+			double[] sums = meanSums[axis];
+			double[] compensations = meanCompensations[axis];
+			float[] output = meanOutput[axis];
+
+			for (int s = from; s < to; s++)
+			{
+				float value = input[s];
+
+				// Replace the oldest sample, or add one while filling.
+				double delta = full ? (double) value - ring[base + s] : value;
+
+				// Kahan compensated update of the running sum.
+				double y = delta - compensations[s];
+				double t = sums[s] + y;
+
+				compensations[s] = (t - sums[s]) - y;
+				sums[s] = t;
+
+				ring[base + s] = value;
+
+				output[s] = (float) (sums[s] / count);
+			}
+		}
+	}
+
+	/**
+	 * The standard deviation gate and gravity subtraction stage, equivalent
+	 * to StdDev and SimpleLinearAcceleration.
+	 */
+	private void subtractGravity(float[][] acceleration,
+			float[][] linearAcceleration, int from, int to)
+	{
+		boolean full = varianceCount == sampleWindow;
+		boolean resync = sinceResync + 1 >= StdDev.RESYNC_INTERVAL;
+
+		int count = full ? varianceCount : varianceCount + 1;
+		int base = (full ? varianceHead : varianceCount) * streams;
+
+		float[] ax = acceleration[0];
+		float[] ay = acceleration[1];
+		float[] az = acceleration[2];
+
+		float[] gx = components[0];
+		float[] gy = components[1];
+		float[] gz = components[2];
+
+		for (int s = from; s < to; s++)
+		{
+			double x = ax[s];
+			double y = ay[s];
+			double z = az[s];
+
+			double magnitude = (float) (Math.sqrt(x * x + y * y + z * z)
+					/ gravity);
+
+			double mean = varianceMean[s];
+
+			if (full)
+			{
+				double old = varianceRing[base + s];
+
+				double delta = magnitude - old;
+				double updated = mean + delta / count;
+
+				varianceM2[s] += delta * (magnitude - updated + old - mean);
+				varianceMean[s] = updated;
+			}
+			else
+			{
+				double delta = magnitude - mean;
+				double updated = mean + delta / count;
+
+				varianceM2[s] += delta * (magnitude - updated);
+				varianceMean[s] = updated;
+			}
+
+			varianceRing[base + s] = magnitude;
+
+			if (resync)
+			{
+				resync(s, count);
+			}
+
+			if (count >= StdDev.MIN_SAMPLES)
+			{
+				stdDev[s] = (varianceM2[s] > 0) ? Math.sqrt(varianceM2[s]
+						/ (count - 1)) : 0;
+			}
+
+			// Estimate the gravity components when the stream is stable.
+			if (stdDev[s] < varianceThreshold)
+			{
+				gx[s] = ax[s];
+				gy[s] = ay[s];
+				gz[s] = az[s];
+			}
+		}
+
+		for (int axis = 0; axis < 3; axis++)
+		{
+			kernels.subtractGravity(acceleration[axis], components[axis],
+					linearAcceleration[axis], gravity, from, to);
+		}
+	}
+
+	/**
+	 * Recompute the moments of a stream's standard deviation window.
+	 */
+	private void resync(int s, int count)
+	{
+		double sum = 0;
+
+		for (int i = 0; i < count; i++)
+		{
+			sum += varianceRing[i * streams + s];
+		}
+
+		double mean = sum / count;
+
+		double m2 = 0;
+
+		for (int i = 0; i < count; i++)
+		{
+			double delta = varianceRing[i * streams + s] - mean;
+			m2 += delta * delta;
+		}
+
+		varianceMean[s] = mean;
+		varianceM2[s] = m2;
+	}
+
+	/**
+	 * Move the shared window positions once every stream has advanced.
+	 */
+	private void commit()
+	{
+		if (lpfAccelerationActive)
+		{
+			if (timestampInit)
+			{
+				periods++;
+			}
+
+			timestampInit = true;
+
+			lpfCount++;
+		}
+
+		if (meanFilterAccelerationActive)
+		{
+			if (meanCount == meanFilterWindow)
+			{
+				if (++meanHead == meanFilterWindow)
+				{
+					meanHead = 0;
+				}
+			}
+			else
+			{
+				meanCount++;
+			}
+		}
+
+		if (varianceCount == sampleWindow)
+		{
+			if (++varianceHead == sampleWindow)
+			{
+				varianceHead = 0;
+			}
+		}
+		else
+		{
+			varianceCount++;
+		}
+
+		if (++sinceResync >= StdDev.RESYNC_INTERVAL)
+		{
+			sinceResync = 0;
+		}
+	}
+}
@@ -0,0 +1,228 @@
+package com.kircherelectronics.simplelinearacceleration.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * An ordered chain of FilterStages that share one preallocated working
+ * buffer. Stages can be added, removed and reordered between calls.
+ * 
+ * A batch is processed in tiles of TILE_SIZE samples: a tile is copied into
+ * the working buffer once, every stage runs over it in place while it is in
+ * the L1 cache, and it is copied out once. The batch crosses memory twice
+ * regardless of the number of stages, each stage keeps its own tight loop for
+ * the JIT to optimize, and the cost of dispatching to a stage is paid per
+ * tile rather than per sample. A stage that needs the whole tile, such as
+ * one that looks across axes, works unchanged.
+ * 
+ * The stages are not fused into a single loop over the samples. Each stage
+ * is a recurrence whose state carries from one sample to the next, and its
+ * cost is that arithmetic rather than memory traffic, so a chain costs about
+ * the sum of its stages.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class FilterChain
+{
+	// The number of samples processed by every stage at a time, small enough
+	// for a tile and its timestamps to stay in the L1 cache.
+	public static final int TILE_SIZE = 256;
+
+	private List<FilterStage> stages = new ArrayList<FilterStage>();
+
+	// A snapshot of the stages, iterated without allocating.
+	private FilterStage[] chain = new FilterStage[0];
+
+	// The working buffer shared by the stages.
+	private float[] buffer = new float[TILE_SIZE * 3];
+
+	private long[] timestamps = new long[TILE_SIZE];
+
+	/**
+	 * Append a stage to the end of the chain.
+	 * 
+	 * @param stage
+	 *            The stage.
+	 */
+	public void addStage(FilterStage stage)
+	{
+		stages.add(stage);
+
+		update();
+	}
+
+	/**
+	 * Insert a stage into the chain.
+	 * 
+	 * @param index
+	 *            The position of the stage in the chain.
+	 * @param stage
+	 *            The stage.
+	 */
+	public void addStage(int index, FilterStage stage)
+	{
+		stages.add(index, stage);
+
+		update();
+	}
+
+	/**
+	 * Remove a stage from the chain.
+	 * 
+	 * @param stage
+	 *            The stage.
+	 * @return True if the stage was in the chain.
+	 */
+	public boolean removeStage(FilterStage stage)
+	{
+		boolean removed = stages.remove(stage);
+
+		update();
+
+		return removed;
+	}
+
+	/**
+	 * Move a stage to a new position in the chain.
+	 * 
+	 * @param stage
+	 *            The stage.
+	 * @param index
+	 *            The new position of the stage.
+	 */
+	public void moveStage(FilterStage stage, int index)
+	{
+		if (stages.remove(stage))
+		{
+			stages.add(index, stage);
+		}
+
+		update();
+	}
+
+	/**
+	 * Check if a stage is in the chain.
+	 * 
+	 * @param stage
+	 *            The stage.
+	 * @return True if the stage is in the chain.
+	 */
+	public boolean containsStage(FilterStage stage)
+	{
+		return stages.contains(stage);
+	}
+
+	/**
+	 * Get the position of a stage in the chain.
+	 * 
+	 * @param stage
+	 *            The stage.
+	 * @return The position of the stage, or -1 if it is not in the chain.
+	 */
+	public int indexOfStage(FilterStage stage)
+	{
+		return stages.indexOf(stage);
+	}
+
+	/**
+	 * Get the number of stages in the chain.
+	 * 
+	 * @return The number of stages.
+	 */
+	public int getStageCount()
+	{
+		return chain.length;
+	}
+
+	/**
+	 * Run a batch of samples through the chain.
+	 * 
+	 * @param input
+	 *            The interleaved x, y, z samples.
+	 * @param timestamps
+	 *            The sensor timestamp of each sample in nanoseconds, or null
+	 *            if the samples have no timestamps.
+	 * @param length
+	 *            The number of samples in the batch.
+	 * @param output
+	 *            The interleaved output of the chain, may be the same array as
+	 *            the input.
+	 */
+	public void process(float[] input, long[] timestamps, int length,
+			float[] output)
+	{
+		process(input, timestamps, 0, length, output, 0);
+	}
+
+	/**
+	 * Run a range of a batch of samples through the chain.
+	 * 
+	 * @param input
+	 *            The interleaved x, y, z samples.
+	 * @param timestamps
+	 *            The sensor timestamp of each sample in nanoseconds, or null
+	 *            if the samples have no timestamps.
+	 * @param offset
+	 *            The first sample of the range in the input and timestamps.
+	 * @param length
+	 *            The number of samples in the range.
+	 * @param output
+	 *            The interleaved output of the chain, may be the same array as
+	 *            the input.
+	 * @param outputOffset
+	 *            The sample of the output the range is written to.
+	 */
+	public void process(float[] input, long[] timestamps, int offset,
+			int length, float[] output, int outputOffset)
+	{
+		long[] tileTimestamps = (timestamps != null) ? this.timestamps : null;
+
+		for (int from = 0; from < length; from += TILE_SIZE)
+		{
+			int tile = Math.min(TILE_SIZE, length - from);
+
+			System.arraycopy(input, (offset + from) * 3, buffer, 0, tile * 3);
+
+			if (tileTimestamps != null)
+			{
+				System.arraycopy(timestamps, offset + from, tileTimestamps, 0,
+						tile);
+			}
+
+			for (int i = 0; i < chain.length; i++)
+			{
+				chain[i].process(buffer, tileTimestamps, tile);
+			}
+
+			System.arraycopy(buffer, 0, output, (outputOffset + from) * 3,
+					tile * 3);
+		}
+	}
+
+	/**
+	 * Take a snapshot of the stages for processing.
+	 */
+	private void update()
+	{
+		chain = stages.toArray(new FilterStage[stages.size()]);
+	}
+}
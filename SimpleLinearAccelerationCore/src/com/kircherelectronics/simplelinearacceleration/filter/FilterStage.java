@@ -0,0 +1,39 @@
+package com.kircherelectronics.simplelinearacceleration.filter;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * An interface for the stages of a FilterChain. A stage transforms a block of
+ * interleaved x, y, z samples in place in the working buffer of the chain and
+ * keeps whatever state it needs between blocks.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public interface FilterStage
+{
+	/**
+	 * Process a block of samples in place.
+	 * @param buffer The interleaved x, y, z samples, starting at zero.
+	 * @param timestamps The sensor timestamp of each sample in nanoseconds,
+	 * or null if the samples have no timestamps.
+	 * @param length The number of samples in the block.
+	 */
+	public void process(float[] buffer, long[] timestamps, int length);
+}
@@ -0,0 +1,48 @@
+package com.kircherelectronics.simplelinearacceleration.filter;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * An interface for classes that estimate the gravity components of the
+ * filtered acceleration. SimpleLinearAcceleration subtracts the estimate from
+ * the acceleration to get the linear acceleration.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public interface GravityEstimator
+{
+	/**
+	 * Add a sample and update the estimate.
+	 * @param acceleration The acceleration data, x, y, z starting at offset.
+	 * @param offset The offset of the x component of the sample.
+	 * @return Returns the x, y, z gravity components. The array is reused.
+	 */
+	public float[] addSample(float[] acceleration, int offset);
+
+	/**
+	 * Add a batch of samples and update the estimate after each.
+	 * @param acceleration The interleaved x, y, z acceleration data.
+	 * @param length The number of samples in the batch.
+	 * @param components The array the interleaved x, y, z gravity components
+	 * after each sample are written to.
+	 */
+	public void addSamples(float[] acceleration, int length,
+			float[] components);
+}
@@ -0,0 +1,67 @@
+package com.kircherelectronics.simplelinearacceleration.filter;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * A FilterStage that estimates gravity with a GravityEstimator, subtracts it
+ * and scales the result to units of gravity, turning acceleration into linear
+ * acceleration.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class GravityStage implements FilterStage
+{
+	private GravityEstimator gravityEstimator;
+
+	// 1 / the magnitude of gravity the output is normalized to.
+	private float inverseGravity;
+
+	// The gravity components of each sample of a tile.
+	private float[] components = new float[FilterChain.TILE_SIZE * 3];
+
+	public GravityStage(GravityEstimator gravityEstimator, float gravity)
+	{
+		this.gravityEstimator = gravityEstimator;
+		this.inverseGravity = 1 / gravity;
+	}
+
+	public void process(float[] buffer, long[] timestamps, int length)
+	{
+		if (components.length < length * 3)
+		{
+			components = new float[length * 3];
+		}
+
+		gravityEstimator.addSamples(buffer, length, components);
+
+		// Subtract the gravity component of the signal
+		// from the input acceleration signal to get the
+		// tilt compensated output.
+		for (int j = 0; j < length * 3; j++)
+		{
+			buffer[j] = (buffer[j] - components[j]) * inverseGravity;
+		}
+	}
+
+	public GravityEstimator getGravityEstimator()
+	{
+		return gravityEstimator;
+	}
+}
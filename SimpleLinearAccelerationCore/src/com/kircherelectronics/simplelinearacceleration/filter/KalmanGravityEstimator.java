@@ -0,0 +1,213 @@
+package com.kircherelectronics.simplelinearacceleration.filter;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Estimates gravity with a recursive Kalman filter that updates on every
+ * sample, so the estimate keeps tracking the orientation during sustained
+ * motion instead of freezing until the device is static again. Each axis of
+ * gravity is modelled as a random walk with processNoise per sample and
+ * measured by the acceleration with measurementNoise. The axes share the
+ * same model, so they share a single error variance.
+ * 
+ * Linear acceleration appears as a deviation of the magnitude of the
+ * acceleration from gravity. The measurement noise grows with the square of
+ * that deviation relative to the variance threshold, so the estimate follows
+ * the acceleration closely while the device is static and barely moves while
+ * it is shaken. This acts like a complementary filter whose crossover adapts
+ * to the motion. The deviation is taken as half the relative deviation of the
+ * squared magnitude, which matches the deviation of the magnitude for small
+ * motion and needs no square root. The update is constant time and holds no
+ * window of samples.
+ * 
+ * @author Kaleb
+ * @see http://en.wikipedia.org/wiki/Kalman_filter
+ * @version %I%, %G%
+ */
+public class KalmanGravityEstimator implements GravityEstimator
+{
+	// The default variance of the change of gravity per sample in (m/s^2)^2.
+	public static final double PROCESS_NOISE = 1e-6;
+
+	// The default variance of the sensor noise in (m/s^2)^2.
+	public static final double MEASUREMENT_NOISE = 1e-2;
+
+	private boolean init = false;
+
+	private double processNoise;
+
+	private double measurementNoise;
+
+	// 1 / gravity^2 in (m/s^2)^-2.
+	private double inverseGravitySquared;
+
+	// The inverse of twice the deviation of the magnitude from gravity, as a
+	// fraction of gravity, that doubles the measurement noise.
+	private double inverseMotionScale;
+
+	// The gravity estimate of each axis.
+	private double gx;
+	private double gy;
+	private double gz;
+
+	// The error variance of the estimate.
+	private double p;
+
+	private float[] components = new float[3];
+
+	/**
+	 * Create an estimator.
+	 * 
+	 * @param config
+	 *            The configuration of the pipeline, for the noise variances,
+	 *            variance threshold and gravity.
+	 */
+	public KalmanGravityEstimator(LinearAccelerationConfig config)
+	{
+		this.processNoise = config.getGravityProcessNoise();
+		this.measurementNoise = config.getGravityMeasurementNoise();
+
+		double gravity = config.getGravity();
+
+		inverseGravitySquared = 1 / (gravity * gravity);
+		inverseMotionScale = 1 / (2 * config.getVarianceThreshold());
+	}
+
+	/**
+	 * Add a sample and update the estimate.
+	 * 
+	 * @param acceleration
+	 *            The acceleration data, x, y, z starting at offset.
+	 * @param offset
+	 *            The offset of the x component of the sample.
+	 * @return Returns the x, y, z gravity components. The array is reused.
+	 */
+	public float[] addSample(float[] acceleration, int offset)
+	{
+		double x = acceleration[offset];
+		double y = acceleration[offset + 1];
+		double z = acceleration[offset + 2];
+
+		if (!init)
+		{
+			gx = x;
+			gy = y;
+			gz = z;
+
+			p = measurementNoise;
+
+			init = true;
+		}
+		else
+		{
+			// The deviation of the magnitude from gravity in units of the
+			// motion scale.
+			double deviation = ((x * x + y * y + z * z) * inverseGravitySquared - 1)
+					* inverseMotionScale;
+
+			// Predict.
+			p += processNoise;
+
+			// Update with the measurement noise inflated by the motion.
+			double gain = p
+					/ (p + measurementNoise * (1 + deviation * deviation));
+
+			gx += gain * (x - gx);
+			gy += gain * (y - gy);
+			gz += gain * (z - gz);
+
+			p *= 1 - gain;
+		}
+
+		components[0] = (float) gx;
+		components[1] = (float) gy;
+		components[2] = (float) gz;
+
+		return components;
+	}
+
+	/**
+	 * Add a batch of samples and update the estimate after each, in a single
+	 * loop with the estimate held in locals.
+	 * 
+	 * @param acceleration
+	 *            The interleaved x, y, z acceleration data.
+	 * @param length
+	 *            The number of samples in the batch.
+	 * @param components
+	 *            The array the interleaved x, y, z gravity components after
+	 *            each sample are written to.
+	 */
+	public void addSamples(float[] acceleration, int length,
+			float[] components)
+	{
+		int j = 0;
+
+		if (!init && length > 0)
+		{
+			addSample(acceleration, 0);
+
+			components[0] = this.components[0];
+			components[1] = this.components[1];
+			components[2] = this.components[2];
+
+			j = 3;
+		}
+
+		double gx = this.gx;
+		double gy = this.gy;
+		double gz = this.gz;
+		double p = this.p;
+
+		for (; j < length * 3; j += 3)
+		{
+			double x = acceleration[j];
+			double y = acceleration[j + 1];
+			double z = acceleration[j + 2];
+
+			double deviation = ((x * x + y * y + z * z)
+					* inverseGravitySquared - 1)
+					* inverseMotionScale;
+
+			p += processNoise;
+
+			double gain = p
+					/ (p + measurementNoise * (1 + deviation * deviation));
+
+			gx += gain * (x - gx);
+			gy += gain * (y - gy);
+			gz += gain * (z - gz);
+
+			p *= 1 - gain;
+
+			components[j] = (float) gx;
+			components[j + 1] = (float) gy;
+			components[j + 2] = (float) gz;
+		}
+
+		this.gx = gx;
+		this.gy = gy;
+		this.gz = gz;
+		this.p = p;
+
+		this.components[0] = (float) gx;
+		this.components[1] = (float) gy;
+		this.components[2] = (float) gz;
+	}
+}
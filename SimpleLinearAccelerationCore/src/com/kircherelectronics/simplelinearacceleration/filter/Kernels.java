@@ -0,0 +1,126 @@
+package com.kircherelectronics.simplelinearacceleration.filter;
+
+import java.util.Iterator;
+import java.util.ServiceLoader;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * The element-wise kernels of the linear acceleration pipeline that run across
+ * many streams at once. The scalar implementation is always available; a
+ * faster implementation, such as one built on a SIMD API, can be provided
+ * through a ServiceLoader entry for this class and is selected at runtime when
+ * it loads. Every implementation must produce bit-identical results to the
+ * scalar kernels.
+ * 
+ * Set the system property simplelinearacceleration.kernels to "scalar" to
+ * force the scalar kernels.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public abstract class Kernels
+{
+	private static Kernels defaultKernels;
+
+	/**
+	 * Get the fastest kernels available at runtime.
+	 * 
+	 * @return The kernels.
+	 */
+	public static synchronized Kernels getDefault()
+	{
+		if (defaultKernels == null)
+		{
+			defaultKernels = load();
+		}
+
+		return defaultKernels;
+	}
+
+	/**
+	 * Get the name of the kernels for reporting.
+	 * 
+	 * @return The name of the kernels.
+	 */
+	public abstract String getName();
+
+	/**
+	 * The Wikipedia low-pass filter update, output[i] = output[i] + alpha[i] *
+	 * (input[i] - output[i]).
+	 * 
+	 * @param input
+	 *            The input of the filter.
+	 * @param output
+	 *            The state and output of the filter.
+	 * @param alpha
+	 *            The alpha of each element.
+	 * @param from
+	 *            The first element.
+	 * @param to
+	 *            The element after the last element.
+	 */
+	public abstract void lowPass(float[] input, float[] output, float[] alpha,
+			int from, int to);
+
+	/**
+	 * Subtract gravity and scale to g, output[i] = (acceleration[i] -
+	 * components[i]) / gravity.
+	 * 
+	 * @param acceleration
+	 *            The acceleration.
+	 * @param components
+	 *            The gravity components.
+	 * @param output
+	 *            The linear acceleration.
+	 * @param gravity
+	 *            The magnitude of gravity.
+	 * @param from
+	 *            The first element.
+	 * @param to
+	 *            The element after the last element.
+	 */
+	public abstract void subtractGravity(float[] acceleration,
+			float[] components, float[] output, float gravity, int from, int to);
+
+	private static Kernels load()
+	{
+		if (!"scalar".equals(System
+				.getProperty("simplelinearacceleration.kernels")))
+		{
+			try
+			{
+				Iterator<Kernels> iterator = ServiceLoader.load(Kernels.class)
+						.iterator();
+
+				if (iterator.hasNext())
+				{
+					return iterator.next();
+				}
+			}
+			catch (Throwable t)
+			{
+				// The provider could not be loaded on this runtime, for
+				// example because its module is missing.
+			}
+		}
+
+		return new ScalarKernels();
+	}
+}
@@ -0,0 +1,447 @@
+package com.kircherelectronics.simplelinearacceleration.filter;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * A Butterworth low-pass filter implemented as a cascade of second-order
+ * sections (biquads). Compared to the single-pole LPFWikipedia, a higher order
+ * rolls off much more sharply above the cutoff, so gravity can be separated
+ * with a higher cutoff and therefore less lag. An odd order adds a first-order
+ * section.
+ * 
+ * The coefficients are designed with the bilinear transform for the sample
+ * rate measured from the sensor timestamps, smoothed the same way as
+ * LPFWikipedia. The cutoff as a fraction of the smoothed rate is quantized
+ * to a grid with a relative step of about 4e-3, and the coefficients are
+ * redesigned only when it moves to another cell of the grid, so jittered
+ * timestamps do not redesign them on every sample. The cell only depends on
+ * the samples, so a recording split into chunks still reprocesses to the same
+ * result. The damping of each section is precomputed and the prewarped cutoff
+ * of a low cutoff comes from a short series, so a redesign costs a division
+ * per section. With a static alpha the coefficients are designed once. Each
+ * section runs in transposed direct form II in double precision, since the
+ * poles of a low cutoff lie close to the unit circle. The per-sample update
+ * does not allocate.
+ * 
+ * The filter is primed with its first sample as a steady state, so it does not
+ * ring while rising from zero to gravity. With a static alpha, the cutoff is
+ * the fixed fraction of the sample rate that a single-pole filter with that
+ * alpha has, alpha / (2 * pi * (1 - alpha)), and the coefficients do not
+ * follow the sample rate.
+ * 
+ * @author Kaleb
+ * @see http://en.wikipedia.org/wiki/Butterworth_filter
+ * @version %I%, %G%
+ */
+public class LPFButterworth implements LowPassFilter
+{
+	// The default cutoff in Hz, the cutoff of LPFWikipedia with its default
+	// time constant.
+	public static final float CUTOFF = (float) (1 / (2 * Math.PI
+			* LPFWikipedia.TIME_CONSTANT));
+
+	// The default order of the filter.
+	public static final int ORDER = 4;
+
+	// The highest supported order.
+	public static final int MAX_ORDER = 8;
+
+	// The highest cutoff as a fraction of the sample rate, just below the
+	// Nyquist frequency.
+	private static final double MAX_NORMALIZED_CUTOFF = 0.49;
+
+	// The largest prewarp angle computed with the series for the tangent,
+	// where its truncation error is below 1e-10.
+	private static final double MAX_SERIES_ANGLE = 0.1;
+
+	// The normalized cutoff is quantized to cells of its double that keep the
+	// top 8 bits of the mantissa, a relative step of at most 2^-8. The filter
+	// is designed for the center of a cell, within 0.2% of the cutoff.
+	private static final int CUTOFF_CELL_SHIFT = 52 - 8;
+
+	private static final long CUTOFF_CELL_CENTER = 1L
+			<< (CUTOFF_CELL_SHIFT - 1);
+
+	// The number of coefficients of a section, b0, b1, b2, a1 and a2.
+	private static final int COEFFICIENTS = 5;
+
+	private boolean alphaStatic = false;
+
+	private boolean timestampInit = false;
+
+	// Whether the coefficients have been designed.
+	private boolean designed = false;
+
+	// Whether the state has been primed with the first filtered sample.
+	private boolean primed = false;
+
+	private int order;
+
+	private int sections;
+
+	private float cutoff;
+
+	private float alpha = LPFWikipedia.INITIAL_ALPHA;
+
+	// The sensor timestamp of the previous sample in nanoseconds.
+	private long timestampPrevious = 0;
+
+	// The smoothed sample period of the sensor timestamps in seconds.
+	private double dtSmoothed = 0;
+
+	// The cell of the normalized cutoff the coefficients were designed for,
+	// or -1 if they were designed for a static alpha.
+	private long cutoffCell = -1;
+
+	// The number of sample periods measured from sensor timestamps.
+	private int periods = 0;
+
+	// b0, b1, b2, a1, a2 of each section.
+	private double[] coefficients;
+
+	// The damping, 1 / Q, of each section, zero for the first-order section
+	// of an odd order.
+	private double[] damping;
+
+	// The two state variables of each section of each axis.
+	private double[] state;
+
+	private float[] output = new float[]
+	{ 0, 0, 0 };
+
+	/**
+	 * Create a filter with the default order and cutoff.
+	 */
+	public LPFButterworth()
+	{
+		this(ORDER, CUTOFF);
+	}
+
+	/**
+	 * Create a filter.
+	 * 
+	 * @param order
+	 *            The order of the filter, clamped to 1 to MAX_ORDER.
+	 * @param cutoff
+	 *            The -3 dB cutoff in Hz, clamped to just below the Nyquist
+	 *            frequency of the measured sample rate.
+	 */
+	public LPFButterworth(int order, float cutoff)
+	{
+		this.order = Math.min(Math.max(order, 1), MAX_ORDER);
+		this.cutoff = cutoff;
+
+		sections = (this.order + 1) / 2;
+
+		coefficients = new double[sections * COEFFICIENTS];
+		state = new double[sections * 2 * 3];
+
+		damping = new double[sections];
+
+		for (int section = 0; section < this.order / 2; section++)
+		{
+			// The damping of a conjugate pole pair of a Butterworth filter.
+			damping[section] = 2 * Math.sin(Math.PI * (2 * section + 1)
+					/ (2 * this.order));
+		}
+	}
+
+	/**
+	 * Add a sample. The sample period is measured with the system clock.
+	 * 
+	 * @param acceleration
+	 *            The acceleration data.
+	 * @return Returns the output of the filter.
+	 */
+	public float[] addSamples(float[] acceleration)
+	{
+		return addSamples(acceleration, System.nanoTime());
+	}
+
+	/**
+	 * Add a sample with its sensor timestamp.
+	 * 
+	 * @param acceleration
+	 *            The acceleration data.
+	 * @param timestamp
+	 *            The sensor timestamp of the sample in nanoseconds.
+	 * @return Returns the output of the filter.
+	 */
+	public float[] addSamples(float[] acceleration, long timestamp)
+	{
+		updateSamplePeriod(timestamp);
+
+		output[0] = filter(acceleration[0], 0);
+		output[1] = filter(acceleration[1], 1);
+		output[2] = filter(acceleration[2], 2);
+
+		return output;
+	}
+
+	/**
+	 * Add a batch of samples with their sensor timestamps.
+	 * 
+	 * @param acceleration
+	 *            The interleaved x, y, z acceleration data.
+	 * @param timestamps
+	 *            The timestamp of each sample in nanoseconds.
+	 * @param length
+	 *            The number of samples in the batch.
+	 * @param output
+	 *            The interleaved output of the filter, may be the same array
+	 *            as the acceleration data.
+	 */
+	public void addSamples(float[] acceleration, long[] timestamps,
+			int length, float[] output)
+	{
+		for (int i = 0, j = 0; i < length; i++, j += 3)
+		{
+			updateSamplePeriod(timestamps[i]);
+
+			output[j] = filter(acceleration[j], 0);
+			output[j + 1] = filter(acceleration[j + 1], 1);
+			output[j + 2] = filter(acceleration[j + 2], 2);
+		}
+
+		if (length > 0)
+		{
+			System.arraycopy(output, (length - 1) * 3, this.output, 0, 3);
+		}
+	}
+
+	/**
+	 * Run a sample of one axis through the cascade. Until the filter is
+	 * designed the input is passed through, the first sample after that
+	 * primes the filter.
+	 * 
+	 * @param value
+	 *            The sample.
+	 * @param axis
+	 *            The axis of the sample.
+	 * @return The filtered sample.
+	 */
+	private float filter(float value, int axis)
+	{
+		if (!designed)
+		{
+			return value;
+		}
+
+		if (!primed)
+		{
+			prime(axis, value);
+		}
+
+		double y = value;
+
+		int s = axis * sections * 2;
+
+		for (int c = 0; c < coefficients.length; c += COEFFICIENTS, s += 2)
+		{
+			double x = y;
+
+			// y = b0 * x + s1, s1 = b1 * x - a1 * y + s2, s2 = b2 * x - a2 * y
+			y = coefficients[c] * x + state[s];
+			state[s] = coefficients[c + 1] * x - coefficients[c + 3] * y
+					+ state[s + 1];
+			state[s + 1] = coefficients[c + 2] * x - coefficients[c + 4] * y;
+		}
+
+		if (axis == 2)
+		{
+			primed = true;
+		}
+
+		return (float) y;
+	}
+
+	/**
+	 * Set the state of every section of an axis to the steady state of a
+	 * constant input. The DC gain of each section is one, so every section
+	 * sees the same input and output.
+	 * 
+	 * @param axis
+	 *            The axis.
+	 * @param value
+	 *            The constant input.
+	 */
+	private void prime(int axis, double value)
+	{
+		int s = axis * sections * 2;
+
+		for (int c = 0; c < coefficients.length; c += COEFFICIENTS, s += 2)
+		{
+			state[s + 1] = (coefficients[c + 2] - coefficients[c + 4]) * value;
+			state[s] = (coefficients[c + 1] - coefficients[c + 3]) * value
+					+ state[s + 1];
+		}
+	}
+
+	/**
+	 * Update the smoothed sample period from a sensor timestamp and, unless
+	 * alpha is static, redesign the filter for it. The first periods are
+	 * averaged, after that the period follows rate changes with an
+	 * exponential moving average.
+	 * 
+	 * @param timestamp
+	 *            The sensor timestamp of the sample in nanoseconds.
+	 */
+	private void updateSamplePeriod(long timestamp)
+	{
+		if (timestampInit)
+		{
+			double period = (timestamp - timestampPrevious) / 1000000000.0;
+
+			periods++;
+
+			dtSmoothed += Math.max(1.0 / periods, LPFWikipedia.DT_SMOOTHING)
+					* (period - dtSmoothed);
+
+			if (!alphaStatic && dtSmoothed > 0)
+			{
+				long cell = Double.doubleToRawLongBits(cutoff * dtSmoothed)
+						>>> CUTOFF_CELL_SHIFT;
+
+				// Jitter in the timestamps only redesigns the filter when the
+				// normalized cutoff moves to another cell.
+				if (cell != cutoffCell)
+				{
+					design(Double.longBitsToDouble((cell << CUTOFF_CELL_SHIFT)
+							| CUTOFF_CELL_CENTER));
+
+					cutoffCell = cell;
+				}
+			}
+		}
+
+		timestampPrevious = timestamp;
+		timestampInit = true;
+	}
+
+	/**
+	 * Design the coefficients of the sections with the bilinear transform.
+	 * 
+	 * @param normalizedCutoff
+	 *            The cutoff as a fraction of the sample rate.
+	 */
+	private void design(double normalizedCutoff)
+	{
+		cutoffCell = -1;
+
+		// Prewarp the cutoff.
+		double angle = Math.PI
+				* Math.min(normalizedCutoff, MAX_NORMALIZED_CUTOFF);
+
+		double k;
+
+		if (angle <= MAX_SERIES_ANGLE)
+		{
+			// The Taylor series of the tangent, much cheaper than tan() for
+			// the low cutoffs used to separate gravity.
+			double angle2 = angle * angle;
+
+			k = angle
+					* (1 + angle2
+							* (1.0 / 3 + angle2
+									* (2.0 / 15 + angle2 * (17.0 / 315))));
+		}
+		else
+		{
+			k = Math.tan(angle);
+		}
+
+		double k2 = k * k;
+
+		for (int section = 0; section < sections; section++)
+		{
+			int c = section * COEFFICIENTS;
+
+			if (damping[section] == 0)
+			{
+				// The real pole of an odd order.
+				double norm = 1 / (1 + k);
+
+				coefficients[c] = k * norm;
+				coefficients[c + 1] = k * norm;
+				coefficients[c + 2] = 0;
+				coefficients[c + 3] = (k - 1) * norm;
+				coefficients[c + 4] = 0;
+			}
+			else
+			{
+				double kd = k * damping[section];
+
+				double norm = 1 / (1 + kd + k2);
+
+				coefficients[c] = k2 * norm;
+				coefficients[c + 1] = 2 * k2 * norm;
+				coefficients[c + 2] = k2 * norm;
+				coefficients[c + 3] = 2 * (k2 - 1) * norm;
+				coefficients[c + 4] = (1 - kd + k2) * norm;
+			}
+		}
+
+		designed = true;
+	}
+
+	/**
+	 * Indicate if alpha should be static. With a static alpha the cutoff is a
+	 * fixed fraction of the sample rate derived from alpha.
+	 * 
+	 * @param alphaStatic
+	 *            A static value for alpha
+	 */
+	public void setAlphaStatic(boolean alphaStatic)
+	{
+		this.alphaStatic = alphaStatic;
+
+		if (alphaStatic)
+		{
+			setAlpha(alpha);
+		}
+	}
+
+	/**
+	 * Set static alpha. The alpha is only used when alpha is static.
+	 * 
+	 * @param alpha
+	 *            The value for alpha, 0 < alpha <= 1
+	 */
+	public void setAlpha(float alpha)
+	{
+		this.alpha = alpha;
+
+		if (alphaStatic)
+		{
+			design((alpha < 1) ? alpha / (2 * Math.PI * (1 - alpha))
+					: MAX_NORMALIZED_CUTOFF);
+		}
+	}
+
+	/**
+	 * Set the cutoff. The filter is redesigned with the next sample.
+	 * 
+	 * @param cutoff
+	 *            The -3 dB cutoff in Hz.
+	 */
+	public void setCutoff(float cutoff)
+	{
+		this.cutoff = cutoff;
+	}
+}
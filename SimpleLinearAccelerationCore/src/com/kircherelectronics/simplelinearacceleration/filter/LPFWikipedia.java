@@ -0,0 +1,305 @@
+package com.kircherelectronics.simplelinearacceleration.filter;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * An implementation of the Wikipedia low-pass filter. The Wikipedia LPF, is an
+ * IIR single-pole implementation. The coefficient, a (alpha), can be adjusted
+ * based on the sample period of the sensor to produce the desired time constant
+ * that the filter will act on. It takes a simple form of y[i] = y[i] + alpha *
+ * (x[i] - y[i]). Alpha is defined as alpha = dt / (timeConstant + dt);) where
+ * the time constant is the length of signals the filter should act on and dt is
+ * the sample period (1/frequency) of the sensor.
+ * 
+ * When the samples carry sensor timestamps, dt is a smoothed per-sample period
+ * derived only from those timestamps, so replaying a recording produces the
+ * same output regardless of the replay speed.
+ * 
+ * @author Kaleb
+ * @see http://en.wikipedia.org/wiki/Low-pass_filter
+ * @version %I%, %G%
+ */
+public class LPFWikipedia implements LowPassFilter
+{
+	// The default time constant of the filter in seconds.
+	public static final float TIME_CONSTANT = 0.18f;
+
+	// The alpha used until the sample period is known.
+	static final float INITIAL_ALPHA = 0.1f;
+
+	// The number of samples before the filter starts updating its output.
+	static final int WARM_UP_SAMPLES = 5;
+
+	// The weight of a new sample period in the smoothed dt once the first
+	// periods have been averaged.
+	public static final double DT_SMOOTHING = 0.05;
+
+	// The number of periods after which 1 / periods is below DT_SMOOTHING.
+	private static final int AVERAGED_PERIODS = (int) Math
+			.ceil(1 / DT_SMOOTHING);
+
+	private boolean alphaStatic = false;
+
+	private boolean timestampInit = false;
+
+	// Constants for the low-pass filters
+	private float timeConstant = TIME_CONSTANT;
+	private float alpha = INITIAL_ALPHA;
+	private float dt = 0;
+
+	// Timestamps for the low-pass filters
+	private long timestamp = System.nanoTime();
+	private long timestampOld = System.nanoTime();
+
+	// The sensor timestamp of the previous sample in nanoseconds.
+	private long timestampPrevious = 0;
+
+	// The smoothed sample period of the sensor timestamps in seconds.
+	private double dtSmoothed = 0;
+
+	private int count = 0;
+
+	// The number of sample periods measured from sensor timestamps.
+	private int periods = 0;
+
+	// Gravity and linear accelerations components for the
+	// Wikipedia low-pass filter
+	private float[] output = new float[]
+	{ 0, 0, 0 };
+
+	// Raw accelerometer data
+	private float[] input = new float[]
+	{ 0, 0, 0 };
+
+	/**
+	 * Add a sample.
+	 * 
+	 * @param acceleration
+	 *            The acceleration data.
+	 * @return Returns the output of the filter.
+	 */
+	public float[] addSamples(float[] acceleration)
+	{
+		// Get a local copy of the sensor values
+		System.arraycopy(acceleration, 0, this.input, 0, acceleration.length);
+
+		if (!alphaStatic)
+		{
+			timestamp = System.nanoTime();
+
+			// Find the sample period (between updates).
+			// Convert from nanoseconds to seconds
+			dt = (float) ((timestamp - timestampOld) / 1000000000.0 / count);
+
+			// Calculate Wikipedia low-pass alpha
+			alpha = dt / (timeConstant + dt);
+
+		}
+
+		count++;
+
+		if (count > WARM_UP_SAMPLES)
+		{
+			// Update the Wikipedia filter
+			// y[i] = y[i] + alpha * (x[i] - y[i])
+			output[0] = output[0] + alpha * (this.input[0] - output[0]);
+			output[1] = output[1] + alpha * (this.input[1] - output[1]);
+			output[2] = output[2] + alpha * (this.input[2] - output[2]);
+		}
+
+		return output;
+	}
+
+	/**
+	 * Add a sample with its sensor timestamp.
+	 * 
+	 * @param acceleration
+	 *            The acceleration data.
+	 * @param timestamp
+	 *            The sensor timestamp of the sample in nanoseconds.
+	 * @return Returns the output of the filter.
+	 */
+	public float[] addSamples(float[] acceleration, long timestamp)
+	{
+		// Get a local copy of the sensor values
+		System.arraycopy(acceleration, 0, this.input, 0, acceleration.length);
+
+		updateSamplePeriod(timestamp);
+
+		count++;
+
+		if (count > WARM_UP_SAMPLES)
+		{
+			// Update the Wikipedia filter
+			// y[i] = y[i] + alpha * (x[i] - y[i])
+			output[0] = output[0] + alpha * (this.input[0] - output[0]);
+			output[1] = output[1] + alpha * (this.input[1] - output[1]);
+			output[2] = output[2] + alpha * (this.input[2] - output[2]);
+		}
+
+		return output;
+	}
+
+	/**
+	 * Add a batch of samples with their sensor timestamps.
+	 * 
+	 * @param acceleration
+	 *            The interleaved x, y, z acceleration data.
+	 * @param timestamps
+	 *            The timestamp of each sample in nanoseconds.
+	 * @param length
+	 *            The number of samples in the batch.
+	 * @param output
+	 *            The interleaved output of the filter, may be the same array
+	 *            as the acceleration data.
+	 */
+	public void addSamples(float[] acceleration, long[] timestamps,
+			int length, float[] output)
+	{
+		float x = this.output[0];
+		float y = this.output[1];
+		float z = this.output[2];
+
+		// The state of updateSamplePeriod, held in locals for the loop.
+		long previous = timestampPrevious;
+		double smoothed = dtSmoothed;
+		int periods = this.periods;
+		float alpha = this.alpha;
+		int count = this.count;
+
+		for (int i = 0, j = 0; i < length; i++, j += 3)
+		{
+			long timestamp = timestamps[i];
+
+			if (timestampInit)
+			{
+				double period = (timestamp - previous) / 1000000000.0;
+
+				periods++;
+
+				smoothed += weight(periods) * (period - smoothed);
+
+				if (!alphaStatic)
+				{
+					alpha = (float) (smoothed / (timeConstant + smoothed));
+				}
+			}
+
+			previous = timestamp;
+			timestampInit = true;
+
+			count++;
+
+			if (count > WARM_UP_SAMPLES)
+			{
+				// y[i] = y[i] + alpha * (x[i] - y[i])
+				x = x + alpha * (acceleration[j] - x);
+				y = y + alpha * (acceleration[j + 1] - y);
+				z = z + alpha * (acceleration[j + 2] - z);
+			}
+
+			output[j] = x;
+			output[j + 1] = y;
+			output[j + 2] = z;
+		}
+
+		this.output[0] = x;
+		this.output[1] = y;
+		this.output[2] = z;
+
+		timestampPrevious = previous;
+		dtSmoothed = smoothed;
+		this.periods = periods;
+		this.alpha = alpha;
+		this.count = count;
+
+		if (!alphaStatic && periods > 0)
+		{
+			dt = (float) smoothed;
+		}
+	}
+
+	/**
+	 * Update the smoothed sample period from a sensor timestamp and, unless
+	 * alpha is static, alpha. The first periods are averaged, after that the
+	 * period follows rate changes with an exponential moving average.
+	 * 
+	 * @param timestamp
+	 *            The sensor timestamp of the sample in nanoseconds.
+	 */
+	private void updateSamplePeriod(long timestamp)
+	{
+		if (timestampInit)
+		{
+			double period = (timestamp - timestampPrevious) / 1000000000.0;
+
+			periods++;
+
+			dtSmoothed += weight(periods) * (period - dtSmoothed);
+
+			if (!alphaStatic)
+			{
+				dt = (float) dtSmoothed;
+
+				// Calculate Wikipedia low-pass alpha
+				alpha = (float) (dtSmoothed / (timeConstant + dtSmoothed));
+			}
+		}
+
+		timestampPrevious = timestamp;
+		timestampInit = true;
+	}
+
+	/**
+	 * Get the weight of the newest of a number of sample periods in the
+	 * smoothed dt, the average of the first periods and DT_SMOOTHING after
+	 * that. The division is only needed while the periods are averaged.
+	 */
+	private static double weight(int periods)
+	{
+		if (periods < AVERAGED_PERIODS)
+		{
+			return Math.max(1.0 / periods, DT_SMOOTHING);
+		}
+
+		return DT_SMOOTHING;
+	}
+
+	/**
+	 * Indicate if alpha should be static.
+	 * 
+	 * @param alphaStatic
+	 *            A static value for alpha
+	 */
+	public void setAlphaStatic(boolean alphaStatic)
+	{
+		this.alphaStatic = alphaStatic;
+	}
+
+	/**
+	 * Set static alpha.
+	 * 
+	 * @param alpha
+	 *            The value for alpha, 0 < alpha <= 1
+	 */
+	public void setAlpha(float alpha)
+	{
+		this.alpha = alpha;
+	}
+}
@@ -0,0 +1,249 @@
+package com.kircherelectronics.simplelinearacceleration.filter;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * The configuration of the linear acceleration pipeline. Holds everything the
+ * filters used to read from the Android preferences and the Activity, so the
+ * pipeline can be configured the same way on a device or a plain JVM.
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class LinearAccelerationConfig
+{
+	// Standard gravity in m/s^2, the same value as
+	// SensorManager.GRAVITY_EARTH.
+	public static final float GRAVITY_EARTH = 9.80665f;
+
+	private boolean lpfAccelerationActive = false;
+
+	private boolean lpfAccelerationStaticAlpha = false;
+
+	private boolean meanFilterAccelerationActive = false;
+
+	// Use a Butterworth low-pass filter instead of the Wikipedia filter.
+	private boolean lpfAccelerationButterworth = false;
+
+	private float lpfAccelerationAlpha = 0.4f;
+
+	// The order and cutoff in Hz of the Butterworth low-pass filter.
+	private int lpfAccelerationOrder = LPFButterworth.ORDER;
+	private float lpfAccelerationCutoff = LPFButterworth.CUTOFF;
+
+	private int meanFilterAccelerationWindow = 10;
+
+	// Reject spikes with a median filter ahead of the low-pass filter.
+	private boolean medianFilterAccelerationActive = false;
+
+	private int medianFilterAccelerationWindow = 5;
+
+	// The size of the sample window that determines RMS Amplitude Noise
+	// (standard deviation)
+	private int sampleWindow = 50;
+
+	// The standard deviation below which the device is considered static
+	// and the gravity estimate is updated.
+	private double varianceThreshold = 0.05;
+
+	private float gravity = GRAVITY_EARTH;
+
+	// Estimate gravity with the Kalman filter instead of the variance gate.
+	private boolean gravityEstimatorKalman = false;
+
+	// The noise variances of the Kalman gravity estimator.
+	private double gravityProcessNoise = KalmanGravityEstimator.PROCESS_NOISE;
+	private double gravityMeasurementNoise = KalmanGravityEstimator.MEASUREMENT_NOISE;
+
+	public boolean isLpfAccelerationActive()
+	{
+		return lpfAccelerationActive;
+	}
+
+	public void setLpfAccelerationActive(boolean lpfAccelerationActive)
+	{
+		this.lpfAccelerationActive = lpfAccelerationActive;
+	}
+
+	public boolean isLpfAccelerationStaticAlpha()
+	{
+		return lpfAccelerationStaticAlpha;
+	}
+
+	public void setLpfAccelerationStaticAlpha(
+			boolean lpfAccelerationStaticAlpha)
+	{
+		this.lpfAccelerationStaticAlpha = lpfAccelerationStaticAlpha;
+	}
+
+	public boolean isMeanFilterAccelerationActive()
+	{
+		return meanFilterAccelerationActive;
+	}
+
+	public void setMeanFilterAccelerationActive(
+			boolean meanFilterAccelerationActive)
+	{
+		this.meanFilterAccelerationActive = meanFilterAccelerationActive;
+	}
+
+	public boolean isLpfAccelerationButterworth()
+	{
+		return lpfAccelerationButterworth;
+	}
+
+	public void setLpfAccelerationButterworth(
+			boolean lpfAccelerationButterworth)
+	{
+		this.lpfAccelerationButterworth = lpfAccelerationButterworth;
+	}
+
+	public float getLpfAccelerationAlpha()
+	{
+		return lpfAccelerationAlpha;
+	}
+
+	public void setLpfAccelerationAlpha(float lpfAccelerationAlpha)
+	{
+		this.lpfAccelerationAlpha = lpfAccelerationAlpha;
+	}
+
+	public int getLpfAccelerationOrder()
+	{
+		return lpfAccelerationOrder;
+	}
+
+	public void setLpfAccelerationOrder(int lpfAccelerationOrder)
+	{
+		this.lpfAccelerationOrder = lpfAccelerationOrder;
+	}
+
+	public float getLpfAccelerationCutoff()
+	{
+		return lpfAccelerationCutoff;
+	}
+
+	public void setLpfAccelerationCutoff(float lpfAccelerationCutoff)
+	{
+		this.lpfAccelerationCutoff = lpfAccelerationCutoff;
+	}
+
+	public int getMeanFilterAccelerationWindow()
+	{
+		return meanFilterAccelerationWindow;
+	}
+
+	public void setMeanFilterAccelerationWindow(
+			int meanFilterAccelerationWindow)
+	{
+		this.meanFilterAccelerationWindow = meanFilterAccelerationWindow;
+	}
+
+	public boolean isMedianFilterAccelerationActive()
+	{
+		return medianFilterAccelerationActive;
+	}
+
+	public void setMedianFilterAccelerationActive(
+			boolean medianFilterAccelerationActive)
+	{
+		this.medianFilterAccelerationActive = medianFilterAccelerationActive;
+	}
+
+	public int getMedianFilterAccelerationWindow()
+	{
+		return medianFilterAccelerationWindow;
+	}
+
+	public void setMedianFilterAccelerationWindow(
+			int medianFilterAccelerationWindow)
+	{
+		this.medianFilterAccelerationWindow = medianFilterAccelerationWindow;
+	}
+
+	/**
+	 * Get the sample window size for the standard deviation.
+	 *
+	 * @return Sample window size for the standard deviation.
+	 */
+	public int getSampleWindow()
+	{
+		return sampleWindow;
+	}
+
+	public void setSampleWindow(int sampleWindow)
+	{
+		this.sampleWindow = sampleWindow;
+	}
+
+	public double getVarianceThreshold()
+	{
+		return varianceThreshold;
+	}
+
+	public void setVarianceThreshold(double varianceThreshold)
+	{
+		this.varianceThreshold = varianceThreshold;
+	}
+
+	/**
+	 * Get the magnitude of gravity the output is normalized to.
+	 *
+	 * @return The magnitude of gravity in m/s^2.
+	 */
+	public float getGravity()
+	{
+		return gravity;
+	}
+
+	public void setGravity(float gravity)
+	{
+		this.gravity = gravity;
+	}
+
+	public boolean isGravityEstimatorKalman()
+	{
+		return gravityEstimatorKalman;
+	}
+
+	public void setGravityEstimatorKalman(boolean gravityEstimatorKalman)
+	{
+		this.gravityEstimatorKalman = gravityEstimatorKalman;
+	}
+
+	public double getGravityProcessNoise()
+	{
+		return gravityProcessNoise;
+	}
+
+	public void setGravityProcessNoise(double gravityProcessNoise)
+	{
+		this.gravityProcessNoise = gravityProcessNoise;
+	}
+
+	public double getGravityMeasurementNoise()
+	{
+		return gravityMeasurementNoise;
+	}
+
+	public void setGravityMeasurementNoise(double gravityMeasurementNoise)
+	{
+		this.gravityMeasurementNoise = gravityMeasurementNoise;
+	}
+}
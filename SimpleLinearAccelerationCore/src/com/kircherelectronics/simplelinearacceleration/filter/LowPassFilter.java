@@ -34,6 +34,26 @@ public interface LowPassFilter
 	 */
 	public float[] addSamples(float[] acceleration);
 
+	/**
+	 * Add a sample with its sensor timestamp. The sample period is derived
+	 * from the timestamps rather than the system clock.
+	 * @param acceleration The acceleration data.
+	 * @param timestamp The sensor timestamp of the sample in nanoseconds.
+	 * @return Returns the output of the filter.
+	 */
+	public float[] addSamples(float[] acceleration, long timestamp);
+
+	/**
+	 * Add a batch of samples.
+	 * @param acceleration The interleaved x, y, z acceleration data.
+	 * @param timestamps The timestamp of each sample in nanoseconds.
+	 * @param length The number of samples in the batch.
+	 * @param output The interleaved output of the filter, may be the same
+	 * array as the acceleration data.
+	 */
+	public void addSamples(float[] acceleration, long[] timestamps, int length,
+			float[] output);
+
 	/**
 	 * Indicate if alpha should be static.
 	 * @param alphaStatic A static value for alpha
@@ -0,0 +1,60 @@
+package com.kircherelectronics.simplelinearacceleration.filter;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * A FilterStage that runs a LowPassFilter. Samples without timestamps are
+ * added one at a time, so the filter measures the sample period with the
+ * system clock.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class LowPassFilterStage implements FilterStage
+{
+	private LowPassFilter lowPassFilter;
+
+	private float[] sample = new float[3];
+
+	public LowPassFilterStage(LowPassFilter lowPassFilter)
+	{
+		this.lowPassFilter = lowPassFilter;
+	}
+
+	public void process(float[] buffer, long[] timestamps, int length)
+	{
+		if (timestamps != null)
+		{
+			lowPassFilter.addSamples(buffer, timestamps, length, buffer);
+
+			return;
+		}
+
+		for (int j = 0; j < length * 3; j += 3)
+		{
+			System.arraycopy(buffer, j, sample, 0, 3);
+			System.arraycopy(lowPassFilter.addSamples(sample), 0, buffer, j, 3);
+		}
+	}
+
+	public LowPassFilter getLowPassFilter()
+	{
+		return lowPassFilter;
+	}
+}
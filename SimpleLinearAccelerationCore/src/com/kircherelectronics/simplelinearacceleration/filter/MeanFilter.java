@@ -0,0 +1,394 @@
+package com.kircherelectronics.simplelinearacceleration.filter;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright 2013, Kircher Electronics
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Implements a mean filter designed to smooth the data points based on a mean.
+ * Each channel of the data set is kept in a preallocated primitive ring buffer
+ * and the mean is maintained from a compensated (Kahan) running sum, so adding
+ * a sample is O(1) regardless of the size of the window.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ * 
+ */
+public class MeanFilter
+{
+	// The size of the mean filters rolling window.
+	private int filterWindow = 30;
+
+	private boolean dataInit;
+
+	// The number of channels in the data set.
+	private int channels;
+
+	// The number of samples currently held in the window.
+	private int count;
+
+	// The ring index of the oldest sample in the window.
+	private int head;
+
+	// The rolling window of each channel laid out as [sample][channel].
+	private float[] ring;
+
+	// The running sum of each channel and its Kahan compensation.
+	private double[] sums;
+	private double[] compensations;
+
+	/**
+	 * Initialize a new MeanFilter object.
+	 */
+	public MeanFilter()
+	{
+		dataInit = false;
+	}
+
+	/**
+	 * Filter the data.
+	 * 
+	 * @param data
+	 *            contains input the data.
+	 * @return the filtered output data in a new array.
+	 */
+	public float[] filterFloat(float[] data)
+	{
+		return filterFloat(data, new float[data.length]);
+	}
+
+	/**
+	 * Filter the data into a caller supplied array. The output array may be
+	 * the same array as the input data.
+	 * 
+	 * @param data
+	 *            contains input the data.
+	 * @param output
+	 *            the array to write the filtered output data to.
+	 * @return the output array.
+	 */
+	public float[] filterFloat(float[] data, float[] output)
+	{
+		// Initialize the data structures for the data set.
+		if (!dataInit)
+		{
+			init(data.length);
+		}
+
+		add(data, 0);
+
+		mean(output, 0);
+
+		return output;
+	}
+
+	/**
+	 * Filter a batch of interleaved data points.
+	 * 
+	 * @param data
+	 *            contains the interleaved input data.
+	 * @param channels
+	 *            the number of channels in each data point, this must not
+	 *            change once the filter has been initialized.
+	 * @param length
+	 *            the number of data points in the batch.
+	 * @param output
+	 *            the array to write the interleaved output data to, may be
+	 *            the same array as the input data.
+	 */
+	public void filterFloat(float[] data, int channels, int length,
+			float[] output)
+	{
+		// Initialize the data structures for the data set.
+		if (!dataInit)
+		{
+			init(channels);
+		}
+
+		if (channels == 3)
+		{
+			filterFloat3(data, length, output);
+
+			return;
+		}
+
+		for (int i = 0, offset = 0; i < length; i++, offset += channels)
+		{
+			add(data, offset);
+
+			mean(output, offset);
+		}
+	}
+
+	/**
+	 * Filter a batch of interleaved x, y, z data points. This is the loop of
+	 * add and mean with the ring index and the running sums held in locals,
+	 * so the three Kahan chains run side by side instead of through memory.
+	 * 
+	 * @param data
+	 *            contains the interleaved input data.
+	 * @param length
+	 *            the number of data points in the batch.
+	 * @param output
+	 *            the array to write the interleaved output data to, may be
+	 *            the same array as the input data.
+	 */
+	private void filterFloat3(float[] data, int length, float[] output)
+	{
+		float[] ring = this.ring;
+		int window = filterWindow;
+		int head = this.head;
+		int count = this.count;
+
+		double sx = sums[0];
+		double sy = sums[1];
+		double sz = sums[2];
+
+		double cx = compensations[0];
+		double cy = compensations[1];
+		double cz = compensations[2];
+
+		double scale = 1.0 / Math.max(1, count);
+
+		for (int j = 0; j < length * 3; j += 3)
+		{
+			float x = data[j];
+			float y = data[j + 1];
+			float z = data[j + 2];
+
+			double dx;
+			double dy;
+			double dz;
+
+			if (count == window)
+			{
+				// The window is full, replace the oldest sample.
+				int slot = head * 3;
+
+				dx = (double) x - ring[slot];
+				dy = (double) y - ring[slot + 1];
+				dz = (double) z - ring[slot + 2];
+
+				if (++head == window)
+				{
+					head = 0;
+				}
+
+				ring[slot] = x;
+				ring[slot + 1] = y;
+				ring[slot + 2] = z;
+			}
+			else
+			{
+				int slot = ((head + count) % window) * 3;
+
+				dx = x;
+				dy = y;
+				dz = z;
+
+				ring[slot] = x;
+				ring[slot + 1] = y;
+				ring[slot + 2] = z;
+
+				scale = 1.0 / ++count;
+			}
+
+			// The Kahan compensated update of each running sum.
+			double v = dx - cx;
+			double t = sx + v;
+
+			cx = (t - sx) - v;
+			sx = t;
+
+			v = dy - cy;
+			t = sy + v;
+
+			cy = (t - sy) - v;
+			sy = t;
+
+			v = dz - cz;
+			t = sz + v;
+
+			cz = (t - sz) - v;
+			sz = t;
+
+			output[j] = (float) (sx * scale);
+			output[j + 1] = (float) (sy * scale);
+			output[j + 2] = (float) (sz * scale);
+		}
+
+		sums[0] = sx;
+		sums[1] = sy;
+		sums[2] = sz;
+
+		compensations[0] = cx;
+		compensations[1] = cy;
+		compensations[2] = cz;
+
+		this.head = head;
+		this.count = count;
+	}
+
+	/**
+	 * Set the size of the rolling window. If the filter is already running,
+	 * the most recent samples that still fit in the new window are retained.
+	 * 
+	 * @param size
+	 *            the size of the window, windows smaller than one sample are
+	 *            treated as one sample.
+	 */
+	public void setWindowSize(int size)
+	{
+		size = Math.max(1, size);
+
+		if (!dataInit)
+		{
+			this.filterWindow = size;
+
+			return;
+		}
+
+		int retained = Math.min(count, size);
+
+		float[] resized = new float[size * channels];
+
+		// Copy the newest samples, oldest first, to the start of the new ring.
+		int first = head + count - retained;
+
+		for (int i = 0; i < retained; i++)
+		{
+			System.arraycopy(ring, ((first + i) % filterWindow) * channels,
+					resized, i * channels, channels);
+		}
+
+		this.ring = resized;
+		this.filterWindow = size;
+		this.head = 0;
+		this.count = retained;
+
+		// Recompute the sums from scratch so no retired sample leaks through
+		// the compensation terms.
+		for (int i = 0; i < channels; i++)
+		{
+			sums[i] = 0;
+			compensations[i] = 0;
+		}
+
+		for (int i = 0; i < retained * channels; i++)
+		{
+			accumulate(i % channels, ring[i]);
+		}
+	}
+
+	/**
+	 * Add a data point to the rolling window.
+	 * 
+	 * @param data
+	 *            contains the input data.
+	 * @param offset
+	 *            the offset of the data point in the input data.
+	 */
+	private void add(float[] data, int offset)
+	{
+		if (count == filterWindow)
+		{
+			// The window is full, replace the oldest sample in a single step.
+			int slot = head * channels;
+
+			for (int i = 0; i < channels; i++)
+			{
+				float value = data[offset + i];
+
+				accumulate(i, (double) value - ring[slot + i]);
+
+				ring[slot + i] = value;
+			}
+
+			if (++head == filterWindow)
+			{
+				head = 0;
+			}
+		}
+		else
+		{
+			int slot = ((head + count) % filterWindow) * channels;
+
+			for (int i = 0; i < channels; i++)
+			{
+				ring[slot + i] = data[offset + i];
+
+				accumulate(i, data[offset + i]);
+			}
+
+			count++;
+		}
+	}
+
+	/**
+	 * Write the mean of the rolling window.
+	 * 
+	 * @param output
+	 *            the array to write the output data to.
+	 * @param offset
+	 *            the offset of the data point in the output data.
+	 */
+	private void mean(float[] output, int offset)
+	{
+		double scale = 1.0 / count;
+
+		for (int i = 0; i < channels; i++)
+		{
+			output[offset + i] = (float) (sums[i] * scale);
+		}
+	}
+
+	/**
+	 * Allocate the rolling window for the data set.
+	 * 
+	 * @param channels
+	 *            the number of channels in the data set.
+	 */
+	private void init(int channels)
+	{
+		this.channels = channels;
+
+		ring = new float[filterWindow * channels];
+		sums = new double[channels];
+		compensations = new double[channels];
+
+		count = 0;
+		head = 0;
+
+		dataInit = true;
+	}
+
+	/**
+	 * Add a value to the running sum of a channel with Kahan compensation.
+	 * 
+	 * @param channel
+	 *            the channel of the running sum.
+	 * @param value
+	 *            the value to add.
+	 */
+	private void accumulate(int channel, double value)
+	{
+		double y = value - compensations[channel];
+		double t = sums[channel] + y;
+
+		compensations[channel] = (t - sums[channel]) - y;
+		sums[channel] = t;
+	}
+}
@@ -0,0 +1,485 @@
+package com.kircherelectronics.simplelinearacceleration.filter;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Implements a rolling median filter that rejects single-sample spikes which
+ * a mean filter would smear into the output. Each channel of the data set is
+ * kept in a preallocated primitive ring buffer, indexed by two heaps of ring
+ * slots: a max-heap holding the lower half of the window and a min-heap
+ * holding the upper half, so the median is at the top of the heaps. The heaps
+ * keep a copy of the value of each slot next to it, negated in the upper heap
+ * so both halves are sifted as max-heaps.
+ * 
+ * Every ring slot knows its position in its heap. Once the window is full, the
+ * newest sample overwrites the oldest in place and is sifted within its heap,
+ * followed by at most one exchange of the heap tops, so adding a sample is
+ * O(log window) and does not allocate.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ * 
+ */
+public class MedianFilter
+{
+	// The size of the median filters rolling window.
+	private int filterWindow = 30;
+
+	private boolean dataInit;
+
+	// The number of channels in the data set.
+	private int channels;
+
+	// The number of samples currently held in the window.
+	private int count;
+
+	// The ring index of the oldest sample in the window.
+	private int head;
+
+	// The number of slots the lower heap holds when the window is full, the
+	// lower heap holds the extra slot of an odd window.
+	private int lowCapacity;
+
+	// The rolling window of each channel laid out as [sample][channel].
+	private float[] ring;
+
+	// The ring slots of the lower heap followed by the upper heap, for each
+	// channel laid out as [channel][position].
+	private int[] heap;
+
+	// The value of each heap position, negated in the upper heap.
+	private float[] keys;
+
+	// The index in heap of each ring slot laid out as [channel][slot].
+	private int[] position;
+
+	/**
+	 * Initialize a new MedianFilter object.
+	 */
+	public MedianFilter()
+	{
+		dataInit = false;
+	}
+
+	/**
+	 * Filter the data.
+	 * 
+	 * @param data
+	 *            contains input the data.
+	 * @return the filtered output data in a new array.
+	 */
+	public float[] filterFloat(float[] data)
+	{
+		return filterFloat(data, new float[data.length]);
+	}
+
+	/**
+	 * Filter the data into a caller supplied array. The output array may be
+	 * the same array as the input data.
+	 * 
+	 * @param data
+	 *            contains input the data.
+	 * @param output
+	 *            the array to write the filtered output data to.
+	 * @return the output array.
+	 */
+	public float[] filterFloat(float[] data, float[] output)
+	{
+		// Initialize the data structures for the data set.
+		if (!dataInit)
+		{
+			init(data.length);
+		}
+
+		add(data, 0);
+
+		median(output, 0);
+
+		return output;
+	}
+
+	/**
+	 * Filter a batch of interleaved data points.
+	 * 
+	 * @param data
+	 *            contains the interleaved input data.
+	 * @param channels
+	 *            the number of channels in each data point, this must not
+	 *            change once the filter has been initialized.
+	 * @param length
+	 *            the number of data points in the batch.
+	 * @param output
+	 *            the array to write the interleaved output data to, may be
+	 *            the same array as the input data.
+	 */
+	public void filterFloat(float[] data, int channels, int length,
+			float[] output)
+	{
+		// Initialize the data structures for the data set.
+		if (!dataInit)
+		{
+			init(channels);
+		}
+
+		for (int i = 0, offset = 0; i < length; i++, offset += channels)
+		{
+			add(data, offset);
+
+			median(output, offset);
+		}
+	}
+
+	/**
+	 * Set the size of the rolling window. If the filter is already running,
+	 * the most recent samples that still fit in the new window are retained.
+	 * 
+	 * @param size
+	 *            the size of the window, windows smaller than one sample are
+	 *            treated as one sample.
+	 */
+	public void setWindowSize(int size)
+	{
+		size = Math.max(1, size);
+
+		if (!dataInit)
+		{
+			this.filterWindow = size;
+
+			return;
+		}
+
+		int retained = Math.min(count, size);
+
+		float[] samples = new float[retained * channels];
+
+		// Copy the newest samples, oldest first.
+		int first = head + count - retained;
+
+		for (int i = 0; i < retained; i++)
+		{
+			System.arraycopy(ring, ((first + i) % filterWindow) * channels,
+					samples, i * channels, channels);
+		}
+
+		this.filterWindow = size;
+
+		// Rebuild the heaps from the retained samples.
+		init(channels);
+
+		for (int i = 0; i < retained; i++)
+		{
+			add(samples, i * channels);
+		}
+	}
+
+	/**
+	 * Add a data point to the rolling window.
+	 * 
+	 * @param data
+	 *            contains the input data.
+	 * @param offset
+	 *            the offset of the data point in the input data.
+	 */
+	private void add(float[] data, int offset)
+	{
+		if (count == filterWindow)
+		{
+			// The window is full, replace the oldest sample in place.
+			int slot = head;
+
+			for (int i = 0; i < channels; i++)
+			{
+				ring[slot * channels + i] = data[offset + i];
+
+				replace(i * filterWindow, slot, data[offset + i]);
+			}
+
+			if (++head == filterWindow)
+			{
+				head = 0;
+			}
+		}
+		else
+		{
+			int slot = (head + count) % filterWindow;
+
+			for (int i = 0; i < channels; i++)
+			{
+				ring[slot * channels + i] = data[offset + i];
+
+				insert(i * filterWindow, slot, data[offset + i]);
+			}
+
+			count++;
+		}
+	}
+
+	/**
+	 * Replace the value of a slot in the heaps of a channel.
+	 * 
+	 * @param channel
+	 *            the start of the heaps of the channel.
+	 * @param slot
+	 *            the ring slot that changed.
+	 * @param value
+	 *            the new value of the slot.
+	 */
+	private void replace(int channel, int slot, float value)
+	{
+		int low = channel;
+		int high = channel + lowCapacity;
+
+		int lowSize = (count + 1) / 2;
+		int highSize = count / 2;
+
+		int p = position[channel + slot];
+
+		// Sift towards the top of the heap if the key grew, otherwise
+		// towards the bottom.
+		if (p < high)
+		{
+			if (value > keys[p])
+			{
+				siftUp(channel, low, p - low, slot, value);
+			}
+			else
+			{
+				siftDown(channel, low, p - low, slot, value, lowSize);
+			}
+		}
+		else
+		{
+			if (-value > keys[p])
+			{
+				siftUp(channel, high, p - high, slot, -value);
+			}
+			else
+			{
+				siftDown(channel, high, p - high, slot, -value, highSize);
+			}
+		}
+
+		// A value that moved across the median is at the top of its heap,
+		// exchanging the tops restores the order of the halves.
+		if (highSize > 0 && keys[low] > -keys[high])
+		{
+			int lowTop = heap[low];
+			float lowKey = keys[low];
+
+			siftDown(channel, low, 0, heap[high], -keys[high], lowSize);
+			siftDown(channel, high, 0, lowTop, -lowKey, highSize);
+		}
+	}
+
+	/**
+	 * Insert a slot into the heaps of a channel while the window is filling.
+	 * 
+	 * @param channel
+	 *            the start of the heaps of the channel.
+	 * @param slot
+	 *            the ring slot to insert.
+	 * @param value
+	 *            the value of the slot.
+	 */
+	private void insert(int channel, int slot, float value)
+	{
+		int low = channel;
+		int high = channel + lowCapacity;
+
+		int lowSize = (count + 1) / 2;
+		int highSize = count / 2;
+
+		// The sizes of the heaps once the slot is inserted.
+		int lowTarget = (count + 2) / 2;
+		int highTarget = (count + 1) / 2;
+
+		if (lowSize == 0 || value <= keys[low])
+		{
+			if (lowSize < lowTarget)
+			{
+				siftUp(channel, low, lowSize, slot, value);
+			}
+			else
+			{
+				// The slot replaces the largest of the lower half, which
+				// moves to the upper half.
+				int top = heap[low];
+				float key = keys[low];
+
+				siftDown(channel, low, 0, slot, value, lowSize);
+				siftUp(channel, high, highSize, top, -key);
+			}
+		}
+		else if (highSize < highTarget)
+		{
+			siftUp(channel, high, highSize, slot, -value);
+		}
+		else if (value <= -keys[high])
+		{
+			// The slot lies between the halves and becomes the largest of
+			// the lower half.
+			siftUp(channel, low, lowSize, slot, value);
+		}
+		else
+		{
+			// The slot replaces the smallest of the upper half, which moves
+			// to the lower half.
+			int top = heap[high];
+			float key = keys[high];
+
+			siftDown(channel, high, 0, slot, -value, highSize);
+			siftUp(channel, low, lowSize, top, -key);
+		}
+	}
+
+	/**
+	 * Place a slot at a heap position and move it towards the top of the
+	 * max-heap.
+	 * 
+	 * @return the final position of the slot.
+	 */
+	private int siftUp(int channel, int base, int i, int slot, float key)
+	{
+		while (i > 0)
+		{
+			int parent = (i - 1) >> 1;
+
+			if (key <= keys[base + parent])
+			{
+				break;
+			}
+
+			move(channel, base + i, base + parent);
+
+			i = parent;
+		}
+
+		place(channel, base + i, slot, key);
+
+		return i;
+	}
+
+	/**
+	 * Place a slot at a heap position and move it towards the bottom of the
+	 * max-heap.
+	 */
+	private void siftDown(int channel, int base, int i, int slot,
+			float key, int size)
+	{
+		while (true)
+		{
+			int child = 2 * i + 1;
+
+			if (child >= size)
+			{
+				break;
+			}
+
+			if (child + 1 < size && keys[base + child + 1] > keys[base + child])
+			{
+				child++;
+			}
+
+			if (keys[base + child] <= key)
+			{
+				break;
+			}
+
+			move(channel, base + i, base + child);
+
+			i = child;
+		}
+
+		place(channel, base + i, slot, key);
+	}
+
+	/**
+	 * Move the slot at a heap index to another index.
+	 */
+	private void move(int channel, int to, int from)
+	{
+		int slot = heap[from];
+
+		heap[to] = slot;
+		keys[to] = keys[from];
+
+		position[channel + slot] = to;
+	}
+
+	/**
+	 * Place a slot at a heap index.
+	 */
+	private void place(int channel, int index, int slot, float key)
+	{
+		heap[index] = slot;
+		keys[index] = key;
+
+		position[channel + slot] = index;
+	}
+
+	/**
+	 * Write the median of the rolling window.
+	 * 
+	 * @param output
+	 *            the array to write the output data to.
+	 * @param offset
+	 *            the offset of the data point in the output data.
+	 */
+	private void median(float[] output, int offset)
+	{
+		for (int i = 0; i < channels; i++)
+		{
+			int low = i * filterWindow;
+
+			if ((count & 1) == 1)
+			{
+				output[offset + i] = keys[low];
+			}
+			else
+			{
+				// The mean of the two middle samples of an even window.
+				output[offset + i] = (keys[low] - keys[low + lowCapacity])
+						* 0.5f;
+			}
+		}
+	}
+
+	/**
+	 * Allocate the rolling window for the data set.
+	 * 
+	 * @param channels
+	 *            the number of channels in the data set.
+	 */
+	private void init(int channels)
+	{
+		this.channels = channels;
+
+		lowCapacity = (filterWindow + 1) / 2;
+
+		ring = new float[filterWindow * channels];
+		heap = new int[filterWindow * channels];
+		keys = new float[filterWindow * channels];
+		position = new int[filterWindow * channels];
+
+		count = 0;
+		head = 0;
+
+		dataInit = true;
+	}
+}
@@ -0,0 +1,45 @@
+package com.kircherelectronics.simplelinearacceleration.filter;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * A FilterStage that runs a MedianFilter over the x, y and z channels.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class MedianFilterStage implements FilterStage
+{
+	private MedianFilter medianFilter;
+
+	public MedianFilterStage(MedianFilter medianFilter)
+	{
+		this.medianFilter = medianFilter;
+	}
+
+	public void process(float[] buffer, long[] timestamps, int length)
+	{
+		medianFilter.filterFloat(buffer, 3, length, buffer);
+	}
+
+	public MedianFilter getMedianFilter()
+	{
+		return medianFilter;
+	}
+}
@@ -0,0 +1,54 @@
+package com.kircherelectronics.simplelinearacceleration.filter;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * The scalar implementation of the pipeline kernels.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class ScalarKernels extends Kernels
+{
+	@Override
+	public String getName()
+	{
+		return "scalar";
+	}
+
+	@Override
+	public void lowPass(float[] input, float[] output, float[] alpha,
+			int from, int to)
+	{
+		for (int i = from; i < to; i++)
+		{
+			output[i] = output[i] + alpha[i] * (input[i] - output[i]);
+		}
+	}
+
+	@Override
+	public void subtractGravity(float[] acceleration, float[] components,
+			float[] output, float gravity, int from, int to)
+	{
+		for (int i = from; i < to; i++)
+		{
+			output[i] = (acceleration[i] - components[i]) / gravity;
+		}
+	}
+}
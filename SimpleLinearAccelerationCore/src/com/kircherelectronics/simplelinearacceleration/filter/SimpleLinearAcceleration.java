@@ -0,0 +1,316 @@
+package com.kircherelectronics.simplelinearacceleration.filter;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * An implementation of linear acceleration from an acceleration sensor only.
+ * Spikes are optionally rejected by a median filter, the acceleration is
+ * optionally smoothed by a low-pass filter and a mean filter, and a
+ * GravityEstimator estimates the gravity components that are subtracted from
+ * it. The stages run as a FilterChain, which can be extended with further
+ * stages.
+ * 
+ * @author Kaleb
+ * @see http://en.wikipedia.org/wiki/Low-pass_filter
+ * @version %I%, %G%
+ */
+public class SimpleLinearAcceleration
+{
+
+	private float[] linearAcceleration = new float[]
+	{ 0, 0, 0 };
+
+	// Raw accelerometer data
+	private float[] acceleration = new float[]
+	{ 0, 0, 0 };
+
+	// The timestamp of a single sample.
+	private long[] timestamp = new long[1];
+
+	private FilterChain filterChain = new FilterChain();
+
+	private FilterStage medianFilterAccelerationStage;
+
+	private FilterStage lpfAccelerationStage;
+
+	private FilterStage meanFilterAccelerationStage;
+
+	private FilterStage gravityStage;
+
+	// The rotation matrix R transforming a vector from the device
+	// coordinate system to the world's coordinate system which is
+	// defined as a direct orthonormal basis. R is the identity
+	// matrix when the device is aligned with the world's coordinate
+	// system, that is, when the device's X axis points toward East,
+	// the Y axis points to the North Pole and the device is facing
+	// the sky. NOTE: the reference coordinate-system used by
+	// getOrientation() is different from the world
+	// coordinate-system defined for the rotation matrix R and
+	// getRotationMatrix().
+	private float[] r = new float[9];
+
+	/**
+	 * Create the pipeline with a median filter, a Wikipedia or Butterworth
+	 * LPF, a mean filter and a variance-gated or Kalman gravity estimator
+	 * configured from the configuration.
+	 * 
+	 * @param config
+	 *            The configuration of the pipeline.
+	 */
+	public SimpleLinearAcceleration(LinearAccelerationConfig config)
+	{
+		this(config, createLowPassFilter(config), createMeanFilter(config));
+	}
+
+	public SimpleLinearAcceleration(LinearAccelerationConfig config,
+			LowPassFilter lpfAcceleration, 
+			MeanFilter meanFilterAcceleration)
+	{
+		this(config, lpfAcceleration, meanFilterAcceleration,
+				createGravityEstimator(config));
+	}
+
+	public SimpleLinearAcceleration(LinearAccelerationConfig config,
+			LowPassFilter lpfAcceleration, MeanFilter meanFilterAcceleration,
+			GravityEstimator gravityEstimator)
+	{
+		this(config, lpfAcceleration, meanFilterAcceleration,
+				createMedianFilter(config), gravityEstimator);
+	}
+
+	public SimpleLinearAcceleration(LinearAccelerationConfig config,
+			LowPassFilter lpfAcceleration, MeanFilter meanFilterAcceleration,
+			MedianFilter medianFilterAcceleration,
+			GravityEstimator gravityEstimator)
+	{
+		super();
+
+		this.medianFilterAccelerationStage = new MedianFilterStage(
+				medianFilterAcceleration);
+		this.lpfAccelerationStage = new LowPassFilterStage(lpfAcceleration);
+		this.meanFilterAccelerationStage = new MeanFilterStage(
+				meanFilterAcceleration);
+		this.gravityStage = new GravityStage(gravityEstimator,
+				config.getGravity());
+
+		filterChain.addStage(gravityStage);
+
+		setMedianFilterAccelerationActive(config
+				.isMedianFilterAccelerationActive());
+		setLpfAccelerationActive(config.isLpfAccelerationActive());
+		setMeanFilterAccelerationActive(config
+				.isMeanFilterAccelerationActive());
+	}
+
+	/**
+	 * Add a sample. Once the filters have seen their first sample this path
+	 * does not allocate, the returned array is reused on every call.
+	 * 
+	 * @param acceleration
+	 *            The acceleration data.
+	 * @return Returns the output of the filter.
+	 */
+	public float[] addSamples(float[] acceleration)
+	{
+		// Get a local copy of the sensor values
+		System.arraycopy(acceleration, 0, this.acceleration, 0,
+				acceleration.length);
+
+		filterChain.process(this.acceleration, null, 1, linearAcceleration);
+
+		return linearAcceleration;
+	}
+
+	/**
+	 * Add a sample with its sensor timestamp. The low-pass filter derives its
+	 * sample period from the timestamps, so replayed data produces the same
+	 * output at any replay speed.
+	 * 
+	 * @param acceleration
+	 *            The acceleration data.
+	 * @param timestamp
+	 *            The sensor timestamp of the sample in nanoseconds.
+	 * @return Returns the output of the filter.
+	 */
+	public float[] addSamples(float[] acceleration, long timestamp)
+	{
+		// Get a local copy of the sensor values
+		System.arraycopy(acceleration, 0, this.acceleration, 0,
+				acceleration.length);
+
+		this.timestamp[0] = timestamp;
+
+		filterChain.process(this.acceleration, this.timestamp, 1,
+				linearAcceleration);
+
+		return linearAcceleration;
+	}
+
+	/**
+	 * Add a batch of samples. The batch runs through the filter chain a tile
+	 * at a time, see FilterChain.
+	 * 
+	 * @param acceleration
+	 *            The interleaved x, y, z acceleration data.
+	 * @param timestamps
+	 *            The sensor timestamp of each sample in nanoseconds.
+	 * @param length
+	 *            The number of samples in the batch.
+	 * @param output
+	 *            The interleaved linear acceleration output, may be the same
+	 *            array as the acceleration data.
+	 */
+	public void addSamples(float[] acceleration, long[] timestamps,
+			int length, float[] output)
+	{
+		addSamples(acceleration, timestamps, 0, length, output, 0);
+	}
+
+	/**
+	 * Add a range of a batch of samples, without copying the range out of the
+	 * batch.
+	 * 
+	 * @param acceleration
+	 *            The interleaved x, y, z acceleration data.
+	 * @param timestamps
+	 *            The sensor timestamp of each sample in nanoseconds.
+	 * @param offset
+	 *            The first sample of the range.
+	 * @param length
+	 *            The number of samples in the range.
+	 * @param output
+	 *            The interleaved linear acceleration output, may be the same
+	 *            array as the acceleration data.
+	 * @param outputOffset
+	 *            The sample of the output the range is written to.
+	 */
+	public void addSamples(float[] acceleration, long[] timestamps,
+			int offset, int length, float[] output, int outputOffset)
+	{
+		filterChain.process(acceleration, timestamps, offset, length, output,
+				outputOffset);
+
+		if (length > 0)
+		{
+			System.arraycopy(output, (outputOffset + length - 1) * 3,
+					linearAcceleration, 0, 3);
+		}
+	}
+
+	/**
+	 * Get the filter chain. Stages added to the chain run on every sample,
+	 * the gravity stage turns acceleration into linear acceleration so stages
+	 * that work on acceleration belong before it.
+	 * 
+	 * @return The filter chain.
+	 */
+	public FilterChain getFilterChain()
+	{
+		return filterChain;
+	}
+
+	public void setMedianFilterAccelerationActive(
+			boolean medianFilterAccelerationActive)
+	{
+		if (medianFilterAccelerationActive
+				&& !filterChain.containsStage(medianFilterAccelerationStage))
+		{
+			// Reject spikes before any filter can smear them.
+			filterChain.addStage(0, medianFilterAccelerationStage);
+		}
+		else if (!medianFilterAccelerationActive)
+		{
+			filterChain.removeStage(medianFilterAccelerationStage);
+		}
+	}
+
+	public void setLpfAccelerationActive(boolean lpfAccelerationActive)
+	{
+		if (lpfAccelerationActive
+				&& !filterChain.containsStage(lpfAccelerationStage))
+		{
+			filterChain.addStage(
+					filterChain.indexOfStage(medianFilterAccelerationStage) + 1,
+					lpfAccelerationStage);
+		}
+		else if (!lpfAccelerationActive)
+		{
+			filterChain.removeStage(lpfAccelerationStage);
+		}
+	}
+
+	public void setMeanFilterAccelerationActive(
+			boolean meanFilterAccelerationActive)
+	{
+		if (meanFilterAccelerationActive
+				&& !filterChain.containsStage(meanFilterAccelerationStage))
+		{
+			// The mean filter runs on the low-pass filtered acceleration.
+			filterChain.addStage(Math.max(
+					filterChain.indexOfStage(medianFilterAccelerationStage),
+					filterChain.indexOfStage(lpfAccelerationStage)) + 1,
+					meanFilterAccelerationStage);
+		}
+		else if (!meanFilterAccelerationActive)
+		{
+			filterChain.removeStage(meanFilterAccelerationStage);
+		}
+	}
+
+	private static LowPassFilter createLowPassFilter(
+			LinearAccelerationConfig config)
+	{
+		LowPassFilter lpf = config.isLpfAccelerationButterworth() ? new LPFButterworth(
+				config.getLpfAccelerationOrder(),
+				config.getLpfAccelerationCutoff()) : new LPFWikipedia();
+
+		lpf.setAlphaStatic(config.isLpfAccelerationStaticAlpha());
+		lpf.setAlpha(config.getLpfAccelerationAlpha());
+
+		return lpf;
+	}
+
+	private static GravityEstimator createGravityEstimator(
+			LinearAccelerationConfig config)
+	{
+		if (config.isGravityEstimatorKalman())
+		{
+			return new KalmanGravityEstimator(config);
+		}
+
+		return new VarianceGatedGravityEstimator(config);
+	}
+
+	private static MeanFilter createMeanFilter(LinearAccelerationConfig config)
+	{
+		MeanFilter meanFilter = new MeanFilter();
+		meanFilter.setWindowSize(config.getMeanFilterAccelerationWindow());
+
+		return meanFilter;
+	}
+
+	private static MedianFilter createMedianFilter(
+			LinearAccelerationConfig config)
+	{
+		MedianFilter medianFilter = new MedianFilter();
+		medianFilter.setWindowSize(config.getMedianFilterAccelerationWindow());
+
+		return medianFilter;
+	}
+}
@@ -0,0 +1,144 @@
+package com.kircherelectronics.simplelinearacceleration.filter;
+
+import com.kircherelectronics.simplelinearacceleration.statistics.StdDev;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Estimates gravity by measuring the orientation of the device while it is
+ * static. The standard deviation of the magnitude of the acceleration over a
+ * window of samples decides whether the device is static. While it is, the
+ * acceleration is taken as the gravity components, otherwise the last
+ * estimate is held.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class VarianceGatedGravityEstimator implements GravityEstimator
+{
+	// The gravity components of the acceleration signal.
+	private float[] components = new float[3];
+
+	private StdDev varianceAccel;
+
+	// The standard deviation below which gravity is re-estimated.
+	private double varianceThreshold;
+
+	// 1 / the magnitude of gravity the standard deviation is normalized to.
+	private double inverseGravity;
+
+	/**
+	 * Create an estimator.
+	 * 
+	 * @param config
+	 *            The configuration of the pipeline, for the sample window,
+	 *            variance threshold and gravity.
+	 */
+	public VarianceGatedGravityEstimator(LinearAccelerationConfig config)
+	{
+		this.varianceThreshold = config.getVarianceThreshold();
+		this.inverseGravity = 1.0 / config.getGravity();
+
+		// Create the RMS Noise calculations
+		varianceAccel = new StdDev(config.getSampleWindow());
+	}
+
+	/**
+	 * Add a sample and update the estimate.
+	 * 
+	 * @param acceleration
+	 *            The acceleration data, x, y, z starting at offset.
+	 * @param offset
+	 *            The offset of the x component of the sample.
+	 * @return Returns the x, y, z gravity components. The array is reused.
+	 */
+	public float[] addSample(float[] acceleration, int offset)
+	{
+		float ax = acceleration[offset];
+		float ay = acceleration[offset + 1];
+		float az = acceleration[offset + 2];
+
+		double x = ax;
+		double y = ay;
+		double z = az;
+
+		float magnitude = (float) (Math.sqrt(x * x + y * y + z * z)
+				* inverseGravity);
+
+		// Attempt to estimate the gravity components when the device is
+		// stable and not experiencing linear acceleration.
+		if (varianceAccel.addSample(magnitude, varianceThreshold))
+		{
+			components[0] = ax;
+			components[1] = ay;
+			components[2] = az;
+		}
+
+		return components;
+	}
+
+	/**
+	 * Add a batch of samples and update the estimate after each, in a single
+	 * loop with the estimate held in locals.
+	 * 
+	 * @param acceleration
+	 *            The interleaved x, y, z acceleration data.
+	 * @param length
+	 *            The number of samples in the batch.
+	 * @param components
+	 *            The array the interleaved x, y, z gravity components after
+	 *            each sample are written to.
+	 */
+	public void addSamples(float[] acceleration, int length,
+			float[] components)
+	{
+		float gx = this.components[0];
+		float gy = this.components[1];
+		float gz = this.components[2];
+
+		for (int j = 0; j < length * 3; j += 3)
+		{
+			float ax = acceleration[j];
+			float ay = acceleration[j + 1];
+			float az = acceleration[j + 2];
+
+			double x = ax;
+			double y = ay;
+			double z = az;
+
+			float magnitude = (float) (Math.sqrt(x * x + y * y + z * z)
+					* inverseGravity);
+
+			if (varianceAccel.addSample(magnitude, varianceThreshold))
+			{
+				gx = ax;
+				gy = ay;
+				gz = az;
+			}
+
+			components[j] = gx;
+			components[j + 1] = gy;
+			components[j + 2] = gz;
+		}
+
+		this.components[0] = gx;
+		this.components[1] = gy;
+		this.components[2] = gz;
+	}
+}
@@ -0,0 +1,146 @@
+package com.kircherelectronics.simplelinearacceleration.fixedpoint;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Q16.16 fixed-point arithmetic for the fixed-point pipeline. A value is an
+ * int holding the real value times 2^16, so accelerations up to 32767 m/s^2
+ * are represented to 1.5e-5. Products are formed in a long and rounded back,
+ * and square roots are taken on integers, so the pipeline needs no floating
+ * point once the samples are in Q16.16.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public final class FixedPoint
+{
+	// The number of fractional bits.
+	public static final int FRACTION_BITS = 16;
+
+	// One in Q16.16.
+	public static final int ONE = 1 << FRACTION_BITS;
+
+	// Half of the last place, added before a right shift to round.
+	private static final long ROUNDING = 1L << (FRACTION_BITS - 1);
+
+	private FixedPoint()
+	{
+	}
+
+	/**
+	 * Convert a float to Q16.16, rounding to the nearest value.
+	 * 
+	 * @param value
+	 *            The value.
+	 * @return The value in Q16.16.
+	 */
+	public static int toFixed(float value)
+	{
+		return (int) Math.floor(value * (double) ONE + 0.5);
+	}
+
+	/**
+	 * Convert Q16.16 to a float.
+	 * 
+	 * @param value
+	 *            The value in Q16.16.
+	 * @return The value.
+	 */
+	public static float toFloat(int value)
+	{
+		return value / (float) ONE;
+	}
+
+	/**
+	 * Multiply two Q16.16 values.
+	 * 
+	 * @return The rounded product in Q16.16.
+	 */
+	public static int multiply(int a, int b)
+	{
+		return (int) (((long) a * b + ROUNDING) >> FRACTION_BITS);
+	}
+
+	/**
+	 * Multiply two Q16.16 values in a long, for values that may exceed the
+	 * range of an int.
+	 * 
+	 * @return The rounded product in Q16.16.
+	 */
+	public static long multiply(long a, long b)
+	{
+		return (a * b + ROUNDING) >> FRACTION_BITS;
+	}
+
+	/**
+	 * Get the integer square root of a non-negative value, the largest
+	 * integer whose square does not exceed the value. The square root of a
+	 * Q32.32 value is its Q16.16 square root.
+	 * 
+	 * @param value
+	 *            The value.
+	 * @return The integer square root.
+	 */
+	public static int sqrt(long value)
+	{
+		return sqrt(value, 0);
+	}
+
+	/**
+	 * Get the integer square root of a non-negative value with Newton's
+	 * method, starting from an estimate. A close estimate, such as the root
+	 * of the previous sample of a slowly changing signal, converges in one or
+	 * two divisions.
+	 * 
+	 * @param value
+	 *            The value.
+	 * @param estimate
+	 *            An estimate of the root, or zero if there is none.
+	 * @return The integer square root.
+	 */
+	public static int sqrt(long value, int estimate)
+	{
+		if (value < 2)
+		{
+			return (int) value;
+		}
+
+		long root = estimate;
+
+		if (root <= 0)
+		{
+			// A power of two within a factor of two of the root.
+			root = 1L << ((64 - Long.numberOfLeadingZeros(value)) >> 1);
+		}
+
+		// A Newton step from any positive start lands on or above the root,
+		// from there the steps descend to it.
+		root = (root + value / root) >> 1;
+
+		long next = (root + value / root) >> 1;
+
+		while (next < root)
+		{
+			root = next;
+			next = (root + value / root) >> 1;
+		}
+
+		return (int) root;
+	}
+}
@@ -0,0 +1,288 @@
+package com.kircherelectronics.simplelinearacceleration.fixedpoint;
+
+import com.kircherelectronics.simplelinearacceleration.filter.LinearAccelerationConfig;
+import com.kircherelectronics.simplelinearacceleration.statistics.StdDev;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * A Q16.16 fixed-point implementation of SimpleLinearAcceleration for devices
+ * without a floating point unit. The acceleration is optionally smoothed by
+ * LPFWikipediaFixed and MeanFilterFixed, and gravity is estimated with the
+ * variance gate and subtracted, all on int arrays.
+ * 
+ * The variance gate keeps an integer running sum and sum of squares of the
+ * magnitude over the sample window. Both are exact, so the gate compares the
+ * variance with the squared threshold without a square root, a division or a
+ * periodic resync. The magnitude itself comes from an integer square root.
+ * The products of the comparison fit in a long for windows of up to
+ * MAX_SAMPLE_WINDOW samples and magnitudes of up to MAX_MAGNITUDE, so the
+ * window is limited to MAX_SAMPLE_WINDOW, and the magnitudes and the threshold
+ * are limited to MAX_MAGNITUDE. A phone accelerometer saturated on every axis
+ * at 16 g stays below it.
+ * 
+ * The input is acceleration in m/s^2 and the output linear acceleration in
+ * units of gravity, both in Q16.16. Only the Wikipedia low-pass filter and
+ * the variance gate are implemented, the Butterworth, median filter and
+ * Kalman configurations are ignored. Compared to the float pipeline the
+ * output differs by at most TOLERANCE per unit of gravity of the magnitude of
+ * the acceleration, and by TOLERANCE below 1 g. The difference grows with the
+ * acceleration since it comes from the rounding of the alpha of the low-pass
+ * filter. After a sample where the standard deviation is within rounding of
+ * the threshold and the two gates decide differently, the output may differ
+ * more until the next sample both find static.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class FixedPointLinearAcceleration
+{
+	// The largest sample window of the variance gate.
+	public static final int MAX_SAMPLE_WINDOW = 1 << 10;
+
+	// The largest magnitude seen by the variance gate, 32 g in Q16.16, so
+	// that MAX_SAMPLE_WINDOW^2 * MAX_MAGNITUDE^2 is 2^62.
+	public static final int MAX_MAGNITUDE = 32 * FixedPoint.ONE;
+
+	// The largest difference from the float pipeline per unit of gravity of
+	// the acceleration, while the gates of both decide alike.
+	public static final float TOLERANCE = 2e-4f;
+
+	private boolean lpfAccelerationActive = false;
+
+	private boolean meanFilterAccelerationActive = false;
+
+	private LPFWikipediaFixed lpfAcceleration;
+
+	private MeanFilterFixed meanFilterAcceleration;
+
+	private int[] linearAcceleration = new int[3];
+
+	// Raw accelerometer data
+	private int[] acceleration = new int[3];
+
+	// The timestamp of a single sample.
+	private long[] timestamp = new long[1];
+
+	// The gravity components of the acceleration signal in Q16.16.
+	private int[] components = new int[3];
+
+	// The reciprocal of gravity in Q32.32.
+	private long gravityReciprocal;
+
+	// The squared variance threshold in Q32.32.
+	private long varianceThreshold;
+
+	// The rolling window of the magnitude in units of gravity in Q16.16.
+	private int[] window;
+
+	private int count;
+	private int head;
+
+	// The magnitude of the previous sample, the estimate of the next root.
+	private int magnitude;
+
+	// The exact sum and sum of squares of the window.
+	private long sum;
+	private long sumSquares;
+
+	/**
+	 * Create the pipeline configured from the configuration.
+	 * 
+	 * @param config
+	 *            The configuration of the pipeline.
+	 */
+	public FixedPointLinearAcceleration(LinearAccelerationConfig config)
+	{
+		lpfAccelerationActive = config.isLpfAccelerationActive();
+		meanFilterAccelerationActive = config.isMeanFilterAccelerationActive();
+
+		lpfAcceleration = new LPFWikipediaFixed();
+		lpfAcceleration.setAlphaStatic(config.isLpfAccelerationStaticAlpha());
+		lpfAcceleration.setAlpha(FixedPoint.toFixed(config
+				.getLpfAccelerationAlpha()));
+
+		meanFilterAcceleration = new MeanFilterFixed(3,
+				config.getMeanFilterAccelerationWindow());
+
+		gravityReciprocal = Math.round(4294967296.0 / config.getGravity());
+
+		long threshold = Math.min(
+				FixedPoint.toFixed((float) config.getVarianceThreshold()),
+				MAX_MAGNITUDE);
+
+		varianceThreshold = threshold * threshold;
+
+		window = new int[Math.min(Math.max(1, config.getSampleWindow()),
+				MAX_SAMPLE_WINDOW)];
+	}
+
+	/**
+	 * Add a sample with its sensor timestamp. The returned array is reused on
+	 * every call.
+	 * 
+	 * @param acceleration
+	 *            The acceleration data in Q16.16.
+	 * @param timestamp
+	 *            The sensor timestamp of the sample in nanoseconds.
+	 * @return Returns the linear acceleration in Q16.16.
+	 */
+	public int[] addSamples(int[] acceleration, long timestamp)
+	{
+		System.arraycopy(acceleration, 0, this.acceleration, 0, 3);
+
+		this.timestamp[0] = timestamp;
+
+		addSamples(this.acceleration, this.timestamp, 1, linearAcceleration);
+
+		return linearAcceleration;
+	}
+
+	/**
+	 * Add a batch of samples.
+	 * 
+	 * @param acceleration
+	 *            The interleaved x, y, z acceleration data in Q16.16.
+	 * @param timestamps
+	 *            The sensor timestamp of each sample in nanoseconds.
+	 * @param length
+	 *            The number of samples in the batch.
+	 * @param output
+	 *            The interleaved linear acceleration output in Q16.16, may be
+	 *            the same array as the acceleration data.
+	 */
+	public void addSamples(int[] acceleration, long[] timestamps, int length,
+			int[] output)
+	{
+		int[] filtered = acceleration;
+
+		if (lpfAccelerationActive)
+		{
+			lpfAcceleration.addSamples(filtered, timestamps, length, output);
+
+			filtered = output;
+		}
+
+		if (meanFilterAccelerationActive)
+		{
+			meanFilterAcceleration.filter(filtered, length, output);
+
+			filtered = output;
+		}
+
+		for (int j = 0; j < length * 3; j += 3)
+		{
+			int ax = filtered[j];
+			int ay = filtered[j + 1];
+			int az = filtered[j + 2];
+
+			// The magnitude in Q16.16 from the Q32.32 sum of squares.
+			magnitude = FixedPoint.sqrt((long) ax * ax + (long) ay * ay
+					+ (long) az * az, magnitude);
+
+			// Attempt to estimate the gravity components when the device is
+			// stable and not experiencing linear acceleration.
+			if (isStatic(Math.min(toGravity(magnitude), MAX_MAGNITUDE)))
+			{
+				components[0] = ax;
+				components[1] = ay;
+				components[2] = az;
+			}
+
+			// Subtract the gravity component of the signal
+			// from the input acceleration signal to get the
+			// tilt compensated output.
+			output[j] = toGravity(ax - components[0]);
+			output[j + 1] = toGravity(ay - components[1]);
+			output[j + 2] = toGravity(az - components[2]);
+		}
+
+		if (length > 0)
+		{
+			System.arraycopy(output, (length - 1) * 3, linearAcceleration, 0,
+					3);
+		}
+	}
+
+	/**
+	 * Add a magnitude to the window and check if its standard deviation is
+	 * below the threshold, comparing (n - 1) variances scaled by n so the
+	 * check is exact in integers. Like StdDev the gate stays open until the
+	 * window holds StdDev.MIN_SAMPLES samples.
+	 * 
+	 * @param magnitude
+	 *            The magnitude in units of gravity in Q16.16, at most
+	 *            MAX_MAGNITUDE.
+	 * @return True if the device is static.
+	 */
+	private boolean isStatic(int magnitude)
+	{
+		if (count < window.length)
+		{
+			window[(head + count) % window.length] = magnitude;
+
+			count++;
+		}
+		else
+		{
+			int old = window[head];
+
+			window[head] = magnitude;
+
+			if (++head == window.length)
+			{
+				head = 0;
+			}
+
+			sum -= old;
+			sumSquares -= (long) old * old;
+		}
+
+		sum += magnitude;
+		sumSquares += (long) magnitude * magnitude;
+
+		if (count < StdDev.MIN_SAMPLES)
+		{
+			return true;
+		}
+
+		// n * sum((x - mean)^2) = n * sum(x^2) - sum(x)^2
+		return count * sumSquares - sum * sum < varianceThreshold * count
+				* (count - 1);
+	}
+
+	/**
+	 * Convert a Q16.16 acceleration in m/s^2 to units of gravity.
+	 */
+	private int toGravity(int value)
+	{
+		return (int) ((value * gravityReciprocal + (1L << 31)) >> 32);
+	}
+
+	public void setLpfAccelerationActive(boolean lpfAccelerationActive)
+	{
+		this.lpfAccelerationActive = lpfAccelerationActive;
+	}
+
+	public void setMeanFilterAccelerationActive(
+			boolean meanFilterAccelerationActive)
+	{
+		this.meanFilterAccelerationActive = meanFilterAccelerationActive;
+	}
+}
@@ -0,0 +1,207 @@
+package com.kircherelectronics.simplelinearacceleration.fixedpoint;
+
+import com.kircherelectronics.simplelinearacceleration.filter.LPFWikipedia;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * A Q16.16 fixed-point implementation of LPFWikipedia for the samples with
+ * sensor timestamps, y[i] = y[i] + alpha * (x[i] - y[i]) with alpha a Q16.16
+ * multiplier. Unless alpha is static it is derived from the smoothed sample
+ * period with an integer division, alpha = dt / (timeConstant + dt), with the
+ * sample period kept in nanoseconds and smoothed the same way as
+ * LPFWikipedia.
+ * 
+ * @author Kaleb
+ * @see http://en.wikipedia.org/wiki/Low-pass_filter
+ * @version %I%, %G%
+ */
+public class LPFWikipediaFixed
+{
+	// The number of samples before the filter starts updating its output.
+	private static final int WARM_UP_SAMPLES = 5;
+
+	// The weight of a new sample period in the smoothed dt in Q16.16.
+	private static final int DT_SMOOTHING = FixedPoint
+			.toFixed((float) LPFWikipedia.DT_SMOOTHING);
+
+	// The number of periods averaged before the moving average takes over.
+	private static final int DT_AVERAGED = (int) Math
+			.round(1 / LPFWikipedia.DT_SMOOTHING);
+
+	// The alpha used until the sample period is known.
+	private static final int INITIAL_ALPHA = FixedPoint.toFixed(0.1f);
+
+	private boolean alphaStatic = false;
+
+	private boolean timestampInit = false;
+
+	// The time constant of the filter in nanoseconds.
+	private long timeConstant = (long) (LPFWikipedia.TIME_CONSTANT * 1e9);
+
+	// The alpha of the filter in Q16.16.
+	private int alpha = INITIAL_ALPHA;
+
+	// The sensor timestamp of the previous sample in nanoseconds.
+	private long timestampPrevious = 0;
+
+	// The smoothed sample period in nanoseconds.
+	private long dtSmoothed = 0;
+
+	private int count = 0;
+
+	// The number of sample periods measured from sensor timestamps.
+	private int periods = 0;
+
+	private int[] output = new int[3];
+
+	/**
+	 * Add a sample with its sensor timestamp.
+	 * 
+	 * @param acceleration
+	 *            The acceleration data in Q16.16.
+	 * @param timestamp
+	 *            The sensor timestamp of the sample in nanoseconds.
+	 * @return Returns the output of the filter in Q16.16.
+	 */
+	public int[] addSamples(int[] acceleration, long timestamp)
+	{
+		updateSamplePeriod(timestamp);
+
+		count++;
+
+		if (count > WARM_UP_SAMPLES)
+		{
+			// y[i] = y[i] + alpha * (x[i] - y[i])
+			output[0] += FixedPoint
+					.multiply(alpha, acceleration[0] - output[0]);
+			output[1] += FixedPoint
+					.multiply(alpha, acceleration[1] - output[1]);
+			output[2] += FixedPoint
+					.multiply(alpha, acceleration[2] - output[2]);
+		}
+
+		return output;
+	}
+
+	/**
+	 * Add a batch of samples with their sensor timestamps.
+	 * 
+	 * @param acceleration
+	 *            The interleaved x, y, z acceleration data in Q16.16.
+	 * @param timestamps
+	 *            The timestamp of each sample in nanoseconds.
+	 * @param length
+	 *            The number of samples in the batch.
+	 * @param output
+	 *            The interleaved output of the filter in Q16.16, may be the
+	 *            same array as the acceleration data.
+	 */
+	public void addSamples(int[] acceleration, long[] timestamps, int length,
+			int[] output)
+	{
+		int x = this.output[0];
+		int y = this.output[1];
+		int z = this.output[2];
+
+		for (int i = 0, j = 0; i < length; i++, j += 3)
+		{
+			updateSamplePeriod(timestamps[i]);
+
+			count++;
+
+			if (count > WARM_UP_SAMPLES)
+			{
+				// y[i] = y[i] + alpha * (x[i] - y[i])
+				x += FixedPoint.multiply(alpha, acceleration[j] - x);
+				y += FixedPoint.multiply(alpha, acceleration[j + 1] - y);
+				z += FixedPoint.multiply(alpha, acceleration[j + 2] - z);
+			}
+
+			output[j] = x;
+			output[j + 1] = y;
+			output[j + 2] = z;
+		}
+
+		this.output[0] = x;
+		this.output[1] = y;
+		this.output[2] = z;
+	}
+
+	/**
+	 * Update the smoothed sample period from a sensor timestamp and, unless
+	 * alpha is static, alpha.
+	 * 
+	 * @param timestamp
+	 *            The sensor timestamp of the sample in nanoseconds.
+	 */
+	private void updateSamplePeriod(long timestamp)
+	{
+		if (timestampInit)
+		{
+			long period = timestamp - timestampPrevious;
+
+			periods++;
+
+			// The first periods are averaged, after that the period follows
+			// rate changes with an exponential moving average.
+			if (periods < DT_AVERAGED)
+			{
+				dtSmoothed += (period - dtSmoothed) / periods;
+			}
+			else
+			{
+				dtSmoothed += FixedPoint.multiply(DT_SMOOTHING, period
+						- dtSmoothed);
+			}
+
+			if (!alphaStatic && dtSmoothed > 0)
+			{
+				// Calculate Wikipedia low-pass alpha
+				alpha = (int) ((dtSmoothed << FixedPoint.FRACTION_BITS)
+						/ (timeConstant + dtSmoothed));
+			}
+		}
+
+		timestampPrevious = timestamp;
+		timestampInit = true;
+	}
+
+	/**
+	 * Indicate if alpha should be static.
+	 * 
+	 * @param alphaStatic
+	 *            A static value for alpha
+	 */
+	public void setAlphaStatic(boolean alphaStatic)
+	{
+		this.alphaStatic = alphaStatic;
+	}
+
+	/**
+	 * Set static alpha.
+	 * 
+	 * @param alpha
+	 *            The value for alpha in Q16.16, 0 < alpha <= FixedPoint.ONE
+	 */
+	public void setAlpha(int alpha)
+	{
+		this.alpha = alpha;
+	}
+}
@@ -0,0 +1,140 @@
+package com.kircherelectronics.simplelinearacceleration.fixedpoint;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * A fixed-point implementation of MeanFilter. Each channel of the data set is
+ * kept in a preallocated int ring buffer and the mean is maintained from an
+ * integer running sum, which is exact, so it needs no compensation and never
+ * drifts. Once the window is full the sum is divided by multiplying with the
+ * reciprocal of the window size, which is within a unit in the last place of
+ * the rounded mean while the window size times the mean stays below 2^16.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class MeanFilterFixed
+{
+	// The size of the mean filters rolling window.
+	private int filterWindow;
+
+	// The number of channels in the data set.
+	private int channels;
+
+	// The number of samples currently held in the window.
+	private int count;
+
+	// The ring index of the oldest sample in the window.
+	private int head;
+
+	// The rolling window of each channel laid out as [sample][channel].
+	private int[] ring;
+
+	// The running sum of each channel.
+	private long[] sums;
+
+	// The reciprocal of the window size in Q32.32.
+	private long reciprocal;
+
+	/**
+	 * Initialize a new MeanFilterFixed object.
+	 * 
+	 * @param channels
+	 *            the number of channels in each data point.
+	 * @param size
+	 *            the size of the window, windows smaller than one sample are
+	 *            treated as one sample.
+	 */
+	public MeanFilterFixed(int channels, int size)
+	{
+		this.channels = channels;
+		this.filterWindow = Math.max(1, size);
+
+		ring = new int[filterWindow * channels];
+		sums = new long[channels];
+
+		reciprocal = Math.round(4294967296.0 / filterWindow);
+	}
+
+	/**
+	 * Filter a batch of interleaved data points.
+	 * 
+	 * @param data
+	 *            contains the interleaved input data.
+	 * @param length
+	 *            the number of data points in the batch.
+	 * @param output
+	 *            the array to write the interleaved output data to, may be
+	 *            the same array as the input data.
+	 */
+	public void filter(int[] data, int length, int[] output)
+	{
+		for (int i = 0, offset = 0; i < length; i++, offset += channels)
+		{
+			if (count < filterWindow)
+			{
+				int slot = count * channels;
+
+				count++;
+
+				for (int k = 0; k < channels; k++)
+				{
+					ring[slot + k] = data[offset + k];
+
+					sums[k] += data[offset + k];
+
+					output[offset + k] = divide(sums[k], count);
+				}
+			}
+			else
+			{
+				// The window is full, replace the oldest sample in a single
+				// step.
+				int slot = head * channels;
+
+				if (++head == filterWindow)
+				{
+					head = 0;
+				}
+
+				for (int k = 0; k < channels; k++)
+				{
+					int value = data[offset + k];
+
+					sums[k] += (long) value - ring[slot + k];
+
+					ring[slot + k] = value;
+
+					output[offset + k] = (int) ((sums[k] * reciprocal
+							+ (1L << 31)) >> 32);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Divide rounding to the nearest integer, halves away from zero.
+	 */
+	private static int divide(long sum, int count)
+	{
+		long half = count >> 1;
+
+		return (int) ((sum >= 0) ? (sum + half) / count : (sum - half) / count);
+	}
+}
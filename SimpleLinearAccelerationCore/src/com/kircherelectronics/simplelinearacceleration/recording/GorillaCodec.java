@@ -0,0 +1,422 @@
+package com.kircherelectronics.simplelinearacceleration.recording;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Compresses a block of samples in the style of Gorilla. Consecutive sensor
+ * samples are highly correlated, so each value is stored as the difference to
+ * the previous one:
+ * 
+ * <pre>
+ * long  the first timestamp
+ * the first timestamp delta and then each delta of the deltas, zigzag
+ * varints, usually one or two bytes as the sensor rate is nearly constant
+ * per column, the float bits of the first value, then per value the XOR with
+ * the previous value:
+ *   '0'                              equal to the previous value
+ *   '10' meaningful bits             the XOR fits the previous window
+ *   '11' 5 bits leading zeros, 5 bits length - 1, meaningful bits
+ * </pre>
+ * 
+ * The floats are a single bit stream, most significant bit first, padded to a
+ * whole byte. The round trip is lossless, every value decodes to the same bits
+ * including NaNs and negative zeros. Encoding and decoding run over arrays
+ * preallocated for the largest block and do not allocate.
+ * 
+ * @author Kaleb
+ * @see http://www.vldb.org/pvldb/vol8/p1816-teller.pdf
+ * @version %I%, %G%
+ */
+public class GorillaCodec
+{
+	// The largest zigzag varint of a long.
+	private static final int MAX_VARINT_SIZE = 10;
+
+	// The largest encoding of a float, '11', 5 + 5 bits and 32 bits.
+	private static final int MAX_FLOAT_BITS = 44;
+
+	// Zero bytes after the bit stream so the decoder can read ahead.
+	private static final int PADDING = 8;
+
+	private int capacity;
+
+	private int columns;
+
+	// The encoded block.
+	private byte[] bytes;
+
+	// The bit stream being written or read.
+	private long accumulator;
+	private int bits;
+	private int position;
+
+	/**
+	 * Create a codec.
+	 * 
+	 * @param capacity
+	 *            The largest number of samples in a block.
+	 * @param columns
+	 *            The number of values in a sample.
+	 */
+	public GorillaCodec(int capacity, int columns)
+	{
+		this.capacity = capacity;
+		this.columns = columns;
+
+		bytes = new byte[getMaxEncodedSize() + PADDING];
+	}
+
+	/**
+	 * Get the largest size in bytes of an encoded block.
+	 */
+	public int getMaxEncodedSize()
+	{
+		return 8 + capacity * MAX_VARINT_SIZE
+				+ (capacity * columns * MAX_FLOAT_BITS + 7) / 8;
+	}
+
+	/**
+	 * Encode a block.
+	 * 
+	 * @param timestamps
+	 *            The timestamp of each sample.
+	 * @param values
+	 *            The values laid out column by column, column c of sample i
+	 *            at c * capacity + i.
+	 * @param count
+	 *            The number of samples in the block.
+	 * @param output
+	 *            The buffer the encoded block is written to from its position.
+	 * @return The size of the encoded block in bytes.
+	 */
+	public int encode(long[] timestamps, float[] values, int count,
+			ByteBuffer output)
+	{
+		position = 0;
+
+		if (count > 0)
+		{
+			putLong(timestamps[0]);
+
+			long previousDelta = 0;
+
+			for (int i = 1; i < count; i++)
+			{
+				long delta = timestamps[i] - timestamps[i - 1];
+
+				putVarint(delta - previousDelta);
+
+				previousDelta = delta;
+			}
+
+			accumulator = 0;
+			bits = 0;
+
+			for (int c = 0; c < columns; c++)
+			{
+				encodeColumn(values, c * capacity, count);
+			}
+
+			// Pad the last bits to a whole byte.
+			if (bits > 0)
+			{
+				writeBits(0, 8 - (bits & 7));
+			}
+
+			while (bits > 0)
+			{
+				bits -= 8;
+				bytes[position++] = (byte) (accumulator >>> bits);
+			}
+		}
+
+		output.put(bytes, 0, position);
+
+		return position;
+	}
+
+	/**
+	 * Decode a block.
+	 * 
+	 * @param input
+	 *            The buffer holding the encoded block from its position.
+	 * @param length
+	 *            The size of the encoded block in bytes.
+	 * @param count
+	 *            The number of samples in the block.
+	 * @param timestamps
+	 *            The array the timestamps are decoded to.
+	 * @param values
+	 *            The array the values are decoded to, laid out column by
+	 *            column, column c of sample i at c * capacity + i.
+	 */
+	public void decode(ByteBuffer input, int length, int count,
+			long[] timestamps, float[] values)
+	{
+		input.get(bytes, 0, length);
+
+		for (int i = length; i < length + PADDING; i++)
+		{
+			bytes[i] = 0;
+		}
+
+		if (count == 0)
+		{
+			return;
+		}
+
+		position = 0;
+
+		long timestamp = getLong();
+		long delta = 0;
+
+		timestamps[0] = timestamp;
+
+		for (int i = 1; i < count; i++)
+		{
+			delta += getVarint();
+			timestamp += delta;
+
+			timestamps[i] = timestamp;
+		}
+
+		accumulator = 0;
+		bits = 0;
+
+		for (int c = 0; c < columns; c++)
+		{
+			decodeColumn(values, c * capacity, count);
+		}
+	}
+
+	private void encodeColumn(float[] values, int offset, int count)
+	{
+		int previous = Float.floatToRawIntBits(values[offset]);
+
+		writeBits(previous, 32);
+
+		// An invalid window so the first change writes its own.
+		int leading = 32;
+		int trailing = 32;
+
+		for (int i = 1; i < count; i++)
+		{
+			int value = Float.floatToRawIntBits(values[offset + i]);
+			int xor = value ^ previous;
+
+			previous = value;
+
+			if (xor == 0)
+			{
+				writeBits(0, 1);
+
+				continue;
+			}
+
+			int lead = Integer.numberOfLeadingZeros(xor);
+			int trail = Integer.numberOfTrailingZeros(xor);
+
+			if (lead >= leading && trail >= trailing)
+			{
+				writeBits(2, 2);
+				writeBits(xor >>> trailing, 32 - leading - trailing);
+			}
+			else
+			{
+				// Five bits hold a leading count of at most 31, a nonzero
+				// XOR of a 32 bit value has at most 31.
+				int length = 32 - lead - trail;
+
+				writeBits(3, 2);
+				writeBits(lead, 5);
+				writeBits(length - 1, 5);
+				writeBits(xor >>> trail, length);
+
+				leading = lead;
+				trailing = trail;
+			}
+		}
+	}
+
+	private void decodeColumn(float[] values, int offset, int count)
+	{
+		// The bit stream is held in locals, the decoder spends most of its
+		// time here.
+		byte[] bytes = this.bytes;
+		long accumulator = this.accumulator;
+		int bits = this.bits;
+		int position = this.position;
+
+		int previous = 0;
+
+		int leading = 0;
+		int trailing = 0;
+
+		for (int i = 0; i < count; i++)
+		{
+			// Keep at least 32 bits, enough for the control bits and the
+			// window of the longest value.
+			if (bits < 32)
+			{
+				accumulator = (accumulator << 32)
+						| ((bytes[position] & 0xFFL) << 24)
+						| ((bytes[position + 1] & 0xFFL) << 16)
+						| ((bytes[position + 2] & 0xFFL) << 8)
+						| (bytes[position + 3] & 0xFFL);
+
+				position += 4;
+				bits += 32;
+			}
+
+			if (i == 0)
+			{
+				bits -= 32;
+
+				previous = (int) (accumulator >>> bits);
+			}
+			else if (((accumulator >>> (bits - 1)) & 1) != 0)
+			{
+				if (((accumulator >>> (bits - 2)) & 1) != 0)
+				{
+					int window = (int) (accumulator >>> (bits - 12)) & 0x3FF;
+
+					leading = window >>> 5;
+					trailing = 32 - leading - ((window & 0x1F) + 1);
+
+					bits -= 12;
+				}
+				else
+				{
+					bits -= 2;
+				}
+
+				int length = 32 - leading - trailing;
+
+				if (bits < length)
+				{
+					accumulator = (accumulator << 32)
+							| ((bytes[position] & 0xFFL) << 24)
+							| ((bytes[position + 1] & 0xFFL) << 16)
+							| ((bytes[position + 2] & 0xFFL) << 8)
+							| (bytes[position + 3] & 0xFFL);
+
+					position += 4;
+					bits += 32;
+				}
+
+				bits -= length;
+
+				previous ^= (int) ((accumulator >>> bits)
+						& (0xFFFFFFFFL >>> (32 - length))) << trailing;
+			}
+			else
+			{
+				bits--;
+			}
+
+			values[offset + i] = Float.intBitsToFloat(previous);
+		}
+
+		this.accumulator = accumulator;
+		this.bits = bits;
+		this.position = position;
+	}
+
+	/**
+	 * Write the low bits of a value, at most 32.
+	 */
+	private void writeBits(int value, int count)
+	{
+		accumulator = (accumulator << count)
+				| (value & (0xFFFFFFFFL >>> (32 - count)));
+
+		bits += count;
+
+		if (bits >= 32)
+		{
+			bits -= 32;
+
+			int word = (int) (accumulator >>> bits);
+
+			bytes[position] = (byte) (word >>> 24);
+			bytes[position + 1] = (byte) (word >>> 16);
+			bytes[position + 2] = (byte) (word >>> 8);
+			bytes[position + 3] = (byte) word;
+
+			position += 4;
+		}
+	}
+
+	private void putLong(long value)
+	{
+		for (int i = 0; i < 8; i++)
+		{
+			bytes[position++] = (byte) (value >>> (i * 8));
+		}
+	}
+
+	private long getLong()
+	{
+		long value = 0;
+
+		for (int i = 0; i < 8; i++)
+		{
+			value |= (bytes[position++] & 0xFFL) << (i * 8);
+		}
+
+		return value;
+	}
+
+	private void putVarint(long value)
+	{
+		// Zigzag so small negative values are small too.
+		long zigzag = (value << 1) ^ (value >> 63);
+
+		while ((zigzag & ~0x7FL) != 0)
+		{
+			bytes[position++] = (byte) ((zigzag & 0x7F) | 0x80);
+
+			zigzag >>>= 7;
+		}
+
+		bytes[position++] = (byte) zigzag;
+	}
+
+	private long getVarint()
+	{
+		long zigzag = 0;
+
+		for (int shift = 0;; shift += 7)
+		{
+			byte b = bytes[position++];
+
+			zigzag |= (long) (b & 0x7F) << shift;
+
+			if (b >= 0)
+			{
+				break;
+			}
+		}
+
+		return (zigzag >>> 1) ^ -(zigzag & 1);
+	}
+}
@@ -0,0 +1,400 @@
+package com.kircherelectronics.simplelinearacceleration.recording;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Reads a recording through memory maps for random access by time. The
+ * RecordingIndex is held in memory, so finding the block of a timestamp is a
+ * binary search over the index and finding the sample is a binary search over
+ * the timestamps of the block, microseconds however long the recording is.
+ * The timestamps and columns of a block are returned as views of the mapped
+ * file, so no sample is copied or parsed until it is read, and only the pages
+ * that are read are loaded.
+ * 
+ * The checksums of the blocks are not verified, a recording that was not
+ * closed should be passed through RecordingRecovery first.
+ * 
+ * The blocks of a compressed recording are decoded by GorillaCodec instead,
+ * and their timestamps and columns are read-only views of the last decoded
+ * block, valid until another block is read.
+ * 
+ * A single map is limited to 2 GB, so the blocks are mapped in regions of
+ * whole blocks, each mapped the first time one of its blocks is read.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class MappedRecordingReader
+{
+	// The largest size of a mapped region.
+	private static final int REGION_SIZE = 1 << 28;
+
+	private RecordingHeader header;
+
+	private RecordingIndex index;
+
+	private int capacity;
+
+	private int blockSize;
+
+	// The number of blocks in a region.
+	private int regionBlocks;
+
+	private MappedByteBuffer[] regions;
+
+	// The codec of a compressed recording, null for raw blocks.
+	private GorillaCodec codec;
+
+	// The index of the decoded block, -1 if none.
+	private int decoded = -1;
+
+	// The decoded timestamps and values, column by column, of a compressed
+	// block.
+	private long[] timestamps;
+	private float[] columnValues;
+
+	private RandomAccessFile file;
+
+	private FileChannel channel;
+
+	/**
+	 * Open a recording and read its header and index.
+	 * 
+	 * @param file
+	 *            The recording.
+	 * @throws IOException
+	 *             If the file cannot be read or is not a recording.
+	 */
+	public MappedRecordingReader(File file) throws IOException
+	{
+		this.file = new RandomAccessFile(file, "r");
+
+		channel = this.file.getChannel();
+
+		try
+		{
+			MappedByteBuffer buffer = channel.map(
+					FileChannel.MapMode.READ_ONLY, 0, Math.min(
+							channel.size(), REGION_SIZE));
+
+			header = RecordingHeader.read(buffer);
+
+			index = RecordingIndex.read(channel, header);
+		}
+		catch (IOException e)
+		{
+			close();
+
+			throw e;
+		}
+
+		capacity = header.getBlockCapacity();
+		blockSize = header.getBlockSize();
+
+		if (header.isCompressed())
+		{
+			codec = new GorillaCodec(capacity, header.getColumns());
+
+			timestamps = new long[capacity];
+			columnValues = new float[capacity * header.getColumns()];
+
+			// The largest a compressed block can be.
+			blockSize = RecordingHeader.BLOCK_HEADER_SIZE
+					+ codec.getMaxEncodedSize();
+		}
+
+		regionBlocks = Math.max(1, REGION_SIZE / blockSize);
+
+		regions = new MappedByteBuffer[(index.getCount() + regionBlocks - 1)
+				/ regionBlocks];
+	}
+
+	/**
+	 * Get the samples between two timestamps.
+	 * 
+	 * @param from
+	 *            The first timestamp in nanoseconds, inclusive.
+	 * @param to
+	 *            The last timestamp in nanoseconds, exclusive.
+	 * @return The slice of the samples.
+	 * @throws IOException
+	 *             If the recording cannot be mapped.
+	 */
+	public RecordingSlice slice(long from, long to) throws IOException
+	{
+		int count = index.getCount();
+
+		if (count == 0 || to <= from)
+		{
+			return new RecordingSlice(this, 0, 0, 0, 0);
+		}
+
+		int firstBlock = index.find(from);
+		int firstSample = search(firstBlock, from);
+
+		int lastBlock = index.find(to - 1);
+		int endSample = search(lastBlock, to);
+
+		// A range that starts after the end of a block starts at the next.
+		if (firstSample == getSampleCount(firstBlock)
+				&& firstBlock < lastBlock)
+		{
+			firstBlock++;
+			firstSample = 0;
+		}
+
+		if (firstBlock == lastBlock && endSample <= firstSample)
+		{
+			return new RecordingSlice(this, 0, 0, 0, 0);
+		}
+
+		return new RecordingSlice(this, firstBlock, firstSample, lastBlock,
+				endSample);
+	}
+
+	/**
+	 * Get the timestamps of a block as a view of the mapped file.
+	 * 
+	 * @param block
+	 *            The index of the block.
+	 * @return The sensor timestamps in nanoseconds, one per sample.
+	 * @throws IOException
+	 *             If the recording cannot be mapped.
+	 */
+	public LongBuffer getTimestamps(int block) throws IOException
+	{
+		if (codec != null)
+		{
+			decode(block);
+
+			return LongBuffer.wrap(timestamps, 0, getSampleCount(block))
+					.slice().asReadOnlyBuffer();
+		}
+
+		ByteBuffer buffer = view(block, header.getTimestampOffset());
+
+		LongBuffer timestamps = buffer.asLongBuffer();
+
+		timestamps.limit(getSampleCount(block));
+
+		return timestamps;
+	}
+
+	/**
+	 * Get a column of a block as a view of the mapped file.
+	 * 
+	 * @param block
+	 *            The index of the block.
+	 * @param column
+	 *            The column.
+	 * @return The values, one per sample.
+	 * @throws IOException
+	 *             If the recording cannot be mapped.
+	 */
+	public FloatBuffer getColumn(int block, int column) throws IOException
+	{
+		if (codec != null)
+		{
+			decode(block);
+
+			return FloatBuffer.wrap(columnValues, column * capacity,
+					getSampleCount(block)).slice().asReadOnlyBuffer();
+		}
+
+		ByteBuffer buffer = view(block, header.getColumnOffset(column));
+
+		FloatBuffer values = buffer.asFloatBuffer();
+
+		values.limit(getSampleCount(block));
+
+		return values;
+	}
+
+	/**
+	 * Get the number of samples in a block.
+	 * 
+	 * @param block
+	 *            The index of the block.
+	 * @return The number of samples.
+	 * @throws IOException
+	 *             If the recording cannot be mapped.
+	 */
+	public int getSampleCount(int block) throws IOException
+	{
+		ByteBuffer region = region(block);
+
+		return Math.min(region.getInt(offset(block)), capacity);
+	}
+
+	/**
+	 * Get the number of samples dropped right before the first sample of a
+	 * block.
+	 * 
+	 * @param block
+	 *            The index of the block.
+	 * @return The number of samples dropped.
+	 * @throws IOException
+	 *             If the recording cannot be mapped.
+	 */
+	public int getDroppedCount(int block) throws IOException
+	{
+		return region(block).getInt(offset(block) + 12);
+	}
+
+	public void close() throws IOException
+	{
+		// The maps stay valid until they are garbage collected.
+		regions = null;
+
+		channel.close();
+		file.close();
+	}
+
+	public RecordingHeader getHeader()
+	{
+		return header;
+	}
+
+	public RecordingIndex getIndex()
+	{
+		return index;
+	}
+
+	/**
+	 * Find the first sample of a block at or after a timestamp.
+	 * 
+	 * @return The index of the sample, the number of samples in the block if
+	 *         all are before the timestamp.
+	 */
+	private int search(int block, long timestamp) throws IOException
+	{
+		LongBuffer timestamps = getTimestamps(block);
+
+		int low = 0;
+		int high = timestamps.limit() - 1;
+
+		while (low <= high)
+		{
+			int middle = (low + high) >>> 1;
+
+			if (timestamps.get(middle) < timestamp)
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle - 1;
+			}
+		}
+
+		return low;
+	}
+
+	/**
+	 * Decode a compressed block unless it is already decoded.
+	 */
+	private void decode(int block) throws IOException
+	{
+		if (block == decoded)
+		{
+			return;
+		}
+
+		ByteBuffer buffer = view(block, 0);
+
+		int length = buffer.getInt(4);
+
+		if (length < 0 || length > index.getSize(block)
+				- RecordingHeader.BLOCK_HEADER_SIZE)
+		{
+			throw new IOException("Corrupt block " + block);
+		}
+
+		buffer.position(RecordingHeader.BLOCK_HEADER_SIZE);
+
+		codec.decode(buffer, length, getSampleCount(block), timestamps,
+				columnValues);
+
+		decoded = block;
+	}
+
+	/**
+	 * Get a view of a block starting at an offset in the block.
+	 */
+	private ByteBuffer view(int block, int offset) throws IOException
+	{
+		ByteBuffer buffer = region(block).duplicate();
+
+		buffer.position(offset(block) + offset);
+
+		return buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Get the offset of a block in its region.
+	 */
+	private int offset(int block)
+	{
+		int first = (block / regionBlocks) * regionBlocks;
+
+		return (int) (index.getOffset(block) - index.getOffset(first));
+	}
+
+	/**
+	 * Get the mapped region holding a block, mapping it if it is not yet.
+	 */
+	private MappedByteBuffer region(int block) throws IOException
+	{
+		if (block < 0 || block >= index.getCount())
+		{
+			throw new IndexOutOfBoundsException("Block " + block + " of "
+					+ index.getCount());
+		}
+
+		int region = block / regionBlocks;
+
+		if (regions[region] == null)
+		{
+			int first = region * regionBlocks;
+			int last = Math.min(first + regionBlocks, index.getCount()) - 1;
+
+			long start = index.getOffset(first);
+			long end = index.getOffset(last) + index.getSize(last);
+
+			MappedByteBuffer buffer = channel.map(
+					FileChannel.MapMode.READ_ONLY, start, end - start);
+
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+			regions[region] = buffer;
+		}
+
+		return regions[region];
+	}
+}
@@ -0,0 +1,406 @@
+package com.kircherelectronics.simplelinearacceleration.recording;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import com.kircherelectronics.simplelinearacceleration.filter.LinearAccelerationConfig;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * The header of a recording: the layout of its blocks and the sensor and
+ * filter metadata of the session as key and value strings.
+ * 
+ * All values of a recording are little-endian, the byte order of the devices
+ * the application runs on, so the columns can be copied straight out of the
+ * file. The header is laid out as:
+ * 
+ * <pre>
+ * int   MAGIC
+ * short VERSION
+ * short columns
+ * int   block capacity, the number of samples in a block
+ * int   header length in bytes, a multiple of eight
+ * short encoding of the blocks, ENCODING_RAW or ENCODING_GORILLA
+ * short reserved, zero
+ * int   number of metadata entries
+ * per entry, a key and a value, each a short length and UTF-8 bytes
+ * zero padding to the header length
+ * </pre>
+ * 
+ * The blocks follow the header and a closed recording ends with the
+ * RecordingIndex footer. A block starts with:
+ * 
+ * <pre>
+ * int   number of samples in the block, at most the capacity
+ * int   length in bytes of the rest of the block
+ * int   CRC32 of the two fields above and the rest of the block
+ * int   number of samples dropped right before the first sample of the block
+ * </pre>
+ * 
+ * A block is full unless it is the last, was committed early or ends before
+ * dropped samples, see RecordingWriter. The dropped counts keep the gaps the
+ * sequence numbers of the samples had when they were logged.
+ * 
+ * A raw block is followed by all of its columns, so the blocks are of the same
+ * size and block n starts at header length + n * block size:
+ * 
+ * <pre>
+ * long  the sensor timestamp in nanoseconds of each of capacity samples
+ * float the values of column 0 of each of capacity samples
+ * ...
+ * float the values of the last column of each of capacity samples
+ * </pre>
+ * 
+ * A Gorilla block is followed by its samples compressed by GorillaCodec, and
+ * the blocks are found through the index.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class RecordingHeader
+{
+	// "SLAR" in the first four bytes of the file.
+	public static final int MAGIC = 0x52414C53;
+
+	public static final short VERSION = 1;
+
+	// The blocks hold the columns as they are.
+	public static final int ENCODING_RAW = 0;
+
+	// The blocks are compressed with GorillaCodec.
+	public static final int ENCODING_GORILLA = 1;
+
+	// The file extension of a recording.
+	public static final String EXTENSION = ".slr";
+
+	// The default number of samples in a block, five seconds at 200 Hz.
+	public static final int BLOCK_CAPACITY = 1024;
+
+	// The default columns, the x, y, z acceleration and the x, y, z linear
+	// acceleration.
+	public static final int COLUMNS = 6;
+
+	// The size of the block count, length, checksum and dropped count.
+	public static final int BLOCK_HEADER_SIZE = 16;
+
+	// The size of the fixed fields of the header.
+	private static final int FIXED_SIZE = 24;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private int columns;
+
+	private int blockCapacity;
+
+	private int length;
+
+	private int encoding = ENCODING_RAW;
+
+	private Map<String, String> metadata = new LinkedHashMap<String, String>();
+
+	/**
+	 * Create a header with the default columns and block capacity.
+	 */
+	public RecordingHeader()
+	{
+		this(COLUMNS, BLOCK_CAPACITY);
+	}
+
+	/**
+	 * Create a header.
+	 * 
+	 * @param columns
+	 *            The number of values in a sample.
+	 * @param blockCapacity
+	 *            The number of samples in a block, at least one.
+	 */
+	public RecordingHeader(int columns, int blockCapacity)
+	{
+		this.columns = columns;
+		this.blockCapacity = Math.max(1, blockCapacity);
+	}
+
+	/**
+	 * Read a header.
+	 * 
+	 * @param buffer
+	 *            The buffer holding at least the header from its position.
+	 * @return The header.
+	 * @throws IOException
+	 *             If the buffer does not hold a recording header.
+	 */
+	public static RecordingHeader read(ByteBuffer buffer) throws IOException
+	{
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+		if (buffer.remaining() < FIXED_SIZE || buffer.getInt() != MAGIC)
+		{
+			throw new IOException("Not a recording");
+		}
+
+		short version = buffer.getShort();
+
+		if (version != VERSION)
+		{
+			throw new IOException("Unsupported recording version " + version);
+		}
+
+		int columns = buffer.getShort();
+		int blockCapacity = buffer.getInt();
+
+		RecordingHeader header = new RecordingHeader(columns, blockCapacity);
+
+		header.length = buffer.getInt();
+		header.encoding = buffer.getShort();
+
+		// Skip the reserved field.
+		buffer.getShort();
+
+		if (header.encoding != ENCODING_RAW
+				&& header.encoding != ENCODING_GORILLA)
+		{
+			throw new IOException("Unsupported recording encoding "
+					+ header.encoding);
+		}
+
+		int entries = buffer.getInt();
+
+		for (int i = 0; i < entries; i++)
+		{
+			String key = getString(buffer);
+
+			header.metadata.put(key, getString(buffer));
+		}
+
+		return header;
+	}
+
+	/**
+	 * Write the header.
+	 * 
+	 * @return A buffer holding the header, padded to the header length.
+	 */
+	public ByteBuffer write()
+	{
+		int size = FIXED_SIZE;
+
+		for (Map.Entry<String, String> entry : metadata.entrySet())
+		{
+			size += 4 + entry.getKey().getBytes(UTF8).length
+					+ entry.getValue().getBytes(UTF8).length;
+		}
+
+		length = (size + 7) & ~7;
+
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(
+				ByteOrder.LITTLE_ENDIAN);
+
+		buffer.putInt(MAGIC);
+		buffer.putShort(VERSION);
+		buffer.putShort((short) columns);
+		buffer.putInt(blockCapacity);
+		buffer.putInt(length);
+		buffer.putShort((short) encoding);
+		buffer.putShort((short) 0);
+		buffer.putInt(metadata.size());
+
+		for (Map.Entry<String, String> entry : metadata.entrySet())
+		{
+			putString(buffer, entry.getKey());
+			putString(buffer, entry.getValue());
+		}
+
+		buffer.clear();
+
+		return buffer;
+	}
+
+	/**
+	 * Add the configuration of the filter pipeline to the metadata.
+	 * 
+	 * @param config
+	 *            The configuration of the pipeline.
+	 */
+	public void putConfig(LinearAccelerationConfig config)
+	{
+		put("filter.lpf", String.valueOf(config.isLpfAccelerationActive()));
+		put("filter.lpf.butterworth",
+				String.valueOf(config.isLpfAccelerationButterworth()));
+		put("filter.lpf.static_alpha",
+				String.valueOf(config.isLpfAccelerationStaticAlpha()));
+		put("filter.lpf.alpha",
+				String.valueOf(config.getLpfAccelerationAlpha()));
+		put("filter.lpf.order",
+				String.valueOf(config.getLpfAccelerationOrder()));
+		put("filter.lpf.cutoff",
+				String.valueOf(config.getLpfAccelerationCutoff()));
+		put("filter.mean", String.valueOf(config
+				.isMeanFilterAccelerationActive()));
+		put("filter.mean.window",
+				String.valueOf(config.getMeanFilterAccelerationWindow()));
+		put("filter.median",
+				String.valueOf(config.isMedianFilterAccelerationActive()));
+		put("filter.median.window",
+				String.valueOf(config.getMedianFilterAccelerationWindow()));
+		put("gravity", String.valueOf(config.getGravity()));
+		put("gravity.kalman",
+				String.valueOf(config.isGravityEstimatorKalman()));
+		put("gravity.sample_window", String.valueOf(config.getSampleWindow()));
+		put("gravity.variance_threshold",
+				String.valueOf(config.getVarianceThreshold()));
+		put("gravity.process_noise",
+				String.valueOf(config.getGravityProcessNoise()));
+		put("gravity.measurement_noise",
+				String.valueOf(config.getGravityMeasurementNoise()));
+	}
+
+	/**
+	 * Add an entry to the metadata, replacing any entry with the same key.
+	 */
+	public void put(String key, String value)
+	{
+		metadata.put(key, value);
+	}
+
+	/**
+	 * Get an entry of the metadata.
+	 * 
+	 * @return The value, or null if there is no entry with the key.
+	 */
+	public String get(String key)
+	{
+		return metadata.get(key);
+	}
+
+	public Map<String, String> getMetadata()
+	{
+		return Collections.unmodifiableMap(metadata);
+	}
+
+	/**
+	 * Set the encoding of the blocks, ENCODING_RAW or ENCODING_GORILLA.
+	 */
+	public void setEncoding(int encoding)
+	{
+		this.encoding = encoding;
+	}
+
+	public int getEncoding()
+	{
+		return encoding;
+	}
+
+	/**
+	 * Check if the blocks are compressed, so they are of variable size.
+	 */
+	public boolean isCompressed()
+	{
+		return encoding != ENCODING_RAW;
+	}
+
+	public int getColumns()
+	{
+		return columns;
+	}
+
+	public int getBlockCapacity()
+	{
+		return blockCapacity;
+	}
+
+	/**
+	 * Get the length of the header in bytes, known once it has been read or
+	 * written.
+	 */
+	public int getLength()
+	{
+		return length;
+	}
+
+	/**
+	 * Get the size of a raw block in bytes.
+	 */
+	public int getBlockSize()
+	{
+		return BLOCK_HEADER_SIZE + blockCapacity * (8 + 4 * columns);
+	}
+
+	/**
+	 * Get the offset of the timestamps in a block.
+	 */
+	public int getTimestampOffset()
+	{
+		return BLOCK_HEADER_SIZE;
+	}
+
+	/**
+	 * Get the offset of the values of a column in a block.
+	 */
+	public int getColumnOffset(int column)
+	{
+		return BLOCK_HEADER_SIZE + blockCapacity * (8 + 4 * column);
+	}
+
+	/**
+	 * Compute the checksum of a block, over its count and length and
+	 * everything after its checksum.
+	 * 
+	 * @param crc
+	 *            The CRC32 to compute the checksum with.
+	 * @param block
+	 *            The array holding the block.
+	 * @param offset
+	 *            The offset of the block in the array.
+	 * @param size
+	 *            The size of the block in bytes.
+	 * @return The checksum.
+	 */
+	static int checksum(CRC32 crc, byte[] block, int offset, int size)
+	{
+		crc.reset();
+		crc.update(block, offset, 8);
+		crc.update(block, offset + 12, size - 12);
+
+		return (int) crc.getValue();
+	}
+
+	private static void putString(ByteBuffer buffer, String value)
+	{
+		byte[] bytes = value.getBytes(UTF8);
+
+		buffer.putShort((short) bytes.length);
+		buffer.put(bytes);
+	}
+
+	private static String getString(ByteBuffer buffer)
+	{
+		byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+
+		buffer.get(bytes);
+
+		return new String(bytes, UTF8);
+	}
+}
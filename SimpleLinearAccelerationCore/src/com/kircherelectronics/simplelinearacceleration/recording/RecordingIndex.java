@@ -0,0 +1,338 @@
+package com.kircherelectronics.simplelinearacceleration.recording;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * The sparse time index of a recording: the timestamp of the first sample and
+ * the file offset of every block. RecordingWriter builds it while writing and
+ * appends it as a footer when the recording is closed:
+ * 
+ * <pre>
+ * per block, long timestamp of the first sample and long offset of the block
+ * long  offset of the footer
+ * int   number of blocks
+ * int   MAGIC
+ * </pre>
+ * 
+ * A recording that was never closed has no footer, its index is rebuilt from
+ * the headers of its complete blocks instead, stepping over each block by its
+ * length when the blocks are compressed.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class RecordingIndex
+{
+	// "SLAI" in the last four bytes of the file.
+	public static final int MAGIC = 0x49414C53;
+
+	// The size of the fixed fields at the end of the footer.
+	public static final int TRAILER_SIZE = 16;
+
+	private static final int ENTRY_SIZE = 16;
+
+	private int count = 0;
+
+	private long[] timestamps;
+
+	private long[] offsets;
+
+	// The end of the blocks, the offset of the footer if there is one.
+	private long end;
+
+	/**
+	 * Create an empty index.
+	 */
+	public RecordingIndex()
+	{
+		timestamps = new long[64];
+		offsets = new long[64];
+	}
+
+	/**
+	 * Read the index of a recording from its footer, or rebuild it from its
+	 * blocks if it has none.
+	 * 
+	 * @param channel
+	 *            The recording.
+	 * @param header
+	 *            The header of the recording.
+	 * @return The index.
+	 * @throws IOException
+	 *             If the recording cannot be read.
+	 */
+	public static RecordingIndex read(FileChannel channel,
+			RecordingHeader header) throws IOException
+	{
+		RecordingIndex index = readFooter(channel, header);
+
+		if (index != null)
+		{
+			return index;
+		}
+
+		index = new RecordingIndex();
+
+		long size = channel.size();
+
+		// No footer, index every complete block.
+		int blockSize = header.getBlockSize();
+
+		ByteBuffer block = ByteBuffer.allocate(
+				RecordingHeader.BLOCK_HEADER_SIZE + 8).order(
+				ByteOrder.LITTLE_ENDIAN);
+
+		long offset = header.getLength();
+
+		while (offset + block.capacity() <= size)
+		{
+			block.clear();
+
+			read(channel, block, offset);
+
+			if (header.isCompressed())
+			{
+				// Compressed blocks are only found through their lengths.
+				blockSize = RecordingHeader.BLOCK_HEADER_SIZE + block.getInt(4);
+			}
+
+			if (blockSize < block.capacity() || offset + blockSize > size)
+			{
+				break;
+			}
+
+			index.add(block.getLong(RecordingHeader.BLOCK_HEADER_SIZE), offset);
+
+			offset += blockSize;
+		}
+
+		index.end = offset;
+
+		return index;
+	}
+
+	/**
+	 * Read the index of a recording from its footer.
+	 * 
+	 * @param channel
+	 *            The recording.
+	 * @param header
+	 *            The header of the recording.
+	 * @return The index, or null if the recording has no valid footer.
+	 * @throws IOException
+	 *             If the recording cannot be read.
+	 */
+	public static RecordingIndex readFooter(FileChannel channel,
+			RecordingHeader header) throws IOException
+	{
+		long size = channel.size();
+
+		if (size - header.getLength() < TRAILER_SIZE)
+		{
+			return null;
+		}
+
+		ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE).order(
+				ByteOrder.LITTLE_ENDIAN);
+
+		read(channel, trailer, size - TRAILER_SIZE);
+
+		long footer = trailer.getLong(0);
+		int count = trailer.getInt(8);
+
+		if (trailer.getInt(12) != MAGIC || count < 0
+				|| footer < header.getLength()
+				|| footer + (long) count * ENTRY_SIZE + TRAILER_SIZE != size)
+		{
+			return null;
+		}
+
+		RecordingIndex index = new RecordingIndex();
+
+		ByteBuffer entries = ByteBuffer.allocate(count * ENTRY_SIZE).order(
+				ByteOrder.LITTLE_ENDIAN);
+
+		read(channel, entries, footer);
+
+		for (int i = 0; i < count; i++)
+		{
+			index.add(entries.getLong(i * ENTRY_SIZE),
+					entries.getLong(i * ENTRY_SIZE + 8));
+		}
+
+		index.end = footer;
+
+		return index;
+	}
+
+	/**
+	 * Add a block to the index.
+	 * 
+	 * @param timestamp
+	 *            The timestamp of the first sample of the block.
+	 * @param offset
+	 *            The offset of the block in the file.
+	 */
+	public void add(long timestamp, long offset)
+	{
+		if (count == timestamps.length)
+		{
+			timestamps = Arrays.copyOf(timestamps, count * 2);
+			offsets = Arrays.copyOf(offsets, count * 2);
+		}
+
+		timestamps[count] = timestamp;
+		offsets[count] = offset;
+
+		count++;
+	}
+
+	/**
+	 * Write the index as a footer.
+	 * 
+	 * @param footer
+	 *            The offset the footer is written at.
+	 * @return A buffer holding the footer.
+	 */
+	public ByteBuffer write(long footer)
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(count * ENTRY_SIZE
+				+ TRAILER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+		for (int i = 0; i < count; i++)
+		{
+			buffer.putLong(timestamps[i]);
+			buffer.putLong(offsets[i]);
+		}
+
+		buffer.putLong(footer);
+		buffer.putInt(count);
+		buffer.putInt(MAGIC);
+
+		buffer.clear();
+
+		return buffer;
+	}
+
+	/**
+	 * Find the block holding a timestamp.
+	 * 
+	 * @param timestamp
+	 *            The timestamp in nanoseconds.
+	 * @return The last block whose first sample is at or before the
+	 *         timestamp, zero if the timestamp is before the recording and -1
+	 *         if the recording has no blocks.
+	 */
+	public int find(long timestamp)
+	{
+		int low = 0;
+		int high = count - 1;
+
+		while (low <= high)
+		{
+			int middle = (low + high) >>> 1;
+
+			if (timestamps[middle] <= timestamp)
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle - 1;
+			}
+		}
+
+		return Math.max(high, Math.min(0, count - 1));
+	}
+
+	/**
+	 * Get the number of blocks.
+	 */
+	public int getCount()
+	{
+		return count;
+	}
+
+	/**
+	 * Get the timestamp of the first sample of a block.
+	 */
+	public long getTimestamp(int block)
+	{
+		return timestamps[block];
+	}
+
+	/**
+	 * Get the offset of a block in the file.
+	 */
+	public long getOffset(int block)
+	{
+		return offsets[block];
+	}
+
+	/**
+	 * Get the size of a block in the file, the distance to the next block or
+	 * to the end of the blocks.
+	 */
+	public long getSize(int block)
+	{
+		return ((block + 1 < count) ? offsets[block + 1] : end)
+				- offsets[block];
+	}
+
+	/**
+	 * Get the end of the blocks in the file.
+	 */
+	public long getEnd()
+	{
+		return end;
+	}
+
+	/**
+	 * Set the end of the blocks in the file.
+	 */
+	void setEnd(long end)
+	{
+		this.end = end;
+	}
+
+	/**
+	 * Fill a buffer from a position in the file.
+	 */
+	private static void read(FileChannel channel, ByteBuffer buffer,
+			long position) throws IOException
+	{
+		while (buffer.hasRemaining())
+		{
+			int read = channel.read(buffer, position);
+
+			if (read < 0)
+			{
+				throw new IOException("Unexpected end of recording");
+			}
+
+			position += read;
+		}
+	}
+}
@@ -0,0 +1,398 @@
+package com.kircherelectronics.simplelinearacceleration.recording;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * The manifest of a session recorded in segments by SegmentedRecordingWriter,
+ * the segments in order with the time range, number of samples and size of
+ * each. The manifest is a small text file in the directory of the session:
+ * 
+ * <pre>
+ * # comment
+ * name first-timestamp last-timestamp samples bytes
+ * </pre>
+ * 
+ * One line per segment, oldest first. The segment being written has -1 for
+ * its last timestamp, samples and bytes until it is closed. The manifest is
+ * replaced by renaming a new file over it, so a crash leaves either the old or
+ * the new manifest, never a partial one.
+ * 
+ * A session is locked through a lock file next to the manifest while
+ * SegmentedRecordingWriter writes it or RecordingRecovery recovers it, so
+ * neither touches a session the other is working on. The lock file stays in
+ * the directory once it is created and only the lock on it is released. A
+ * lock file deleted on release could be locked through an old handle by one
+ * process while another creates and locks a new one, and both would own the
+ * session.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class RecordingManifest
+{
+	// The name of the manifest in the directory of a session.
+	public static final String FILE_NAME = "session.manifest";
+
+	// The name of the lock file in the directory of a session.
+	public static final String LOCK_FILE_NAME = "session.lock";
+
+	private static final String TEMPORARY_SUFFIX = ".tmp";
+
+	private static final String CHARSET = "UTF-8";
+
+	private List<Segment> segments = new ArrayList<Segment>();
+
+	/**
+	 * Read the manifest of a session.
+	 * 
+	 * @param directory
+	 *            The directory of the session.
+	 * @return The manifest.
+	 * @throws IOException
+	 *             If the manifest cannot be read or is not valid.
+	 */
+	public static RecordingManifest read(File directory) throws IOException
+	{
+		RecordingManifest manifest = new RecordingManifest();
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(new File(directory, FILE_NAME)), CHARSET));
+
+		try
+		{
+			String line;
+
+			while ((line = reader.readLine()) != null)
+			{
+				line = line.trim();
+
+				if (line.length() == 0 || line.startsWith("#"))
+				{
+					continue;
+				}
+
+				String[] fields = line.split("\\s+");
+
+				if (fields.length != 5)
+				{
+					throw new IOException("Invalid manifest line: " + line);
+				}
+
+				try
+				{
+					manifest.add(new Segment(fields[0], Long
+							.parseLong(fields[1]), Long.parseLong(fields[2]),
+							Long.parseLong(fields[3]), Long.parseLong(fields[4])));
+				}
+				catch (NumberFormatException e)
+				{
+					throw new IOException("Invalid manifest line: " + line);
+				}
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+
+		return manifest;
+	}
+
+	/**
+	 * Check if a directory holds a session.
+	 */
+	public static boolean exists(File directory)
+	{
+		return new File(directory, FILE_NAME).isFile();
+	}
+
+	/**
+	 * Lock a session.
+	 * 
+	 * @param directory
+	 *            The directory of the session.
+	 * @return The lock, or null if the session is locked.
+	 * @throws IOException
+	 *             If the lock file cannot be created.
+	 */
+	public static FileLock lock(File directory) throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(new File(directory,
+				LOCK_FILE_NAME), "rw");
+
+		FileLock lock = null;
+
+		try
+		{
+			lock = RecordingWriter.tryLock(file.getChannel());
+		}
+		finally
+		{
+			if (lock == null)
+			{
+				file.close();
+			}
+		}
+
+		return lock;
+	}
+
+	/**
+	 * Release the lock of a session. The lock file is left in place.
+	 * 
+	 * @param lock
+	 *            The lock returned by lock().
+	 * @throws IOException
+	 *             If the lock cannot be released.
+	 */
+	public static void unlock(FileLock lock) throws IOException
+	{
+		// Closing the channel releases the lock.
+		lock.channel().close();
+	}
+
+	/**
+	 * Write the manifest, replacing the manifest of the session.
+	 * 
+	 * @param directory
+	 *            The directory of the session.
+	 * @throws IOException
+	 *             If the manifest cannot be written.
+	 */
+	public void write(File directory) throws IOException
+	{
+		File file = new File(directory, FILE_NAME);
+		File temporary = new File(directory, FILE_NAME + TEMPORARY_SUFFIX);
+
+		FileOutputStream stream = new FileOutputStream(temporary);
+
+		try
+		{
+			Writer writer = new OutputStreamWriter(stream, CHARSET);
+
+			writer.write("# name first-timestamp last-timestamp samples bytes\n");
+
+			for (Segment segment : segments)
+			{
+				writer.write(segment.name + " " + segment.firstTimestamp + " "
+						+ segment.lastTimestamp + " " + segment.samples + " "
+						+ segment.size + "\n");
+			}
+
+			writer.flush();
+
+			// Make the new manifest durable before it replaces the old one.
+			stream.getFD().sync();
+		}
+		finally
+		{
+			stream.close();
+		}
+
+		if (!temporary.renameTo(file))
+		{
+			throw new IOException("Cannot replace " + file);
+		}
+	}
+
+	/**
+	 * Add a segment after the last.
+	 */
+	public void add(Segment segment)
+	{
+		segments.add(segment);
+	}
+
+	/**
+	 * Remove the oldest segment.
+	 * 
+	 * @return The segment.
+	 */
+	public Segment removeFirst()
+	{
+		return segments.remove(0);
+	}
+
+	/**
+	 * Remove a segment.
+	 */
+	public void remove(Segment segment)
+	{
+		segments.remove(segment);
+	}
+
+	/**
+	 * Get the segments, oldest first.
+	 */
+	public List<Segment> getSegments()
+	{
+		return Collections.unmodifiableList(segments);
+	}
+
+	/**
+	 * Get the segments holding samples in a time range, oldest first.
+	 * 
+	 * @param from
+	 *            The first timestamp in nanoseconds, inclusive.
+	 * @param to
+	 *            The last timestamp in nanoseconds, exclusive.
+	 * @return The segments.
+	 */
+	public List<Segment> getSegments(long from, long to)
+	{
+		List<Segment> range = new ArrayList<Segment>();
+
+		for (Segment segment : segments)
+		{
+			if (segment.firstTimestamp < to
+					&& (!segment.isClosed() || segment.lastTimestamp >= from))
+			{
+				range.add(segment);
+			}
+		}
+
+		return range;
+	}
+
+	/**
+	 * Get the total size in bytes of the closed segments.
+	 */
+	public long getSize()
+	{
+		long size = 0;
+
+		for (Segment segment : segments)
+		{
+			size += Math.max(0, segment.size);
+		}
+
+		return size;
+	}
+
+	/**
+	 * A segment of a session.
+	 */
+	public static class Segment
+	{
+		private String name;
+
+		private long firstTimestamp;
+
+		private long lastTimestamp;
+
+		private long samples;
+
+		private long size;
+
+		/**
+		 * Create a segment.
+		 * 
+		 * @param name
+		 *            The file name of the segment in the session directory.
+		 * @param firstTimestamp
+		 *            The timestamp of the first sample in nanoseconds.
+		 * @param lastTimestamp
+		 *            The timestamp of the last sample in nanoseconds, -1 while
+		 *            the segment is written.
+		 * @param samples
+		 *            The number of samples, -1 while the segment is written.
+		 * @param size
+		 *            The size of the segment in bytes, -1 while the segment is
+		 *            written.
+		 */
+		public Segment(String name, long firstTimestamp, long lastTimestamp,
+				long samples, long size)
+		{
+			this.name = name;
+			this.firstTimestamp = firstTimestamp;
+			this.lastTimestamp = lastTimestamp;
+			this.samples = samples;
+			this.size = size;
+		}
+
+		/**
+		 * Record the extent of the segment once it is closed.
+		 */
+		void close(long lastTimestamp, long samples, long size)
+		{
+			this.lastTimestamp = lastTimestamp;
+			this.samples = samples;
+			this.size = size;
+		}
+
+		/**
+		 * Get the file of the segment.
+		 * 
+		 * @param directory
+		 *            The directory of the session.
+		 */
+		public File getFile(File directory)
+		{
+			return new File(directory, name);
+		}
+
+		/**
+		 * Check if the segment was closed, a segment that is not was being
+		 * written or the recorder stopped before closing it.
+		 */
+		public boolean isClosed()
+		{
+			return samples >= 0;
+		}
+
+		public String getName()
+		{
+			return name;
+		}
+
+		public long getFirstTimestamp()
+		{
+			return firstTimestamp;
+		}
+
+		public long getLastTimestamp()
+		{
+			return lastTimestamp;
+		}
+
+		public long getSamples()
+		{
+			return samples;
+		}
+
+		public long getSize()
+		{
+			return size;
+		}
+	}
+}
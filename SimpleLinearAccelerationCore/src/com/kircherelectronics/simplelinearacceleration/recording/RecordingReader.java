@@ -0,0 +1,362 @@
+package com.kircherelectronics.simplelinearacceleration.recording;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Reads a recording written by RecordingWriter, see RecordingHeader for the
+ * format. A block is read into a preallocated buffer in a single read and its
+ * columns are copied out with bulk copies, so nothing is parsed. A compressed
+ * block is decoded by GorillaCodec into preallocated arrays when it is read.
+ * The checksum of each block is verified when it is read.
+ * Blocks can be read in any order.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class RecordingReader
+{
+	// The largest header read before the metadata is known.
+	private static final int MAX_HEADER_SIZE = 1 << 16;
+
+	private RecordingHeader header;
+
+	private int columns;
+
+	private int capacity;
+
+	private int blockSize;
+
+	private RecordingIndex index;
+
+	// The index of the block in the buffer, -1 if none.
+	private int loaded = -1;
+
+	private ByteBuffer block;
+
+	private CRC32 checksum = new CRC32();
+
+	// The codec of a compressed recording, null for raw blocks.
+	private GorillaCodec codec;
+
+	// The decoded timestamps and values, column by column, of a compressed
+	// block.
+	private long[] timestamps;
+	private float[] columnValues;
+
+	private FileInputStream stream;
+
+	private FileChannel channel;
+
+	/**
+	 * Open a recording and read its header.
+	 * 
+	 * @param file
+	 *            The recording.
+	 * @throws IOException
+	 *             If the file cannot be read or is not a recording.
+	 */
+	public RecordingReader(File file) throws IOException
+	{
+		stream = new FileInputStream(file);
+		channel = stream.getChannel();
+
+		try
+		{
+			ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(
+					MAX_HEADER_SIZE, channel.size()));
+
+			read(buffer, 0);
+
+			buffer.flip();
+
+			header = RecordingHeader.read(buffer);
+		}
+		catch (IOException e)
+		{
+			close();
+
+			throw e;
+		}
+
+		columns = header.getColumns();
+		capacity = header.getBlockCapacity();
+		blockSize = header.getBlockSize();
+
+		index = RecordingIndex.read(channel, header);
+
+		if (header.isCompressed())
+		{
+			codec = new GorillaCodec(capacity, columns);
+
+			timestamps = new long[capacity];
+			columnValues = new float[capacity * columns];
+
+			blockSize = RecordingHeader.BLOCK_HEADER_SIZE
+					+ codec.getMaxEncodedSize();
+		}
+
+		// A heap buffer, so the checksum runs over its array.
+		block = ByteBuffer.allocate(blockSize).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Get the number of samples in a block.
+	 * 
+	 * @param index
+	 *            The index of the block.
+	 * @return The number of samples.
+	 * @throws IOException
+	 *             If the block cannot be read.
+	 */
+	public int getSampleCount(int index) throws IOException
+	{
+		load(index);
+
+		return Math.min(block.getInt(0), capacity);
+	}
+
+	/**
+	 * Get the number of samples dropped right before the first sample of a
+	 * block.
+	 * 
+	 * @param index
+	 *            The index of the block.
+	 * @return The number of samples dropped.
+	 * @throws IOException
+	 *             If the block cannot be read.
+	 */
+	public int getDroppedCount(int index) throws IOException
+	{
+		load(index);
+
+		return block.getInt(12);
+	}
+
+	/**
+	 * Read the timestamps of a block.
+	 * 
+	 * @param index
+	 *            The index of the block.
+	 * @param timestamps
+	 *            The array to copy the sensor timestamps in nanoseconds to, at
+	 *            least the block capacity long.
+	 * @return The number of samples in the block.
+	 * @throws IOException
+	 *             If the block cannot be read.
+	 */
+	public int readTimestamps(int index, long[] timestamps) throws IOException
+	{
+		int count = getSampleCount(index);
+
+		if (codec != null)
+		{
+			System.arraycopy(this.timestamps, 0, timestamps, 0, count);
+
+			return count;
+		}
+
+		block.position(header.getTimestampOffset());
+		block.asLongBuffer().get(timestamps, 0, count);
+
+		return count;
+	}
+
+	/**
+	 * Read a column of a block.
+	 * 
+	 * @param index
+	 *            The index of the block.
+	 * @param column
+	 *            The column.
+	 * @param values
+	 *            The array to copy the values to, at least the block capacity
+	 *            long.
+	 * @return The number of samples in the block.
+	 * @throws IOException
+	 *             If the block cannot be read.
+	 */
+	public int readColumn(int index, int column, float[] values)
+			throws IOException
+	{
+		int count = getSampleCount(index);
+
+		if (codec != null)
+		{
+			System.arraycopy(columnValues, column * capacity, values, 0, count);
+
+			return count;
+		}
+
+		block.position(header.getColumnOffset(column));
+		block.asFloatBuffer().get(values, 0, count);
+
+		return count;
+	}
+
+	/**
+	 * Read the samples of a block with their values interleaved.
+	 * 
+	 * @param index
+	 *            The index of the block.
+	 * @param timestamps
+	 *            The array to copy the sensor timestamps in nanoseconds to.
+	 * @param values
+	 *            The array to copy the interleaved values to, at least the
+	 *            block capacity times the number of columns long.
+	 * @return The number of samples in the block.
+	 * @throws IOException
+	 *             If the block cannot be read.
+	 */
+	public int read(int index, long[] timestamps, float[] values)
+			throws IOException
+	{
+		int count = readTimestamps(index, timestamps);
+
+		for (int c = 0; c < columns; c++)
+		{
+			if (codec != null)
+			{
+				int offset = c * capacity;
+
+				for (int i = 0, j = c; i < count; i++, j += columns)
+				{
+					values[j] = columnValues[offset + i];
+				}
+
+				continue;
+			}
+
+			int offset = header.getColumnOffset(c);
+
+			for (int i = 0, j = c; i < count; i++, j += columns)
+			{
+				values[j] = block.getFloat(offset + i * 4);
+			}
+		}
+
+		return count;
+	}
+
+	public void close() throws IOException
+	{
+		channel.close();
+		stream.close();
+	}
+
+	public RecordingHeader getHeader()
+	{
+		return header;
+	}
+
+	/**
+	 * Get the number of complete blocks in the recording.
+	 */
+	public int getBlockCount()
+	{
+		return index.getCount();
+	}
+
+	/**
+	 * Get the time index of the recording.
+	 */
+	public RecordingIndex getIndex()
+	{
+		return index;
+	}
+
+	/**
+	 * Read a block into the buffer unless it is already there.
+	 */
+	private void load(int index) throws IOException
+	{
+		if (index == loaded)
+		{
+			return;
+		}
+
+		if (index < 0 || index >= this.index.getCount())
+		{
+			throw new IndexOutOfBoundsException("Block " + index + " of "
+					+ this.index.getCount());
+		}
+
+		loaded = -1;
+
+		block.clear();
+
+		if (codec != null)
+		{
+			block.limit((int) Math.min(block.capacity(),
+					this.index.getSize(index)));
+		}
+
+		read(block, this.index.getOffset(index));
+
+		int headerSize = RecordingHeader.BLOCK_HEADER_SIZE;
+		int length = block.getInt(4);
+
+		if (length < 0 || length > block.position() - headerSize)
+		{
+			throw new IOException("Corrupt block " + index);
+		}
+
+		if (RecordingHeader.checksum(checksum, block.array(), 0, headerSize
+				+ length) != block.getInt(8))
+		{
+			throw new IOException("Corrupt block " + index);
+		}
+
+		if (codec != null)
+		{
+			int count = Math.min(block.getInt(0), capacity);
+
+			block.position(headerSize);
+
+			codec.decode(block, length, count, timestamps, columnValues);
+		}
+
+		loaded = index;
+	}
+
+	/**
+	 * Fill a buffer from a position in the file.
+	 */
+	private void read(ByteBuffer buffer, long position) throws IOException
+	{
+		while (buffer.hasRemaining())
+		{
+			int read = channel.read(buffer, position);
+
+			if (read < 0)
+			{
+				break;
+			}
+
+			position += read;
+		}
+	}
+}
@@ -0,0 +1,402 @@
+package com.kircherelectronics.simplelinearacceleration.recording;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Recovers recordings that were never closed, because the application was
+ * killed or the device lost power while recording. A closed recording ends
+ * with its index footer and is left as it is. Otherwise the blocks are
+ * scanned from the start and every block is checked: its count and length
+ * must fit the header, the block must be complete and its checksum must
+ * match. The recording is truncated after the last valid block and the index
+ * of the valid blocks is appended as its footer, so it reads as if it had
+ * been closed there. With the commit policy of RecordingWriter this keeps
+ * every committed sample.
+ * 
+ * A session is recovered by recovering each segment its manifest does not
+ * list as closed and recording the extent of the segment in the manifest. A
+ * segment without a readable header never held a block and is deleted.
+ * 
+ * A recording or session that is locked is still being written, possibly by
+ * a writer that finishes on a thread of its own, and is skipped; see
+ * RecordingWriter and SegmentedRecordingWriter. A session is locked while it
+ * is recovered, so two recoveries never work on the same session.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class RecordingRecovery
+{
+	// The largest header read before the metadata is known.
+	private static final int MAX_HEADER_SIZE = 1 << 16;
+
+	/**
+	 * Recover every recording and session in a directory and its
+	 * subdirectories.
+	 * 
+	 * @param directory
+	 *            The directory.
+	 * @return The number of recordings and segments recovered.
+	 * @throws IOException
+	 *             If a recording cannot be read or written.
+	 */
+	public static int recoverAll(File directory) throws IOException
+	{
+		if (RecordingManifest.exists(directory))
+		{
+			return recoverSession(directory);
+		}
+
+		int recovered = 0;
+
+		File[] files = directory.listFiles();
+
+		if (files == null)
+		{
+			return 0;
+		}
+
+		for (File file : files)
+		{
+			if (file.isDirectory())
+			{
+				recovered += recoverAll(file);
+			}
+			else if (file.getName().endsWith(RecordingHeader.EXTENSION)
+					&& recover(file))
+			{
+				recovered++;
+			}
+		}
+
+		return recovered;
+	}
+
+	/**
+	 * Recover the segments of a session that were not closed.
+	 * 
+	 * @param directory
+	 *            The directory of the session.
+	 * @return The number of segments recovered, zero if the session is
+	 *         locked.
+	 * @throws IOException
+	 *             If a segment or the manifest cannot be read or written.
+	 */
+	public static int recoverSession(File directory) throws IOException
+	{
+		FileLock lock = RecordingManifest.lock(directory);
+
+		if (lock == null)
+		{
+			return 0;
+		}
+
+		try
+		{
+			return recoverSegments(directory);
+		}
+		finally
+		{
+			RecordingManifest.unlock(lock);
+		}
+	}
+
+	/**
+	 * Recover the segments of a locked session.
+	 */
+	private static int recoverSegments(File directory) throws IOException
+	{
+		RecordingManifest manifest = RecordingManifest.read(directory);
+
+		List<RecordingManifest.Segment> lost = new ArrayList<RecordingManifest.Segment>();
+
+		int recovered = 0;
+
+		for (RecordingManifest.Segment segment : manifest.getSegments())
+		{
+			if (segment.isClosed())
+			{
+				continue;
+			}
+
+			File file = segment.getFile(directory);
+
+			if (!file.exists() || !hasHeader(file))
+			{
+				lost.add(segment);
+
+				continue;
+			}
+
+			recover(file);
+
+			// Read the extent of the recovered segment.
+			RecordingReader reader = new RecordingReader(file);
+
+			try
+			{
+				long samples = 0;
+				long lastTimestamp = segment.getFirstTimestamp();
+
+				long[] timestamps = new long[reader.getHeader()
+						.getBlockCapacity()];
+
+				for (int block = 0; block < reader.getBlockCount(); block++)
+				{
+					int count = reader.readTimestamps(block, timestamps);
+
+					samples += count;
+
+					if (count > 0)
+					{
+						lastTimestamp = timestamps[count - 1];
+					}
+				}
+
+				segment.close(lastTimestamp, samples, file.length());
+			}
+			finally
+			{
+				reader.close();
+			}
+
+			recovered++;
+		}
+
+		for (RecordingManifest.Segment segment : lost)
+		{
+			manifest.remove(segment);
+		}
+
+		if (recovered > 0 || !lost.isEmpty())
+		{
+			manifest.write(directory);
+		}
+
+		// Delete the lost segments once the manifest no longer lists them.
+		for (RecordingManifest.Segment segment : lost)
+		{
+			segment.getFile(directory).delete();
+		}
+
+		return recovered;
+	}
+
+	/**
+	 * Recover a recording if it was not closed.
+	 * 
+	 * @param recording
+	 *            The recording.
+	 * @return True if the recording was recovered, false if it was closed or
+	 *         is locked.
+	 * @throws IOException
+	 *             If the recording cannot be read or written, or is not a
+	 *             recording.
+	 */
+	public static boolean recover(File recording) throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(recording, "rw");
+
+		try
+		{
+			FileChannel channel = file.getChannel();
+
+			// The lock is released when the file is closed.
+			if (RecordingWriter.tryLock(channel) == null)
+			{
+				return false;
+			}
+
+			RecordingHeader header = readHeader(channel);
+
+			if (RecordingIndex.readFooter(channel, header) != null)
+			{
+				return false;
+			}
+
+			RecordingIndex index = scan(channel, header);
+
+			long end = index.getEnd();
+
+			channel.truncate(end);
+
+			ByteBuffer footer = index.write(end);
+
+			while (footer.hasRemaining())
+			{
+				channel.write(footer, end + footer.position());
+			}
+
+			channel.force(false);
+
+			return true;
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+
+	/**
+	 * Index the valid blocks of a recording, up to the first invalid one.
+	 */
+	private static RecordingIndex scan(FileChannel channel,
+			RecordingHeader header) throws IOException
+	{
+		int headerSize = RecordingHeader.BLOCK_HEADER_SIZE;
+		int capacity = header.getBlockCapacity();
+
+		int maxSize = header.getBlockSize();
+
+		if (header.isCompressed())
+		{
+			maxSize = headerSize
+					+ new GorillaCodec(capacity, header.getColumns())
+							.getMaxEncodedSize();
+		}
+
+		ByteBuffer block = ByteBuffer.allocate(maxSize).order(
+				ByteOrder.LITTLE_ENDIAN);
+
+		CRC32 checksum = new CRC32();
+
+		RecordingIndex index = new RecordingIndex();
+
+		long size = channel.size();
+		long offset = header.getLength();
+
+		while (offset + headerSize + 8 <= size)
+		{
+			block.clear();
+			block.limit(headerSize);
+
+			read(channel, block, offset);
+
+			int count = block.getInt(0);
+			int length = block.getInt(4);
+
+			// Raw blocks are all of the same size.
+			int blockSize = header.isCompressed() ? headerSize + length
+					: header.getBlockSize();
+
+			if (count < 1 || count > capacity || blockSize < headerSize + 8
+					|| blockSize > maxSize || offset + blockSize > size)
+			{
+				break;
+			}
+
+			if (headerSize + length != blockSize)
+			{
+				break;
+			}
+
+			block.limit(blockSize);
+
+			read(channel, block, offset + headerSize);
+
+			if (RecordingHeader.checksum(checksum, block.array(), 0,
+					blockSize) != block.getInt(8))
+			{
+				break;
+			}
+
+			index.add(block.getLong(headerSize), offset);
+
+			offset += blockSize;
+		}
+
+		index.setEnd(offset);
+
+		return index;
+	}
+
+	/**
+	 * Check if a file starts with a complete recording header.
+	 */
+	private static boolean hasHeader(File recording) throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(recording, "r");
+
+		try
+		{
+			FileChannel channel = file.getChannel();
+
+			return readHeader(channel).getLength() <= channel.size();
+		}
+		catch (IOException e)
+		{
+			return false;
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+
+	private static RecordingHeader readHeader(FileChannel channel)
+			throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(
+				MAX_HEADER_SIZE, channel.size()));
+
+		read(channel, buffer, 0);
+
+		buffer.flip();
+
+		try
+		{
+			return RecordingHeader.read(buffer);
+		}
+		catch (RuntimeException e)
+		{
+			// The metadata of a header cut short runs past the buffer.
+			throw new IOException("Truncated recording header");
+		}
+	}
+
+	/**
+	 * Fill a buffer from a position in the file, up to the end of the file.
+	 */
+	private static void read(FileChannel channel, ByteBuffer buffer,
+			long position) throws IOException
+	{
+		while (buffer.hasRemaining())
+		{
+			int read = channel.read(buffer, position);
+
+			if (read < 0)
+			{
+				break;
+			}
+
+			position += read;
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package com.kircherelectronics.simplelinearacceleration.recording;
+
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * The samples of a recording between two timestamps, from
+ * MappedRecordingReader.slice(). The samples are stored a block at a time, so
+ * the slice is read a block at a time: each block of the slice gives its
+ * timestamps and columns as views of the mapped file trimmed to the range.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class RecordingSlice
+{
+	private MappedRecordingReader reader;
+
+	private int firstBlock;
+
+	// The first sample in the first block.
+	private int firstSample;
+
+	private int lastBlock;
+
+	// The end of the samples in the last block, exclusive.
+	private int endSample;
+
+	private int blocks;
+
+	RecordingSlice(MappedRecordingReader reader, int firstBlock,
+			int firstSample, int lastBlock, int endSample)
+	{
+		this.reader = reader;
+		this.firstBlock = firstBlock;
+		this.firstSample = firstSample;
+		this.lastBlock = lastBlock;
+		this.endSample = endSample;
+
+		blocks = (endSample > 0 || lastBlock > firstBlock) ? lastBlock
+				- firstBlock + 1 : 0;
+	}
+
+	/**
+	 * Get the number of blocks the slice spans.
+	 */
+	public int getBlockCount()
+	{
+		return blocks;
+	}
+
+	/**
+	 * Get the timestamps of a block of the slice.
+	 * 
+	 * @param block
+	 *            The block of the slice, 0 to getBlockCount() - 1.
+	 * @return The sensor timestamps in nanoseconds of the samples of the
+	 *         block in the slice.
+	 * @throws IOException
+	 *             If the recording cannot be mapped.
+	 */
+	public LongBuffer getTimestamps(int block) throws IOException
+	{
+		LongBuffer timestamps = reader.getTimestamps(firstBlock + block);
+
+		timestamps.limit(end(block));
+		timestamps.position(start(block));
+
+		return timestamps.slice();
+	}
+
+	/**
+	 * Get a column of a block of the slice.
+	 * 
+	 * @param block
+	 *            The block of the slice, 0 to getBlockCount() - 1.
+	 * @param column
+	 *            The column.
+	 * @return The values of the samples of the block in the slice.
+	 * @throws IOException
+	 *             If the recording cannot be mapped.
+	 */
+	public FloatBuffer getColumn(int block, int column) throws IOException
+	{
+		FloatBuffer values = reader.getColumn(firstBlock + block, column);
+
+		values.limit(end(block));
+		values.position(start(block));
+
+		return values.slice();
+	}
+
+	/**
+	 * Get the number of samples dropped right before the first sample of a
+	 * block of the slice.
+	 * 
+	 * @param block
+	 *            The block of the slice, 0 to getBlockCount() - 1.
+	 * @return The number of samples dropped, zero if the slice starts after
+	 *         the first sample of the block.
+	 * @throws IOException
+	 *             If the recording cannot be mapped.
+	 */
+	public int getDroppedCount(int block) throws IOException
+	{
+		return (start(block) == 0) ? reader.getDroppedCount(firstBlock
+				+ block) : 0;
+	}
+
+	/**
+	 * Get the number of samples in the slice.
+	 * 
+	 * @throws IOException
+	 *             If the recording cannot be mapped.
+	 */
+	public long getSampleCount() throws IOException
+	{
+		long samples = 0;
+
+		for (int i = 0; i < blocks; i++)
+		{
+			samples += end(i) - start(i);
+		}
+
+		return samples;
+	}
+
+	private int start(int block)
+	{
+		return (block == 0) ? firstSample : 0;
+	}
+
+	private int end(int block) throws IOException
+	{
+		return (firstBlock + block == lastBlock) ? endSample : reader
+				.getSampleCount(firstBlock + block);
+	}
+}
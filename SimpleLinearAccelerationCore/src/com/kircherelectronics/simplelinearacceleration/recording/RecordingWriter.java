@@ -0,0 +1,482 @@
+package com.kircherelectronics.simplelinearacceleration.recording;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.zip.CRC32;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Writes a recording, see RecordingHeader for the format. Samples are stored
+ * column by column straight into a preallocated buffer of one block, and each
+ * full block is appended to the file in a single write. With the Gorilla
+ * encoding the samples are stored in preallocated arrays instead and each
+ * full block is compressed by GorillaCodec into the buffer. Nothing is
+ * formatted and nothing is allocated per sample. Closing the recording appends
+ * its RecordingIndex as a footer.
+ * 
+ * Full blocks are handed to the file system but not synced. A commit policy
+ * trades durability against throughput: once the commit interval has passed
+ * or the commit size of samples has been buffered since the last commit, the
+ * partial block is written as a short block and the file is synced, so a crash
+ * loses at most the samples since the last commit. Each block carries a
+ * checksum, and RecordingRecovery truncates a recording that was never closed
+ * to its last valid block. A short raw block still takes the size of a full
+ * block, a short compressed block only its samples.
+ * 
+ * Samples dropped before they reach the writer are recorded with drop(): the
+ * current block ends early and the next block holds the number dropped before
+ * its first sample, so a reader can restore the gaps in the sequence numbers.
+ * Drops are rare, so the short blocks they cause cost little.
+ * 
+ * The recording is locked from its creation until it is closed, so
+ * RecordingRecovery leaves it alone while it is written, also when a writer
+ * finishes on a thread of its own after the application has moved on.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class RecordingWriter
+{
+	private RecordingHeader header;
+
+	private int columns;
+
+	private int capacity;
+
+	// The number of samples in the current block.
+	private int count = 0;
+
+	// The number of samples written.
+	private long samples = 0;
+
+	// The number of samples dropped since the last sample written.
+	private long dropped = 0;
+
+	// The offset of the next block in the file.
+	private long position;
+
+	private RecordingIndex index = new RecordingIndex();
+
+	private CRC32 checksum = new CRC32();
+
+	// The time in nanoseconds and the size in bytes of uncompressed samples
+	// after which the samples are committed, zero for never.
+	private long commitInterval = 0;
+	private long commitSize = 0;
+
+	// The size of an uncompressed sample.
+	private int sampleSize;
+
+	// The number of samples, the file size and the time of the last commit.
+	private long committedSamples = 0;
+	private long committedPosition;
+	private long commitTime;
+
+	private int[] columnOffsets;
+
+	private ByteBuffer block;
+
+	// The codec of a compressed recording, null for raw blocks.
+	private GorillaCodec codec;
+
+	// The timestamps and the values, column by column, of a compressed block.
+	private long[] timestamps;
+	private float[] columnValues;
+
+	private RandomAccessFile output;
+
+	private FileChannel channel;
+
+	/**
+	 * Create a recording and write its header.
+	 * 
+	 * @param file
+	 *            The recording.
+	 * @param header
+	 *            The header of the recording.
+	 * @throws IOException
+	 *             If the recording cannot be created or is locked by another
+	 *             writer or by RecordingRecovery.
+	 */
+	public RecordingWriter(File file, RecordingHeader header)
+			throws IOException
+	{
+		this.header = header;
+
+		ByteBuffer buffer = header.write();
+
+		columns = header.getColumns();
+		capacity = header.getBlockCapacity();
+
+		sampleSize = 8 + 4 * columns;
+
+		columnOffsets = new int[columns];
+
+		for (int i = 0; i < columns; i++)
+		{
+			columnOffsets[i] = header.getColumnOffset(i);
+		}
+
+		int blockSize = header.getBlockSize();
+
+		if (header.isCompressed())
+		{
+			codec = new GorillaCodec(capacity, columns);
+
+			timestamps = new long[capacity];
+			columnValues = new float[capacity * columns];
+
+			blockSize = RecordingHeader.BLOCK_HEADER_SIZE
+					+ codec.getMaxEncodedSize();
+		}
+
+		// A heap buffer, so the checksum runs over its array.
+		block = ByteBuffer.allocate(blockSize).order(ByteOrder.LITTLE_ENDIAN);
+
+		output = new RandomAccessFile(file, "rw");
+		channel = output.getChannel();
+
+		// Truncate only once the lock is held, a locked recording is left as
+		// it is.
+		if (tryLock(channel) == null)
+		{
+			output.close();
+
+			throw new IOException(file + " is locked");
+		}
+
+		channel.truncate(0);
+
+		position = buffer.remaining();
+
+		write(buffer);
+
+		committedPosition = position;
+		commitTime = System.nanoTime();
+	}
+
+	/**
+	 * Set when samples are committed, written and synced to the storage.
+	 * Without a commit policy the samples are only synced when the recording
+	 * is closed.
+	 * 
+	 * @param interval
+	 *            The time in nanoseconds after which samples are committed,
+	 *            zero for no limit. The time is checked once per batch of
+	 *            samples and on every full block.
+	 * @param size
+	 *            The size in bytes of uncompressed samples after which they
+	 *            are committed, zero for no limit.
+	 */
+	public void setCommitPolicy(long interval, long size)
+	{
+		this.commitInterval = interval;
+		this.commitSize = size;
+	}
+
+	/**
+	 * Append a sample.
+	 * 
+	 * @param timestamp
+	 *            The sensor timestamp of the sample in nanoseconds.
+	 * @param values
+	 *            The array holding the values of the sample, one per column.
+	 * @param offset
+	 *            The offset of the first value of the sample in the array.
+	 * @throws IOException
+	 *             If a full block cannot be written.
+	 */
+	public void write(long timestamp, float[] values, int offset)
+			throws IOException
+	{
+		if (codec != null)
+		{
+			timestamps[count] = timestamp;
+
+			for (int i = 0, j = count; i < columns; i++, j += capacity)
+			{
+				columnValues[j] = values[offset + i];
+			}
+		}
+		else
+		{
+			block.putLong(RecordingHeader.BLOCK_HEADER_SIZE + count * 8,
+					timestamp);
+
+			for (int i = 0; i < columns; i++)
+			{
+				block.putFloat(columnOffsets[i] + count * 4, values[offset + i]);
+			}
+		}
+
+		samples++;
+
+		if (++count == capacity)
+		{
+			writeBlock();
+
+			commitIfDue();
+		}
+		else if (commitSize > 0
+				&& (samples - committedSamples) * sampleSize >= commitSize)
+		{
+			commit();
+		}
+	}
+
+	/**
+	 * Append a batch of samples.
+	 * 
+	 * @param timestamps
+	 *            The sensor timestamp of each sample in nanoseconds.
+	 * @param values
+	 *            The interleaved values of the samples, one per column.
+	 * @param length
+	 *            The number of samples in the batch.
+	 * @throws IOException
+	 *             If a full block cannot be written.
+	 */
+	public void write(long[] timestamps, float[] values, int length)
+			throws IOException
+	{
+		for (int i = 0, j = 0; i < length; i++, j += columns)
+		{
+			write(timestamps[i], values, j);
+		}
+
+		commitIfDue();
+	}
+
+	/**
+	 * Commit the samples if the commit interval has passed since the last
+	 * commit.
+	 * 
+	 * @throws IOException
+	 *             If the samples cannot be written.
+	 */
+	public void commitIfDue() throws IOException
+	{
+		if (commitInterval > 0
+				&& System.nanoTime() - commitTime >= commitInterval)
+		{
+			commit();
+		}
+	}
+
+	/**
+	 * Write the partial block as a short block and sync the file, so every
+	 * sample written so far survives a crash.
+	 * 
+	 * @throws IOException
+	 *             If the samples cannot be written.
+	 */
+	public void commit() throws IOException
+	{
+		if (count > 0)
+		{
+			clearUnused();
+
+			writeBlock();
+		}
+
+		if (position != committedPosition)
+		{
+			channel.force(false);
+		}
+
+		committedSamples = samples;
+		committedPosition = position;
+		commitTime = System.nanoTime();
+	}
+
+	/**
+	 * Record that samples were dropped before the next sample. The current
+	 * block is written, without a sync, so the next sample starts the block
+	 * that holds the count. Samples dropped after the last sample written are
+	 * not recorded.
+	 * 
+	 * @param samples
+	 *            The number of samples dropped.
+	 * @throws IOException
+	 *             If the current block cannot be written.
+	 */
+	public void drop(long samples) throws IOException
+	{
+		if (samples <= 0)
+		{
+			return;
+		}
+
+		if (count > 0)
+		{
+			clearUnused();
+
+			writeBlock();
+		}
+
+		dropped += samples;
+	}
+
+	/**
+	 * Write the last, partial block and the index, and close the recording.
+	 * 
+	 * @throws IOException
+	 *             If the recording cannot be written.
+	 */
+	public void close() throws IOException
+	{
+		try
+		{
+			if (count > 0)
+			{
+				clearUnused();
+
+				writeBlock();
+			}
+
+			write(index.write(position));
+
+			channel.force(false);
+		}
+		finally
+		{
+			// Closing the channel releases the lock.
+			channel.close();
+			output.close();
+		}
+	}
+
+	/**
+	 * Get the number of samples written.
+	 */
+	public long getSamples()
+	{
+		return samples;
+	}
+
+	/**
+	 * Get the number of bytes written to the file, the header and the
+	 * complete blocks.
+	 */
+	public long getSize()
+	{
+		return position;
+	}
+
+	public RecordingHeader getHeader()
+	{
+		return header;
+	}
+
+	/**
+	 * Try to lock a whole file for writing.
+	 * 
+	 * @param channel
+	 *            The channel of the file, open for writing.
+	 * @return The lock, or null if another process or another channel of this
+	 *         process holds a lock on the file.
+	 * @throws IOException
+	 *             If the file cannot be locked.
+	 */
+	static FileLock tryLock(FileChannel channel) throws IOException
+	{
+		try
+		{
+			return channel.tryLock();
+		}
+		catch (OverlappingFileLockException e)
+		{
+			// Held through another channel of this process.
+			return null;
+		}
+	}
+
+	/**
+	 * Clear what the previous block left in the unused slots of a raw block.
+	 */
+	private void clearUnused()
+	{
+		if (codec != null)
+		{
+			return;
+		}
+
+		for (int i = count; i < capacity; i++)
+		{
+			block.putLong(RecordingHeader.BLOCK_HEADER_SIZE + i * 8, 0);
+		}
+
+		for (int c = 0; c < columns; c++)
+		{
+			for (int i = count; i < capacity; i++)
+			{
+				block.putFloat(columnOffsets[c] + i * 4, 0);
+			}
+		}
+	}
+
+	/**
+	 * Write the current block, full or not, and start the next one.
+	 */
+	private void writeBlock() throws IOException
+	{
+		block.clear();
+
+		if (codec != null)
+		{
+			block.position(RecordingHeader.BLOCK_HEADER_SIZE);
+
+			codec.encode(timestamps, columnValues, count, block);
+
+			block.flip();
+		}
+
+		block.putInt(0, count);
+		block.putInt(4, block.limit() - RecordingHeader.BLOCK_HEADER_SIZE);
+		block.putInt(12, (int) Math.min(dropped, Integer.MAX_VALUE));
+
+		block.putInt(8, RecordingHeader.checksum(checksum, block.array(), 0,
+				block.limit()));
+
+		dropped = 0;
+
+		index.add(block.getLong(RecordingHeader.BLOCK_HEADER_SIZE), position);
+
+		position += block.limit();
+
+		write(block);
+
+		count = 0;
+	}
+
+	private void write(ByteBuffer buffer) throws IOException
+	{
+		while (buffer.hasRemaining())
+		{
+			channel.write(buffer);
+		}
+	}
+}
@@ -0,0 +1,434 @@
+package com.kircherelectronics.simplelinearacceleration.recording;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileLock;
+import java.util.Locale;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Writes a session as a directory of recordings, the segments, each a
+ * complete recording with its own header and index. A segment is closed and
+ * the next one started once it reaches the segment size or spans the segment
+ * duration, so a long unattended capture never builds up one huge file and a
+ * crash only affects the segment being written, which RecordingRecovery
+ * truncates to its last valid block. With a commit policy, see
+ * RecordingWriter, that block holds the last committed sample. Segments end on
+ * a block boundary, so a segment can run over its size by up to one block.
+ * 
+ * The RecordingManifest of the session lists the segments in order and is
+ * rewritten whenever a segment is started or closed, so the session reads as
+ * one recording. When the closed segments and a new one would exceed the disk
+ * budget, the oldest segments are dropped from the manifest and deleted before
+ * the new one is started. The segment being written is never deleted, so the
+ * budget should hold at least a few segments.
+ * 
+ * The session is locked, see RecordingManifest.lock(), from its creation
+ * until it is closed, so RecordingRecovery skips it while it is written.
+ * 
+ * Dropped samples are recorded in the segment that holds the next sample, see
+ * RecordingWriter.drop(), so they are never lost with a segment that closes
+ * right after them.
+ * 
+ * Samples are written through a single RecordingWriter at a time, in whole
+ * blocks appended sequentially, so memory stays constant however long the
+ * session runs.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class SegmentedRecordingWriter
+{
+	// The default size of a segment in bytes.
+	public static final long SEGMENT_SIZE = 16L << 20;
+
+	// The default duration of a segment in nanoseconds, ten minutes.
+	public static final long SEGMENT_DURATION = 600000000000L;
+
+	// No disk budget, no segment is deleted.
+	public static final long UNLIMITED = Long.MAX_VALUE;
+
+	private File directory;
+
+	private RecordingHeader header;
+
+	private long segmentSize;
+
+	private long segmentDuration;
+
+	private long budget;
+
+	// The commit policy of the segments.
+	private long commitInterval = 0;
+	private long commitSize = 0;
+
+	private RecordingManifest manifest = new RecordingManifest();
+
+	// The lock of the session, null once it is closed.
+	private FileLock lock;
+
+	// The segment being written, null before the first sample of a segment.
+	private RecordingWriter writer;
+
+	private RecordingManifest.Segment segment;
+
+	// The number of the next segment.
+	private int segments = 0;
+
+	// The number of segments deleted to stay within the budget.
+	private int deleted = 0;
+
+	// The timestamp of the first and last sample of the segment.
+	private long firstTimestamp;
+	private long lastTimestamp;
+
+	// The number of samples written to the closed segments.
+	private long samples = 0;
+
+	// The number of samples dropped since the last sample written.
+	private long dropped = 0;
+
+	// The sequence number the next sample has unless samples were dropped.
+	private long sequence = 0;
+
+	/**
+	 * Create a session with the default segment size and duration and no disk
+	 * budget.
+	 * 
+	 * @param directory
+	 *            The directory of the session, created if it does not exist.
+	 * @param header
+	 *            The header of every segment.
+	 * @throws IOException
+	 *             If the directory cannot be created.
+	 */
+	public SegmentedRecordingWriter(File directory, RecordingHeader header)
+			throws IOException
+	{
+		this(directory, header, SEGMENT_SIZE, SEGMENT_DURATION, UNLIMITED);
+	}
+
+	/**
+	 * Create a session.
+	 * 
+	 * @param directory
+	 *            The directory of the session, created if it does not exist.
+	 * @param header
+	 *            The header of every segment.
+	 * @param segmentSize
+	 *            The size in bytes a segment is closed at.
+	 * @param segmentDuration
+	 *            The time in nanoseconds a segment is closed after.
+	 * @param budget
+	 *            The largest total size in bytes of the segments, UNLIMITED
+	 *            to keep every segment.
+	 * @throws IOException
+	 *             If the directory cannot be created or the session is
+	 *             locked.
+	 */
+	public SegmentedRecordingWriter(File directory, RecordingHeader header,
+			long segmentSize, long segmentDuration, long budget)
+			throws IOException
+	{
+		this.directory = directory;
+		this.header = header;
+		this.segmentSize = segmentSize;
+		this.segmentDuration = segmentDuration;
+		this.budget = budget;
+
+		if (!directory.isDirectory() && !directory.mkdirs())
+		{
+			throw new IOException("Cannot create " + directory);
+		}
+
+		lock = RecordingManifest.lock(directory);
+
+		if (lock == null)
+		{
+			throw new IOException(directory + " is locked");
+		}
+
+		try
+		{
+			manifest.write(directory);
+		}
+		catch (IOException e)
+		{
+			RecordingManifest.unlock(lock);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * Set when samples are committed, see RecordingWriter.setCommitPolicy().
+	 * 
+	 * @param interval
+	 *            The time in nanoseconds after which samples are committed,
+	 *            zero for no limit.
+	 * @param size
+	 *            The size in bytes of uncompressed samples after which they
+	 *            are committed, zero for no limit.
+	 */
+	public void setCommitPolicy(long interval, long size)
+	{
+		this.commitInterval = interval;
+		this.commitSize = size;
+
+		if (writer != null)
+		{
+			writer.setCommitPolicy(interval, size);
+		}
+	}
+
+	/**
+	 * Append a sample, starting a new segment first if the current one is
+	 * full.
+	 * 
+	 * @param timestamp
+	 *            The sensor timestamp of the sample in nanoseconds.
+	 * @param values
+	 *            The array holding the values of the sample, one per column.
+	 * @param offset
+	 *            The offset of the first value of the sample in the array.
+	 * @throws IOException
+	 *             If the sample or a segment cannot be written.
+	 */
+	public void write(long timestamp, float[] values, int offset)
+			throws IOException
+	{
+		if (writer != null
+				&& (writer.getSize() >= segmentSize || timestamp
+						- firstTimestamp >= segmentDuration))
+		{
+			closeSegment();
+		}
+
+		if (writer == null)
+		{
+			openSegment(timestamp);
+		}
+
+		if (dropped > 0)
+		{
+			writer.drop(dropped);
+
+			dropped = 0;
+		}
+
+		writer.write(timestamp, values, offset);
+
+		lastTimestamp = timestamp;
+	}
+
+	/**
+	 * Append a batch of samples.
+	 * 
+	 * @param timestamps
+	 *            The sensor timestamp of each sample in nanoseconds.
+	 * @param values
+	 *            The interleaved values of the samples, one per column.
+	 * @param length
+	 *            The number of samples in the batch.
+	 * @throws IOException
+	 *             If the samples or a segment cannot be written.
+	 */
+	public void write(long[] timestamps, float[] values, int length)
+			throws IOException
+	{
+		int columns = header.getColumns();
+
+		for (int i = 0, j = 0; i < length; i++, j += columns)
+		{
+			write(timestamps[i], values, j);
+		}
+
+		if (writer != null)
+		{
+			writer.commitIfDue();
+		}
+	}
+
+	/**
+	 * Append a batch of numbered samples, recording each gap in the sequence
+	 * numbers as dropped samples.
+	 * 
+	 * @param sequences
+	 *            The sequence number of each sample, counting from zero for
+	 *            the first sample of the session.
+	 * @param timestamps
+	 *            The sensor timestamp of each sample in nanoseconds.
+	 * @param values
+	 *            The interleaved values of the samples, one per column.
+	 * @param length
+	 *            The number of samples in the batch.
+	 * @throws IOException
+	 *             If the samples or a segment cannot be written.
+	 */
+	public void write(long[] sequences, long[] timestamps, float[] values,
+			int length) throws IOException
+	{
+		int columns = header.getColumns();
+
+		for (int i = 0, j = 0; i < length; i++, j += columns)
+		{
+			drop(sequences[i] - sequence);
+
+			sequence = sequences[i] + 1;
+
+			write(timestamps[i], values, j);
+		}
+
+		if (writer != null)
+		{
+			writer.commitIfDue();
+		}
+	}
+
+	/**
+	 * Record that samples were dropped before the next sample.
+	 * 
+	 * @param samples
+	 *            The number of samples dropped.
+	 */
+	public void drop(long samples)
+	{
+		if (samples > 0)
+		{
+			dropped += samples;
+		}
+	}
+
+	/**
+	 * Close the last segment, write the manifest and unlock the session. The
+	 * session is unlocked even if the segment cannot be closed, so
+	 * RecordingRecovery can recover it.
+	 * 
+	 * @throws IOException
+	 *             If the segment or the manifest cannot be written.
+	 */
+	public void close() throws IOException
+	{
+		try
+		{
+			if (writer != null)
+			{
+				closeSegment();
+			}
+		}
+		finally
+		{
+			if (lock != null)
+			{
+				RecordingManifest.unlock(lock);
+
+				lock = null;
+			}
+		}
+	}
+
+	/**
+	 * Get the number of samples written, including those of deleted
+	 * segments.
+	 */
+	public long getSamples()
+	{
+		return samples + ((writer != null) ? writer.getSamples() : 0);
+	}
+
+	/**
+	 * Get the number of segments deleted to stay within the disk budget.
+	 */
+	public int getDeletedSegments()
+	{
+		return deleted;
+	}
+
+	public File getDirectory()
+	{
+		return directory;
+	}
+
+	public RecordingManifest getManifest()
+	{
+		return manifest;
+	}
+
+	/**
+	 * Make room for a new segment within the budget and start it.
+	 */
+	private void openSegment(long timestamp) throws IOException
+	{
+		while (!manifest.getSegments().isEmpty()
+				&& manifest.getSize() + segmentSize > budget)
+		{
+			// Take the segment out of the manifest before deleting it, so
+			// the manifest never lists a missing segment.
+			File file = manifest.removeFirst().getFile(directory);
+
+			manifest.write(directory);
+
+			if (!file.delete() && file.exists())
+			{
+				throw new IOException("Cannot delete " + file);
+			}
+
+			deleted++;
+		}
+
+		String name = String.format(Locale.US, "segment-%05d%s", segments,
+				RecordingHeader.EXTENSION);
+
+		header.put("segment", String.valueOf(segments));
+
+		writer = new RecordingWriter(new File(directory, name), header);
+
+		writer.setCommitPolicy(commitInterval, commitSize);
+
+		segment = new RecordingManifest.Segment(name, timestamp, -1, -1, -1);
+
+		manifest.add(segment);
+
+		manifest.write(directory);
+
+		segments++;
+
+		firstTimestamp = timestamp;
+	}
+
+	/**
+	 * Close the current segment and record it in the manifest.
+	 */
+	private void closeSegment() throws IOException
+	{
+		RecordingWriter closing = writer;
+
+		writer = null;
+
+		closing.close();
+
+		samples += closing.getSamples();
+
+		segment.close(lastTimestamp, closing.getSamples(),
+				segment.getFile(directory).length());
+
+		manifest.write(directory);
+	}
+}
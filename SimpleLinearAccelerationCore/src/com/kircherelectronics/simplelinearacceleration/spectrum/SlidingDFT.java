@@ -0,0 +1,292 @@
+package com.kircherelectronics.simplelinearacceleration.spectrum;
+
+import com.kircherelectronics.simplelinearacceleration.filter.FilterStage;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Tracks selected frequency bins of the x, y and z axes over a sliding window
+ * of the last size samples. Added to the end of a FilterChain it observes the
+ * linear acceleration and passes the samples through unchanged, so the
+ * spectrum of a vibration is available live without buffering the recording.
+ * 
+ * Each bin is updated on every sample with the sliding DFT recurrence,
+ * X = (X + x(n) - x(n - size)) * e^(j * 2 * pi * k / size), which costs one
+ * complex multiplication per bin and axis, independent of the window size.
+ * The rounding errors of the recurrence accumulate, so a Goertzel filter runs
+ * alongside over each block of size samples and its exact result replaces
+ * the sliding state whenever the window lines up with the block. Until the
+ * window is full the missing samples are zeros.
+ * 
+ * The window is rectangular, so a frequency between two bins leaks into its
+ * neighbours. Pick a window size that is a multiple of the periods of
+ * interest where possible.
+ * 
+ * @author Kaleb
+ * @see http://en.wikipedia.org/wiki/Goertzel_algorithm
+ * @version %I%, %G%
+ */
+public class SlidingDFT implements FilterStage
+{
+	private static final int AXES = 3;
+
+	private int size;
+
+	private int[] bins;
+
+	// The number of samples seen, up to the window size.
+	private int count = 0;
+
+	// The ring index the next sample is written to, also the position in the
+	// current Goertzel block.
+	private int position = 0;
+
+	// The last size samples laid out as [sample][axis].
+	private float[] ring;
+
+	// The timestamp of each sample in the ring in nanoseconds.
+	private long[] timestamps;
+
+	// cos(w) and sin(w) of each bin, w = 2 * pi * k / size.
+	private double[] cos;
+	private double[] sin;
+
+	// The sliding DFT of each bin laid out as [bin][axis].
+	private double[] real;
+	private double[] imaginary;
+
+	// The last two Goertzel states of each bin laid out as [bin][axis].
+	private double[] s1;
+	private double[] s2;
+
+	/**
+	 * Create a sliding DFT.
+	 * 
+	 * @param size
+	 *            The number of samples in the window, at least one.
+	 * @param bins
+	 *            The bins to track, 0 to size - 1, from getBin().
+	 */
+	public SlidingDFT(int size, int[] bins)
+	{
+		this.size = Math.max(1, size);
+		this.bins = bins.clone();
+
+		ring = new float[this.size * AXES];
+		timestamps = new long[this.size];
+
+		cos = new double[bins.length];
+		sin = new double[bins.length];
+
+		for (int b = 0; b < bins.length; b++)
+		{
+			double w = 2 * Math.PI * bins[b] / this.size;
+
+			cos[b] = Math.cos(w);
+			sin[b] = Math.sin(w);
+		}
+
+		real = new double[bins.length * AXES];
+		imaginary = new double[bins.length * AXES];
+		s1 = new double[bins.length * AXES];
+		s2 = new double[bins.length * AXES];
+	}
+
+	/**
+	 * Get the bin of a window closest to a frequency.
+	 * 
+	 * @param frequency
+	 *            The frequency in Hz.
+	 * @param sampleRate
+	 *            The sample rate in Hz.
+	 * @param size
+	 *            The number of samples in the window.
+	 * @return The bin.
+	 */
+	public static int getBin(double frequency, double sampleRate, int size)
+	{
+		return (int) Math.round(frequency * size / sampleRate);
+	}
+
+	public void process(float[] buffer, long[] timestamps, int length)
+	{
+		for (int i = 0, j = 0; i < length; i++, j += AXES)
+		{
+			int slot = position * AXES;
+
+			for (int axis = 0; axis < AXES; axis++)
+			{
+				float value = buffer[j + axis];
+
+				double delta = (double) value - ring[slot + axis];
+
+				ring[slot + axis] = value;
+
+				for (int b = 0, s = axis; b < bins.length; b++, s += AXES)
+				{
+					double r = real[s] + delta;
+					double m = imaginary[s];
+
+					real[s] = r * cos[b] - m * sin[b];
+					imaginary[s] = r * sin[b] + m * cos[b];
+
+					double s0 = value + 2 * cos[b] * s1[s] - s2[s];
+
+					s2[s] = s1[s];
+					s1[s] = s0;
+				}
+			}
+
+			if (timestamps != null)
+			{
+				this.timestamps[position] = timestamps[i];
+			}
+
+			if (count < size)
+			{
+				count++;
+			}
+
+			if (++position == size)
+			{
+				position = 0;
+
+				resynchronize();
+			}
+		}
+	}
+
+	/**
+	 * Replace the sliding state with the Goertzel result of the block that
+	 * just completed, X = e^(j * w) * s1 - s2, and start the next block.
+	 */
+	private void resynchronize()
+	{
+		for (int b = 0, s = 0; b < bins.length; b++)
+		{
+			for (int axis = 0; axis < AXES; axis++, s++)
+			{
+				real[s] = cos[b] * s1[s] - s2[s];
+				imaginary[s] = sin[b] * s1[s];
+
+				s1[s] = 0;
+				s2[s] = 0;
+			}
+		}
+	}
+
+	/**
+	 * Get the amplitude of a bin, scaled so a sinusoid at the frequency of
+	 * the bin reads as its amplitude.
+	 * 
+	 * @param bin
+	 *            The index of the bin in the bins the DFT was created with.
+	 * @param axis
+	 *            The axis, 0 to 2 for x, y and z.
+	 * @return The amplitude.
+	 */
+	public float getAmplitude(int bin, int axis)
+	{
+		int s = bin * AXES + axis;
+
+		double magnitude = Math.sqrt(real[s] * real[s] + imaginary[s]
+				* imaginary[s]);
+
+		// The energy of a real sinusoid is split between k and size - k,
+		// except at zero and the Nyquist frequency.
+		boolean folded = bins[bin] == 0 || 2 * bins[bin] == size;
+
+		return (float) ((folded ? 1 : 2) * magnitude / size);
+	}
+
+	/**
+	 * Get the real part of a bin, the sum over the window starting at the
+	 * oldest sample.
+	 */
+	public double getReal(int bin, int axis)
+	{
+		return real[bin * AXES + axis];
+	}
+
+	/**
+	 * Get the imaginary part of a bin.
+	 */
+	public double getImaginary(int bin, int axis)
+	{
+		return imaginary[bin * AXES + axis];
+	}
+
+	/**
+	 * Get the frequency of a bin for the sample rate measured from the
+	 * timestamps in the window.
+	 * 
+	 * @param bin
+	 *            The index of the bin in the bins the DFT was created with.
+	 * @return The frequency in Hz, or zero until two timestamped samples have
+	 *         been seen.
+	 */
+	public double getFrequency(int bin)
+	{
+		double sampleRate = getSampleRate();
+
+		return bins[bin] * sampleRate / size;
+	}
+
+	/**
+	 * Get the average sample rate of the window, measured from the timestamps.
+	 * 
+	 * @return The sample rate in Hz, or zero until two timestamped samples
+	 *         have been seen.
+	 */
+	public double getSampleRate()
+	{
+		if (count < 2)
+		{
+			return 0;
+		}
+
+		long newest = timestamps[(position + size - 1) % size];
+		long oldest = timestamps[(count < size) ? 0 : position];
+
+		if (newest <= oldest)
+		{
+			return 0;
+		}
+
+		return (count - 1) * 1000000000.0 / (newest - oldest);
+	}
+
+	/**
+	 * Indicate if the window has filled with samples.
+	 */
+	public boolean isFull()
+	{
+		return count == size;
+	}
+
+	public int getSize()
+	{
+		return size;
+	}
+
+	public int[] getBins()
+	{
+		return bins.clone();
+	}
+}
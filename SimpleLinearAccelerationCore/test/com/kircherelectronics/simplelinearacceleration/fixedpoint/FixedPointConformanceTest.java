@@ -0,0 +1,330 @@
+package com.kircherelectronics.simplelinearacceleration.fixedpoint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.kircherelectronics.simplelinearacceleration.filter.LinearAccelerationConfig;
+import com.kircherelectronics.simplelinearacceleration.filter.SimpleLinearAcceleration;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Checks FixedPointLinearAcceleration against the float pipeline. The same
+ * recording, rounded to Q16.16, runs through both, and every output must agree
+ * within FixedPointLinearAcceleration.TOLERANCE while the variance gates of
+ * the two decide alike. A gate that finds the device static makes the output
+ * exactly zero, so the decisions are read from the outputs. After the gates
+ * decide differently the outputs may differ until both find the device static
+ * again, which must happen at few of the transitions between rest and motion.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class FixedPointConformanceTest
+{
+	private static final int SAMPLES = 200000;
+
+	// The nominal sample period in nanoseconds.
+	private static final long PERIOD = 5000000L;
+
+	// The largest share of the transitions of the float gate at which the
+	// gates disagree.
+	private static final double MAX_DIVERGED = 0.1;
+
+	private static final float GRAVITY = 9.80665f;
+
+	@Test
+	public void gravityOnly()
+	{
+		check(config(false, false, false), recording(1, 1));
+	}
+
+	@Test
+	public void lowPassFilter()
+	{
+		check(config(true, false, false), recording(2, 1));
+	}
+
+	@Test
+	public void staticAlpha()
+	{
+		check(config(true, false, true), recording(3, 1));
+	}
+
+	@Test
+	public void meanFilter()
+	{
+		check(config(false, true, false), recording(4, 1));
+	}
+
+	@Test
+	public void allFilters()
+	{
+		check(config(true, true, false), recording(5, 1));
+	}
+
+	/**
+	 * The largest window at magnitudes up to MAX_MAGNITUDE, where the
+	 * products of the variance gate reach 2^62.
+	 */
+	@Test
+	public void largestWindow()
+	{
+		LinearAccelerationConfig config = config(true, true, false);
+
+		config.setSampleWindow(FixedPointLinearAcceleration.MAX_SAMPLE_WINDOW);
+
+		// Scale the recording so its static periods sit just below the
+		// largest magnitude.
+		check(config, recording(6, 31.5f));
+	}
+
+	/**
+	 * A window beyond the limit behaves like the largest window, rather than
+	 * overflowing.
+	 */
+	@Test
+	public void windowBeyondLimit()
+	{
+		LinearAccelerationConfig largest = config(false, false, false);
+		LinearAccelerationConfig beyond = config(false, false, false);
+
+		largest.setSampleWindow(FixedPointLinearAcceleration.MAX_SAMPLE_WINDOW);
+		beyond.setSampleWindow(Integer.MAX_VALUE);
+
+		int[] acceleration = toFixed(recording(7, 31.5f));
+
+		int[] expected = new int[acceleration.length];
+		int[] actual = new int[acceleration.length];
+
+		long[] timestamps = timestamps(7);
+
+		new FixedPointLinearAcceleration(largest).addSamples(acceleration,
+				timestamps, SAMPLES, expected);
+		new FixedPointLinearAcceleration(beyond).addSamples(acceleration,
+				timestamps, SAMPLES, actual);
+
+		for (int i = 0; i < acceleration.length; i++)
+		{
+			assertEquals("Sample " + i / 3, expected[i], actual[i]);
+		}
+	}
+
+	/**
+	 * Magnitudes beyond the limit are clamped. A device held at a constant
+	 * 100 g is static for the float gate, and must be for the fixed gate too.
+	 */
+	@Test
+	public void magnitudeBeyondLimit()
+	{
+		LinearAccelerationConfig config = config(false, false, false);
+
+		config.setSampleWindow(FixedPointLinearAcceleration.MAX_SAMPLE_WINDOW);
+
+		FixedPointLinearAcceleration fixed = new FixedPointLinearAcceleration(
+				config);
+
+		int[] sample = new int[]
+		{ 0, 0, FixedPoint.toFixed(100 * GRAVITY) };
+
+		for (int i = 0; i < FixedPointLinearAcceleration.MAX_SAMPLE_WINDOW * 2; i++)
+		{
+			int[] output = fixed.addSamples(sample, i * PERIOD);
+
+			assertEquals("Sample " + i, 0, output[2]);
+		}
+	}
+
+	private void check(LinearAccelerationConfig config, float[] recording)
+	{
+		int[] fixedInput = toFixed(recording);
+
+		// Feed the float pipeline the same rounded samples.
+		float[] floatInput = new float[recording.length];
+
+		for (int i = 0; i < recording.length; i++)
+		{
+			floatInput[i] = FixedPoint.toFloat(fixedInput[i]);
+		}
+
+		long[] timestamps = timestamps(config.getSampleWindow());
+
+		int[] fixedOutput = new int[recording.length];
+		float[] floatOutput = new float[recording.length];
+
+		new FixedPointLinearAcceleration(config).addSamples(fixedInput,
+				timestamps, SAMPLES, fixedOutput);
+		new SimpleLinearAcceleration(config).addSamples(floatInput,
+				timestamps, SAMPLES, floatOutput);
+
+		boolean diverged = false;
+
+		// The decision of the float gate on the previous sample.
+		boolean wasStatic = true;
+
+		int transitions = 0;
+		int divergences = 0;
+		int staticSamples = 0;
+
+		for (int i = 0, j = 0; i < SAMPLES; i++, j += 3)
+		{
+			boolean fixedStatic = fixedOutput[j] == 0
+					&& fixedOutput[j + 1] == 0 && fixedOutput[j + 2] == 0;
+			boolean floatStatic = floatOutput[j] == 0
+					&& floatOutput[j + 1] == 0 && floatOutput[j + 2] == 0;
+
+			if (floatStatic != wasStatic)
+			{
+				transitions++;
+
+				wasStatic = floatStatic;
+			}
+
+			if (fixedStatic != floatStatic)
+			{
+				if (!diverged)
+				{
+					divergences++;
+				}
+
+				diverged = true;
+			}
+			else if (fixedStatic)
+			{
+				diverged = false;
+
+				staticSamples++;
+			}
+
+			if (diverged)
+			{
+				continue;
+			}
+
+			float magnitude = (float) Math.sqrt(floatInput[j] * floatInput[j]
+					+ floatInput[j + 1] * floatInput[j + 1] + floatInput[j + 2]
+					* floatInput[j + 2])
+					/ GRAVITY;
+
+			float tolerance = FixedPointLinearAcceleration.TOLERANCE
+					* Math.max(1, magnitude);
+
+			for (int k = j; k < j + 3; k++)
+			{
+				assertEquals("Sample " + i, floatOutput[k],
+						FixedPoint.toFloat(fixedOutput[k]), tolerance);
+			}
+		}
+
+		// The recording must exercise both decisions of the gates.
+		assertTrue("Static samples " + staticSamples, staticSamples > SAMPLES
+				/ 10 && staticSamples < SAMPLES * 9 / 10);
+		assertTrue(divergences + " divergences at " + transitions
+				+ " transitions", divergences <= transitions * MAX_DIVERGED);
+	}
+
+	private static LinearAccelerationConfig config(boolean lpf, boolean mean,
+			boolean alphaStatic)
+	{
+		LinearAccelerationConfig config = new LinearAccelerationConfig();
+
+		config.setLpfAccelerationActive(lpf);
+		config.setMeanFilterAccelerationActive(mean);
+		config.setLpfAccelerationStaticAlpha(alphaStatic);
+		config.setLpfAccelerationAlpha(0.3f);
+
+		return config;
+	}
+
+	/**
+	 * A recording of a device that rests and moves in turn, tilted differently
+	 * each time it comes to rest.
+	 * 
+	 * @param seed
+	 *            The seed of the noise.
+	 * @param scale
+	 *            The magnitude of the acceleration at rest in units of
+	 *            gravity.
+	 */
+	private static float[] recording(long seed, float scale)
+	{
+		Random random = new Random(seed);
+
+		float[] recording = new float[SAMPLES * 3];
+
+		double tilt = 0;
+
+		for (int i = 0, j = 0; i < SAMPLES; i++, j += 3)
+		{
+			boolean moving = (i % 3000) < 1000;
+
+			if (i % 3000 == 1000)
+			{
+				tilt = random.nextDouble();
+			}
+
+			// Swing the device at 1.5 Hz while it moves.
+			double swing = moving ? 0.5 * Math.sin(i * 0.047) : 0;
+
+			double noise = moving ? 0.3 : 0.002;
+
+			recording[j] = (float) (GRAVITY * (scale * Math.sin(tilt) + swing
+					+ random.nextGaussian() * noise));
+			recording[j + 1] = (float) (GRAVITY * random.nextGaussian() * noise);
+			recording[j + 2] = (float) (GRAVITY * (scale * Math.cos(tilt)
+					+ swing + random.nextGaussian() * noise));
+		}
+
+		return recording;
+	}
+
+	private static long[] timestamps(long seed)
+	{
+		Random random = new Random(seed);
+
+		long[] timestamps = new long[SAMPLES];
+
+		long timestamp = 0;
+
+		for (int i = 0; i < SAMPLES; i++)
+		{
+			timestamp += PERIOD + random.nextInt(200000) - 100000;
+
+			timestamps[i] = timestamp;
+		}
+
+		return timestamps;
+	}
+
+	private static int[] toFixed(float[] values)
+	{
+		int[] fixed = new int[values.length];
+
+		for (int i = 0; i < values.length; i++)
+		{
+			fixed[i] = FixedPoint.toFixed(values[i]);
+		}
+
+		return fixed;
+	}
+}
@@ -0,0 +1,215 @@
+package com.kircherelectronics.simplelinearacceleration.recording;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Checks that the gaps in the sequence numbers of the samples written to a
+ * session survive in its recordings, across blocks and segments, and that the
+ * checksum of a block covers its dropped count.
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class DroppedSamplesTest
+{
+	// The sensor period of 200 Hz in nanoseconds.
+	private static final long PERIOD = 5000000L;
+
+	// Small blocks and segments so the gaps fall on their boundaries.
+	private static final int BLOCK_CAPACITY = 64;
+
+	private static final long SEGMENT_SIZE = 8 << 10;
+
+	private static final int SAMPLES = 20000;
+
+	private static final int BATCH_SIZE = 100;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void rawGapsSurvive() throws IOException
+	{
+		check(RecordingHeader.ENCODING_RAW);
+	}
+
+	@Test
+	public void gorillaGapsSurvive() throws IOException
+	{
+		check(RecordingHeader.ENCODING_GORILLA);
+	}
+
+	@Test
+	public void checksumCoversDroppedCount() throws IOException
+	{
+		File file = folder.newFile("dropped" + RecordingHeader.EXTENSION);
+
+		RecordingWriter writer = new RecordingWriter(file, new RecordingHeader(
+				RecordingHeader.COLUMNS, BLOCK_CAPACITY));
+
+		float[] values = new float[RecordingHeader.COLUMNS];
+
+		writer.drop(3);
+		writer.write(0, values, 0);
+		writer.close();
+
+		RecordingReader reader = new RecordingReader(file);
+
+		try
+		{
+			assertEquals(3, reader.getDroppedCount(0));
+		}
+		finally
+		{
+			reader.close();
+		}
+
+		RandomAccessFile raw = new RandomAccessFile(file, "rw");
+
+		try
+		{
+			long offset = reader.getIndex().getOffset(0) + 12;
+
+			raw.seek(offset);
+			raw.write(4);
+		}
+		finally
+		{
+			raw.close();
+		}
+
+		reader = new RecordingReader(file);
+
+		try
+		{
+			reader.getDroppedCount(0);
+
+			fail("The dropped count is not covered by the checksum");
+		}
+		catch (IOException e)
+		{
+			// Expected.
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+
+	private void check(int encoding) throws IOException
+	{
+		File directory = folder.newFolder();
+
+		RecordingHeader header = new RecordingHeader(RecordingHeader.COLUMNS,
+				BLOCK_CAPACITY);
+
+		header.setEncoding(encoding);
+
+		SegmentedRecordingWriter writer = new SegmentedRecordingWriter(
+				directory, header, SEGMENT_SIZE,
+				SegmentedRecordingWriter.SEGMENT_DURATION,
+				SegmentedRecordingWriter.UNLIMITED);
+
+		long[] sequences = new long[SAMPLES];
+
+		Random random = new Random(encoding);
+
+		// The session starts with a gap, as when its first samples drop.
+		long sequence = 2;
+
+		for (int i = 0; i < SAMPLES; i++)
+		{
+			if (random.nextInt(50) == 0)
+			{
+				sequence += 1 + random.nextInt(500);
+			}
+
+			sequences[i] = sequence++;
+		}
+
+		long[] batchSequences = new long[BATCH_SIZE];
+		long[] timestamps = new long[BATCH_SIZE];
+		float[] values = new float[BATCH_SIZE * RecordingHeader.COLUMNS];
+
+		for (int i = 0; i < SAMPLES; i += BATCH_SIZE)
+		{
+			for (int j = 0; j < BATCH_SIZE; j++)
+			{
+				batchSequences[j] = sequences[i + j];
+				timestamps[j] = sequences[i + j] * PERIOD;
+			}
+
+			writer.write(batchSequences, timestamps, values, BATCH_SIZE);
+		}
+
+		writer.close();
+
+		RecordingManifest manifest = RecordingManifest.read(directory);
+
+		assertTrue(manifest.getSegments().size() > 1);
+
+		int read = 0;
+
+		sequence = 0;
+
+		for (RecordingManifest.Segment segment : manifest.getSegments())
+		{
+			MappedRecordingReader reader = new MappedRecordingReader(
+					segment.getFile(directory));
+
+			try
+			{
+				for (int block = 0; block < reader.getIndex().getCount(); block++)
+				{
+					sequence += reader.getDroppedCount(block);
+
+					for (int i = 0; i < reader.getSampleCount(block); i++)
+					{
+						assertEquals("Sample " + read, sequences[read],
+								sequence);
+						assertEquals("Sample " + read, sequence * PERIOD,
+								reader.getTimestamps(block).get(i));
+
+						read++;
+						sequence++;
+					}
+				}
+			}
+			finally
+			{
+				reader.close();
+			}
+		}
+
+		assertEquals(SAMPLES, read);
+	}
+}
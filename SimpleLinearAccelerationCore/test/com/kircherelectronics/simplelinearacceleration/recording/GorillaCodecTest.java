@@ -0,0 +1,298 @@
+package com.kircherelectronics.simplelinearacceleration.recording;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Checks that GorillaCodec round trips are lossless. Every decoded value must
+ * have the same raw float bits as the encoded one, including NaN payloads and
+ * negative zeros, and every timestamp must be exact, including deltas that
+ * overflow a long.
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class GorillaCodecTest
+{
+	// The largest block, the block size of the recording writer.
+	private static final int CAPACITY = 1024;
+
+	private static final int COLUMNS = 6;
+
+	// The sensor period of 200 Hz in nanoseconds.
+	private static final long PERIOD = 5000000L;
+
+	private static final int[] SPECIAL_BITS =
+	{ 0x00000000, 0x80000000, 0x7FC00000, 0xFFC00000, 0x7F800001, 0x7FBFFFFF,
+			0xFFFFFFFF, 0x7F800000, 0xFF800000, 0x00000001, 0x80000001,
+			0x7F7FFFFF, 0x3F800000 };
+
+	private GorillaCodec codec = new GorillaCodec(CAPACITY, COLUMNS);
+
+	private ByteBuffer buffer = ByteBuffer.allocate(codec.getMaxEncodedSize());
+
+	private Random random = new Random(42);
+
+	@Test
+	public void emptyBlock()
+	{
+		long[] timestamps = new long[CAPACITY];
+		float[] values = new float[CAPACITY * COLUMNS];
+
+		assertEquals(0, roundTrip(timestamps, values, 0));
+	}
+
+	@Test
+	public void singleSample()
+	{
+		for (int bits : SPECIAL_BITS)
+		{
+			long[] timestamps = new long[CAPACITY];
+			float[] values = new float[CAPACITY * COLUMNS];
+
+			timestamps[0] = random.nextLong();
+
+			for (int c = 0; c < COLUMNS; c++)
+			{
+				values[c * CAPACITY] = Float.intBitsToFloat(bits);
+			}
+
+			roundTrip(timestamps, values, 1);
+		}
+	}
+
+	@Test
+	public void randomBits()
+	{
+		for (int count : new int[]
+		{ 2, 3, 17, CAPACITY - 1, CAPACITY })
+		{
+			long[] timestamps = jitteredTimestamps(count);
+			float[] values = new float[CAPACITY * COLUMNS];
+
+			for (int c = 0; c < COLUMNS; c++)
+			{
+				for (int i = 0; i < count; i++)
+				{
+					values[c * CAPACITY + i] = Float.intBitsToFloat(random
+							.nextInt());
+				}
+			}
+
+			roundTrip(timestamps, values, count);
+		}
+	}
+
+	@Test
+	public void specialValues()
+	{
+		long[] timestamps = jitteredTimestamps(CAPACITY);
+		float[] values = new float[CAPACITY * COLUMNS];
+
+		// Runs of each special value, then a random mix of them.
+		for (int c = 0; c < COLUMNS; c++)
+		{
+			for (int i = 0; i < CAPACITY; i++)
+			{
+				int bits = (i < CAPACITY / 2) ? SPECIAL_BITS[(i / 8 + c)
+						% SPECIAL_BITS.length] : SPECIAL_BITS[random
+						.nextInt(SPECIAL_BITS.length)];
+
+				values[c * CAPACITY + i] = Float.intBitsToFloat(bits);
+			}
+		}
+
+		roundTrip(timestamps, values, CAPACITY);
+	}
+
+	@Test
+	public void constantColumns()
+	{
+		long[] timestamps = new long[CAPACITY];
+		float[] values = new float[CAPACITY * COLUMNS];
+
+		for (int i = 0; i < CAPACITY; i++)
+		{
+			timestamps[i] = i * PERIOD;
+		}
+
+		for (int c = 0; c < COLUMNS; c++)
+		{
+			float value = Float.intBitsToFloat(SPECIAL_BITS[c]);
+
+			for (int i = 0; i < CAPACITY; i++)
+			{
+				values[c * CAPACITY + i] = value;
+			}
+		}
+
+		roundTrip(timestamps, values, CAPACITY);
+	}
+
+	@Test
+	public void accelerometerSamples()
+	{
+		long[] timestamps = jitteredTimestamps(CAPACITY);
+		float[] values = new float[CAPACITY * COLUMNS];
+
+		for (int c = 0; c < COLUMNS; c++)
+		{
+			for (int i = 0; i < CAPACITY; i++)
+			{
+				values[c * CAPACITY + i] = (float) (9.81 * Math.sin(i * 0.01
+						+ c) + random.nextGaussian() * 0.05);
+			}
+		}
+
+		roundTrip(timestamps, values, CAPACITY);
+	}
+
+	@Test
+	public void hugeTimestampDeltas()
+	{
+		long[] timestamps = new long[CAPACITY];
+		float[] values = new float[CAPACITY * COLUMNS];
+
+		// Deltas and deltas of deltas that overflow a long.
+		for (int i = 0; i < CAPACITY; i++)
+		{
+			switch (i % 4)
+			{
+			case 0:
+				timestamps[i] = Long.MIN_VALUE;
+				break;
+			case 1:
+				timestamps[i] = Long.MAX_VALUE;
+				break;
+			case 2:
+				timestamps[i] = 0;
+				break;
+			default:
+				timestamps[i] = random.nextLong();
+				break;
+			}
+		}
+
+		roundTrip(timestamps, values, CAPACITY);
+
+		// Timestamps that go backwards and repeat.
+		for (int i = 0; i < CAPACITY; i++)
+		{
+			timestamps[i] = (i % 3 == 0) ? -i * PERIOD : timestamps[Math.max(
+					0, i - 1)];
+		}
+
+		roundTrip(timestamps, values, CAPACITY);
+	}
+
+	@Test
+	public void reusedCodec()
+	{
+		// Blocks of decreasing size must not see the state of earlier ones.
+		for (int count = CAPACITY; count >= 0; count -= 93)
+		{
+			long[] timestamps = jitteredTimestamps(count);
+			float[] values = new float[CAPACITY * COLUMNS];
+
+			for (int c = 0; c < COLUMNS; c++)
+			{
+				for (int i = 0; i < count; i++)
+				{
+					values[c * CAPACITY + i] = (random.nextInt(4) == 0) ? Float
+							.intBitsToFloat(random.nextInt()) : c;
+				}
+			}
+
+			roundTrip(timestamps, values, count);
+		}
+	}
+
+	/**
+	 * Timestamps at the sensor rate with jitter of up to a period and a few
+	 * dropped samples.
+	 */
+	private long[] jitteredTimestamps(int count)
+	{
+		long[] timestamps = new long[CAPACITY];
+
+		long timestamp = random.nextLong() >>> 2;
+
+		for (int i = 0; i < count; i++)
+		{
+			timestamp += PERIOD + (long) (random.nextGaussian() * PERIOD / 4);
+
+			if (random.nextInt(100) == 0)
+			{
+				timestamp += PERIOD * random.nextInt(1000);
+			}
+
+			timestamps[i] = timestamp;
+		}
+
+		return timestamps;
+	}
+
+	/**
+	 * Encode and decode a block and check it decodes to the same bits.
+	 *
+	 * @return The size of the encoded block in bytes.
+	 */
+	private int roundTrip(long[] timestamps, float[] values, int count)
+	{
+		buffer.clear();
+
+		int length = codec.encode(timestamps, values, count, buffer);
+
+		assertEquals(length, buffer.position());
+
+		buffer.flip();
+
+		long[] decodedTimestamps = new long[CAPACITY];
+		float[] decodedValues = new float[CAPACITY * COLUMNS];
+
+		codec.decode(buffer, length, count, decodedTimestamps, decodedValues);
+
+		assertEquals(length, buffer.position());
+
+		for (int i = 0; i < count; i++)
+		{
+			assertEquals("Timestamp " + i, timestamps[i], decodedTimestamps[i]);
+		}
+
+		for (int c = 0; c < COLUMNS; c++)
+		{
+			for (int i = 0; i < count; i++)
+			{
+				int index = c * CAPACITY + i;
+
+				assertEquals("Column " + c + ", sample " + i,
+						Float.floatToRawIntBits(values[index]),
+						Float.floatToRawIntBits(decodedValues[index]));
+			}
+		}
+
+		return length;
+	}
+}
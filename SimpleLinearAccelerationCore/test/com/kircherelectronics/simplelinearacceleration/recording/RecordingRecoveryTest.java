@@ -0,0 +1,269 @@
+package com.kircherelectronics.simplelinearacceleration.recording;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileLock;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Checks that RecordingRecovery leaves recordings and sessions alone while
+ * they are locked by their writer, and recovers them once they are not.
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class RecordingRecoveryTest
+{
+	// The sensor period of 200 Hz in nanoseconds.
+	private static final long PERIOD = 5000000L;
+
+	// A few blocks and a partial block.
+	private static final int SAMPLES = RecordingHeader.BLOCK_CAPACITY * 3 + 100;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void lockedRecordingIsSkipped() throws IOException
+	{
+		File file = new File(folder.getRoot(), "locked"
+				+ RecordingHeader.EXTENSION);
+
+		RecordingWriter writer = new RecordingWriter(file,
+				new RecordingHeader());
+
+		write(writer, SAMPLES);
+
+		writer.commit();
+
+		long length = file.length();
+
+		assertFalse(RecordingRecovery.recover(file));
+		assertEquals(length, file.length());
+
+		// A second writer must not truncate the recording.
+		try
+		{
+			new RecordingWriter(file, new RecordingHeader());
+
+			fail("The recording is not locked");
+		}
+		catch (IOException e)
+		{
+			assertEquals(length, file.length());
+		}
+
+		// The copy of the recording is not locked, as after a crash.
+		File crashed = new File(folder.getRoot(), "crashed"
+				+ RecordingHeader.EXTENSION);
+
+		copy(file, crashed);
+
+		writer.close();
+
+		assertEquals(SAMPLES, samples(file));
+
+		assertFalse(RecordingRecovery.recover(file));
+
+		assertTrue(RecordingRecovery.recover(crashed));
+		assertEquals(SAMPLES, samples(crashed));
+	}
+
+	@Test
+	public void lockedSessionIsSkipped() throws IOException
+	{
+		File directory = new File(folder.getRoot(), "session");
+
+		SegmentedRecordingWriter writer = new SegmentedRecordingWriter(
+				directory, new RecordingHeader());
+
+		write(writer, SAMPLES);
+
+		File lock = new File(directory, RecordingManifest.LOCK_FILE_NAME);
+
+		assertTrue(lock.exists());
+
+		assertEquals(0, RecordingRecovery.recoverAll(folder.getRoot()));
+		assertFalse(RecordingManifest.read(directory).getSegments().get(0)
+				.isClosed());
+
+		try
+		{
+			new SegmentedRecordingWriter(directory, new RecordingHeader());
+
+			fail("The session is not locked");
+		}
+		catch (IOException e)
+		{
+			// Expected.
+		}
+
+		writer.close();
+
+		RecordingManifest manifest = RecordingManifest.read(directory);
+
+		assertTrue(manifest.getSegments().get(0).isClosed());
+		assertEquals(SAMPLES, manifest.getSegments().get(0).getSamples());
+
+		assertEquals(0, RecordingRecovery.recoverAll(folder.getRoot()));
+
+		// The lock file stays, only the lock is released.
+		assertTrue(lock.exists());
+		assertUnlocked(directory);
+	}
+
+	@Test
+	public void unlockedSessionIsRecovered() throws IOException
+	{
+		File directory = new File(folder.getRoot(), "session");
+
+		SegmentedRecordingWriter writer = new SegmentedRecordingWriter(
+				directory, new RecordingHeader());
+
+		write(writer, SAMPLES);
+
+		writer.close();
+
+		// Reopen the segment in the manifest, as a crash would leave it, with
+		// the lock file left behind.
+		RecordingManifest manifest = RecordingManifest.read(directory);
+
+		RecordingManifest.Segment segment = manifest.getSegments().get(0);
+
+		manifest.remove(segment);
+		manifest.add(new RecordingManifest.Segment(segment.getName(), segment
+				.getFirstTimestamp(), -1, -1, -1));
+		manifest.write(directory);
+
+		new File(directory, RecordingManifest.LOCK_FILE_NAME).createNewFile();
+
+		assertEquals(1, RecordingRecovery.recoverSession(directory));
+
+		segment = RecordingManifest.read(directory).getSegments().get(0);
+
+		assertTrue(segment.isClosed());
+		assertEquals(SAMPLES, segment.getSamples());
+
+		assertUnlocked(directory);
+	}
+
+	private static void assertUnlocked(File directory) throws IOException
+	{
+		FileLock lock = RecordingManifest.lock(directory);
+
+		assertNotNull("The session is locked", lock);
+
+		RecordingManifest.unlock(lock);
+	}
+
+	private static void write(RecordingWriter writer, int samples)
+			throws IOException
+	{
+		float[] values = new float[RecordingHeader.COLUMNS];
+
+		for (int i = 0; i < samples; i++)
+		{
+			values[0] = i;
+
+			writer.write(i * PERIOD, values, 0);
+		}
+	}
+
+	private static void write(SegmentedRecordingWriter writer, int samples)
+			throws IOException
+	{
+		float[] values = new float[RecordingHeader.COLUMNS];
+
+		for (int i = 0; i < samples; i++)
+		{
+			values[0] = i;
+
+			writer.write(i * PERIOD, values, 0);
+		}
+	}
+
+	/**
+	 * Count the samples of a closed recording.
+	 */
+	private static long samples(File file) throws IOException
+	{
+		RecordingReader reader = new RecordingReader(file);
+
+		try
+		{
+			long samples = 0;
+
+			for (int block = 0; block < reader.getBlockCount(); block++)
+			{
+				samples += reader.getSampleCount(block);
+			}
+
+			return samples;
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+
+	private static void copy(File from, File to) throws IOException
+	{
+		InputStream input = new FileInputStream(from);
+
+		try
+		{
+			OutputStream output = new FileOutputStream(to);
+
+			try
+			{
+				byte[] buffer = new byte[8192];
+
+				int read;
+
+				while ((read = input.read(buffer)) > 0)
+				{
+					output.write(buffer, 0, read);
+				}
+			}
+			finally
+			{
+				output.close();
+			}
+		}
+		finally
+		{
+			input.close();
+		}
+	}
+}
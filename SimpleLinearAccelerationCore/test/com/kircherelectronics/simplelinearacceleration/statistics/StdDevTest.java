@@ -0,0 +1,146 @@
+package com.kircherelectronics.simplelinearacceleration.statistics;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Checks StdDev against the two-pass computation it replaced, the mean of the
+ * window followed by the sum of squared deviations from it, over a long
+ * recording of accelerometer magnitudes that crosses several resyncs.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class StdDevTest
+{
+	// The agreement the class documents.
+	private static final double TOLERANCE = 1e-9;
+
+	private static final int SAMPLES = 200000;
+
+	@Test
+	public void matchesTwoPass()
+	{
+		for (int windowSize : new int[]
+		{ StdDev.MIN_SAMPLES, 10, 50, 1000 })
+		{
+			check(windowSize);
+		}
+	}
+
+	@Test
+	public void thresholdMatchesStdDev()
+	{
+		for (double threshold : new double[]
+		{ 0, 0.03, 0.2 })
+		{
+			StdDev stdDev = new StdDev(50);
+			StdDev gate = new StdDev(50);
+
+			Random random = new Random(50);
+
+			for (int i = 0; i < SAMPLES; i++)
+			{
+				double value = magnitude(random, i);
+
+				double expected = stdDev.addSample(value);
+
+				boolean below = gate.addSample(value, threshold);
+
+				// The two may round differently right at the threshold.
+				if (Math.abs(expected - threshold) > TOLERANCE)
+				{
+					assertEquals("Threshold " + threshold + ", sample " + i,
+							expected < threshold, below);
+				}
+			}
+		}
+	}
+
+	private void check(int windowSize)
+	{
+		StdDev stdDev = new StdDev(windowSize);
+
+		double[] window = new double[windowSize];
+
+		// The reported value holds until the window has MIN_SAMPLES samples.
+		double expected = 0;
+
+		Random random = new Random(windowSize);
+
+		for (int i = 0; i < SAMPLES; i++)
+		{
+			double value = magnitude(random, i);
+
+			window[i % windowSize] = value;
+
+			int count = Math.min(i + 1, windowSize);
+
+			if (count >= StdDev.MIN_SAMPLES)
+			{
+				expected = twoPass(window, count);
+			}
+
+			assertEquals("Window " + windowSize + ", sample " + i, expected,
+					stdDev.addSample(value), TOLERANCE);
+		}
+	}
+
+	/**
+	 * The magnitude of a device that rests for a while, then moves.
+	 */
+	private static double magnitude(Random random, int i)
+	{
+		double noise = random.nextGaussian() * 0.02;
+
+		if ((i / 5000) % 2 == 0)
+		{
+			return 1 + noise;
+		}
+
+		return 1 + 0.5 * Math.sin(i * 0.05) + noise;
+	}
+
+	private static double twoPass(double[] window, int count)
+	{
+		double sum = 0;
+
+		for (int i = 0; i < count; i++)
+		{
+			sum += window[i];
+		}
+
+		double mean = sum / count;
+
+		double m2 = 0;
+
+		for (int i = 0; i < count; i++)
+		{
+			double delta = window[i] - mean;
+			m2 += delta * delta;
+		}
+
+		return Math.sqrt(m2 / (count - 1));
+	}
+}
@@ -0,0 +1,108 @@
+package com.kircherelectronics.simplelinearacceleration.tools;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Writes samples as fixed-width big-endian binary records. Each record is
+ * RECORD_SIZE bytes: the timestamp in milliseconds as a long followed by AX,
+ * AY, AZ, WX, WY and WZ as floats.
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class BinarySampleWriter implements SampleWriter
+{
+	// The size of a record in bytes.
+	public static final int RECORD_SIZE = 8 + 6 * 4;
+
+	private static final int BUFFER_SIZE = RECORD_SIZE * 32768;
+
+	private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+	private FileChannel channel;
+
+	private FileOutputStream stream;
+
+	/**
+	 * Create a binary log.
+	 *
+	 * @param file
+	 *            The binary log.
+	 * @throws IOException
+	 *             If the log cannot be created.
+	 */
+	public BinarySampleWriter(File file) throws IOException
+	{
+		stream = new FileOutputStream(file);
+		channel = stream.getChannel();
+	}
+
+	@Override
+	public void write(long[] timestamps, float[] acceleration,
+			float[] linearAcceleration, int length) throws IOException
+	{
+		for (int i = 0, j = 0; i < length; i++, j += 3)
+		{
+			if (buffer.remaining() < RECORD_SIZE)
+			{
+				flush();
+			}
+
+			buffer.putLong(timestamps[i]);
+
+			buffer.putFloat(acceleration[j]);
+			buffer.putFloat(acceleration[j + 1]);
+			buffer.putFloat(acceleration[j + 2]);
+
+			buffer.putFloat(linearAcceleration[j]);
+			buffer.putFloat(linearAcceleration[j + 1]);
+			buffer.putFloat(linearAcceleration[j + 2]);
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		flush();
+
+		channel.close();
+		stream.close();
+	}
+
+	/**
+	 * Write the buffer to the file.
+	 */
+	private void flush() throws IOException
+	{
+		buffer.flip();
+
+		while (buffer.hasRemaining())
+		{
+			channel.write(buffer);
+		}
+
+		buffer.clear();
+	}
+}
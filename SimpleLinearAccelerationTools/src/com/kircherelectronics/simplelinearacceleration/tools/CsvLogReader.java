@@ -0,0 +1,414 @@
+package com.kircherelectronics.simplelinearacceleration.tools;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Streams the .csv logs written by the application. The rows have the columns
+ * Generation, Timestamp, AX, AY, AZ, WX, WY, WZ. The file is read through a
+ * reusable byte buffer and the fields are parsed directly from the bytes, so no
+ * Strings are created per line. Lines that do not start with a number, such as
+ * the header, are skipped.
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class CsvLogReader
+{
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	// The number of columns in a row of the log.
+	private static final int COLUMNS = 8;
+
+	// Exact powers of ten representable by a double.
+	private static final double[] POWERS_OF_TEN = new double[23];
+
+	static
+	{
+		POWERS_OF_TEN[0] = 1;
+
+		for (int i = 1; i < POWERS_OF_TEN.length; i++)
+		{
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+	private boolean eof = false;
+
+	private byte[] buffer = new byte[BUFFER_SIZE];
+
+	private ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+
+	private FileChannel channel;
+
+	private FileInputStream stream;
+
+	// The start and end of the unread bytes in the buffer.
+	private int position = 0;
+	private int limit = 0;
+
+	// The offsets of the fields of the current line.
+	private int[] fieldStart = new int[COLUMNS];
+	private int[] fieldEnd = new int[COLUMNS];
+
+	/**
+	 * Open a log for reading.
+	 *
+	 * @param file
+	 *            The .csv log.
+	 * @throws IOException
+	 *             If the log cannot be opened.
+	 */
+	public CsvLogReader(File file) throws IOException
+	{
+		stream = new FileInputStream(file);
+		channel = stream.getChannel();
+	}
+
+	/**
+	 * Read the next rows of the log.
+	 *
+	 * @param timestamps
+	 *            The timestamp of each row in milliseconds.
+	 * @param acceleration
+	 *            The interleaved AX, AY, AZ columns of each row.
+	 * @param linearAcceleration
+	 *            The interleaved WX, WY, WZ columns of each row, may be null.
+	 * @param length
+	 *            The maximum number of rows to read.
+	 * @return The number of rows read, or -1 at the end of the log.
+	 * @throws IOException
+	 *             If the log cannot be read or a row is malformed.
+	 */
+	public int read(long[] timestamps, float[] acceleration,
+			float[] linearAcceleration, int length) throws IOException
+	{
+		int rows = 0;
+
+		while (rows < length)
+		{
+			int end = nextLineEnd();
+
+			if (end < 0)
+			{
+				break;
+			}
+
+			int start = position;
+
+			position = end + 1;
+
+			if (!splitLine(start, end))
+			{
+				continue;
+			}
+
+			int j = rows * 3;
+
+			timestamps[rows] = parseLong(fieldStart[1], fieldEnd[1]);
+
+			acceleration[j] = parseFloat(fieldStart[2], fieldEnd[2]);
+			acceleration[j + 1] = parseFloat(fieldStart[3], fieldEnd[3]);
+			acceleration[j + 2] = parseFloat(fieldStart[4], fieldEnd[4]);
+
+			if (linearAcceleration != null)
+			{
+				linearAcceleration[j] = parseFloat(fieldStart[5], fieldEnd[5]);
+				linearAcceleration[j + 1] = parseFloat(fieldStart[6],
+						fieldEnd[6]);
+				linearAcceleration[j + 2] = parseFloat(fieldStart[7],
+						fieldEnd[7]);
+			}
+
+			rows++;
+		}
+
+		return (rows == 0 && eof && position >= limit) ? -1 : rows;
+	}
+
+	/**
+	 * Close the log.
+	 *
+	 * @throws IOException
+	 *             If the log cannot be closed.
+	 */
+	public void close() throws IOException
+	{
+		channel.close();
+		stream.close();
+	}
+
+	/**
+	 * Find the end of the next line, refilling the buffer as needed.
+	 *
+	 * @return The offset of the line terminator, or -1 if no lines remain.
+	 * @throws IOException
+	 *             If the log cannot be read.
+	 */
+	private int nextLineEnd() throws IOException
+	{
+		int scanned = position;
+
+		while (true)
+		{
+			for (int i = scanned; i < limit; i++)
+			{
+				if (buffer[i] == '\n')
+				{
+					return i;
+				}
+			}
+
+			if (eof)
+			{
+				if (position < limit)
+				{
+					// Terminate the last line of the log.
+					if (limit == buffer.length)
+					{
+						compact();
+
+						if (limit == buffer.length)
+						{
+							throw new IOException("Line longer than "
+									+ buffer.length + " bytes");
+						}
+					}
+
+					buffer[limit] = '\n';
+
+					return limit++;
+				}
+
+				return -1;
+			}
+
+			scanned = limit - position;
+
+			compact();
+
+			if (limit == buffer.length)
+			{
+				throw new IOException("Line longer than " + buffer.length
+						+ " bytes");
+			}
+
+			byteBuffer.limit(buffer.length);
+			byteBuffer.position(limit);
+
+			if (channel.read(byteBuffer) < 0)
+			{
+				eof = true;
+			}
+
+			limit = byteBuffer.position();
+		}
+	}
+
+	/**
+	 * Move the unread bytes to the start of the buffer.
+	 */
+	private void compact()
+	{
+		System.arraycopy(buffer, position, buffer, 0, limit - position);
+
+		limit -= position;
+		position = 0;
+	}
+
+	/**
+	 * Find the fields of a line.
+	 *
+	 * @param start
+	 *            The offset of the first byte of the line.
+	 * @param end
+	 *            The offset of the line terminator.
+	 * @return True if the line is a row of the log.
+	 * @throws IOException
+	 *             If the row is missing columns.
+	 */
+	private boolean splitLine(int start, int end) throws IOException
+	{
+		if (end > start && buffer[end - 1] == '\r')
+		{
+			end--;
+		}
+
+		if (start == end
+				|| !((buffer[start] >= '0' && buffer[start] <= '9') || buffer[start] == '-'))
+		{
+			return false;
+		}
+
+		int field = 0;
+
+		fieldStart[0] = start;
+
+		for (int i = start; i < end && field < COLUMNS; i++)
+		{
+			if (buffer[i] == ',')
+			{
+				fieldEnd[field++] = i;
+
+				if (field < COLUMNS)
+				{
+					fieldStart[field] = i + 1;
+				}
+			}
+		}
+
+		if (field < COLUMNS)
+		{
+			if (field == COLUMNS - 1)
+			{
+				// The last column does not have a trailing comma.
+				fieldEnd[field++] = end;
+			}
+			else
+			{
+				throw new IOException("Expected " + COLUMNS
+						+ " columns but found " + (field + 1));
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Parse a decimal integer from the buffer.
+	 */
+	private long parseLong(int start, int end) throws IOException
+	{
+		boolean negative = false;
+
+		if (start < end && buffer[start] == '-')
+		{
+			negative = true;
+			start++;
+		}
+
+		if (start == end)
+		{
+			throw new IOException("Empty number");
+		}
+
+		long value = 0;
+
+		for (int i = start; i < end; i++)
+		{
+			int digit = buffer[i] - '0';
+
+			if (digit < 0 || digit > 9)
+			{
+				throw new IOException("Malformed number: "
+						+ new String(buffer, start, end - start, "US-ASCII"));
+			}
+
+			value = value * 10 + digit;
+		}
+
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Parse a float, as written by Float.toString(), from the buffer. Values
+	 * with more digits than a double holds exactly or with exponents outside
+	 * the exact powers of ten fall back to Float.parseFloat().
+	 */
+	private float parseFloat(int start, int end) throws IOException
+	{
+		int i = start;
+
+		boolean negative = false;
+
+		if (i < end && buffer[i] == '-')
+		{
+			negative = true;
+			i++;
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+
+		for (; i < end && buffer[i] >= '0' && buffer[i] <= '9'; i++)
+		{
+			mantissa = mantissa * 10 + (buffer[i] - '0');
+			digits++;
+		}
+
+		if (i < end && buffer[i] == '.')
+		{
+			for (i++; i < end && buffer[i] >= '0' && buffer[i] <= '9'; i++)
+			{
+				mantissa = mantissa * 10 + (buffer[i] - '0');
+				digits++;
+				exponent--;
+			}
+		}
+
+		if (i < end && (buffer[i] == 'E' || buffer[i] == 'e'))
+		{
+			i++;
+
+			boolean negativeExponent = false;
+
+			if (i < end && (buffer[i] == '-' || buffer[i] == '+'))
+			{
+				negativeExponent = buffer[i] == '-';
+				i++;
+			}
+
+			int e = 0;
+
+			for (; i < end && buffer[i] >= '0' && buffer[i] <= '9'; i++)
+			{
+				e = e * 10 + (buffer[i] - '0');
+			}
+
+			exponent += negativeExponent ? -e : e;
+		}
+
+		if (i != end || digits == 0 || digits > 15
+				|| exponent <= -POWERS_OF_TEN.length
+				|| exponent >= POWERS_OF_TEN.length)
+		{
+			// NaN, Infinity or a value the fast path cannot round exactly.
+			try
+			{
+				return Float.parseFloat(new String(buffer, start, end - start,
+						"US-ASCII"));
+			}
+			catch (NumberFormatException e)
+			{
+				throw new IOException("Malformed number: " + e.getMessage());
+			}
+		}
+
+		double value = (exponent < 0) ? mantissa / POWERS_OF_TEN[-exponent]
+				: mantissa * POWERS_OF_TEN[exponent];
+
+		return (float) (negative ? -value : value);
+	}
+}
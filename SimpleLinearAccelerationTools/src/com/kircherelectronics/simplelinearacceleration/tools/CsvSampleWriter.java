@@ -0,0 +1,147 @@
+package com.kircherelectronics.simplelinearacceleration.tools;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Writes samples as a .csv log in the same layout the application uses, with
+ * the columns Generation, Timestamp, AX, AY, AZ, WX, WY, WZ. Rows are formatted
+ * into a reusable buffer and written to the file in large chunks.
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class CsvSampleWriter implements SampleWriter
+{
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	// The longest row Float.toString() and Long.toString() can produce.
+	private static final int MAX_ROW_LENGTH = 256;
+
+	private static final String HEADER = "Generation,Timestamp,AX,AY,AZ,WX,WY,WZ,\n";
+
+	private long generation = 0;
+
+	private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+	private FileChannel channel;
+
+	private FileOutputStream stream;
+
+	private StringBuilder row = new StringBuilder(MAX_ROW_LENGTH);
+
+	/**
+	 * Create a .csv log and write the header.
+	 *
+	 * @param file
+	 *            The .csv log.
+	 * @throws IOException
+	 *             If the log cannot be created.
+	 */
+	public CsvSampleWriter(File file) throws IOException
+	{
+		stream = new FileOutputStream(file);
+		channel = stream.getChannel();
+
+		row.append(HEADER);
+
+		put(row);
+	}
+
+	@Override
+	public void write(long[] timestamps, float[] acceleration,
+			float[] linearAcceleration, int length) throws IOException
+	{
+		for (int i = 0, j = 0; i < length; i++, j += 3)
+		{
+			row.setLength(0);
+
+			row.append(generation++).append(',');
+			row.append(timestamps[i]).append(',');
+
+			row.append(acceleration[j]).append(',');
+			row.append(acceleration[j + 1]).append(',');
+			row.append(acceleration[j + 2]).append(',');
+
+			row.append(linearAcceleration[j]).append(',');
+			row.append(linearAcceleration[j + 1]).append(',');
+			row.append(linearAcceleration[j + 2]).append(',');
+			row.append('\n');
+
+			put(row);
+		}
+	}
+
+	/**
+	 * Skip generations for samples that were dropped, leaving a gap in the
+	 * Generation column.
+	 *
+	 * @param samples
+	 *            The number of samples dropped.
+	 */
+	public void skip(long samples)
+	{
+		generation += samples;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		flush();
+
+		channel.close();
+		stream.close();
+	}
+
+	/**
+	 * Copy a row into the buffer, flushing the buffer first if it is full.
+	 */
+	private void put(StringBuilder row) throws IOException
+	{
+		if (buffer.remaining() < row.length())
+		{
+			flush();
+		}
+
+		for (int i = 0; i < row.length(); i++)
+		{
+			buffer.put((byte) row.charAt(i));
+		}
+	}
+
+	/**
+	 * Write the buffer to the file.
+	 */
+	private void flush() throws IOException
+	{
+		buffer.flip();
+
+		while (buffer.hasRemaining())
+		{
+			channel.write(buffer);
+		}
+
+		buffer.clear();
+	}
+}
@@ -0,0 +1,392 @@
+package com.kircherelectronics.simplelinearacceleration.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.kircherelectronics.simplelinearacceleration.recording.RecordingHeader;
+import com.kircherelectronics.simplelinearacceleration.recording.MappedRecordingReader;
+import com.kircherelectronics.simplelinearacceleration.recording.RecordingManifest;
+import com.kircherelectronics.simplelinearacceleration.recording.RecordingSlice;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * A command-line tool that converts binary recordings written by the
+ * application to .csv logs in the layout the application used to write, with
+ * the timestamp in milliseconds since the first sample. Each recording is
+ * memory-mapped and converted a block at a time, and written next to it, or
+ * to an output directory. With --from and --to only the samples in that time
+ * range are read, found through the time index of the recording. A session
+ * directory recorded in segments is converted to a single .csv log, reading
+ * the segments listed in its manifest in order and skipping those outside the
+ * time range. The Generation column has a gap wherever the recording notes
+ * samples dropped while logging, as in the .csv logs of the application, and
+ * counts from the first sample exported. The exit status is 1 if any
+ * recording could not be converted.
+ *
+ * <pre>
+ * ExportCsv [--from s] [--to s] [--output dir] recording-session-or-directory...
+ * </pre>
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class ExportCsv
+{
+	private static final long NANOS_PER_MILLI = 1000000L;
+
+	private static final double NANOS_PER_SECOND = 1e9;
+
+	// The range to export in seconds since the first sample.
+	private double from = 0;
+	private double to = Double.POSITIVE_INFINITY;
+
+	private File outputDir;
+
+	private List<File> recordings = new ArrayList<File>();
+
+	public static void main(String[] args)
+	{
+		ExportCsv export = new ExportCsv();
+
+		if (!export.parseArgs(args))
+		{
+			usage();
+
+			System.exit(1);
+		}
+
+		// The number of recordings that could not be converted.
+		int failed = 0;
+
+		for (File recording : export.recordings)
+		{
+			try
+			{
+				long samples = export.export(recording);
+
+				System.out.printf("%s: %d samples%n", recording, samples);
+			}
+			catch (IOException e)
+			{
+				System.err.println(recording + ": " + e.getMessage());
+
+				failed++;
+			}
+		}
+
+		if (failed > 0)
+		{
+			System.err.println(failed + " of " + export.recordings.size()
+					+ " recordings failed");
+
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Convert a single recording, or the segments of a session.
+	 *
+	 * @param recording
+	 *            The recording, or the directory of the session.
+	 * @return The number of samples converted.
+	 * @throws IOException
+	 *             If the recording cannot be read or the log cannot be
+	 *             written.
+	 */
+	private long export(File recording) throws IOException
+	{
+		List<File> files = new ArrayList<File>();
+
+		// The timestamp of the first sample.
+		long first;
+
+		if (recording.isDirectory())
+		{
+			RecordingManifest manifest = RecordingManifest.read(recording);
+
+			if (manifest.getSegments().isEmpty())
+			{
+				new CsvSampleWriter(createOutput(recording)).close();
+
+				return 0;
+			}
+
+			first = manifest.getSegments().get(0).getFirstTimestamp();
+
+			for (RecordingManifest.Segment segment : manifest.getSegments(
+					first + toNanos(from), first + toNanos(to)))
+			{
+				files.add(segment.getFile(recording));
+			}
+		}
+		else
+		{
+			MappedRecordingReader reader = new MappedRecordingReader(recording);
+
+			try
+			{
+				if (reader.getIndex().getCount() == 0)
+				{
+					new CsvSampleWriter(createOutput(recording)).close();
+
+					return 0;
+				}
+
+				first = reader.getIndex().getTimestamp(0);
+			}
+			finally
+			{
+				reader.close();
+			}
+
+			files.add(recording);
+		}
+
+		CsvSampleWriter writer = new CsvSampleWriter(createOutput(recording));
+
+		long samples = 0;
+
+		try
+		{
+			for (File file : files)
+			{
+				samples += export(file, first, writer);
+			}
+		}
+		finally
+		{
+			writer.close();
+		}
+
+		return samples;
+	}
+
+	/**
+	 * Convert the time range of a recording.
+	 *
+	 * @param recording
+	 *            The recording.
+	 * @param first
+	 *            The timestamp the range and the output are relative to.
+	 * @param writer
+	 *            The writer of the .csv log.
+	 * @return The number of samples converted.
+	 * @throws IOException
+	 *             If the recording cannot be read or the log cannot be
+	 *             written.
+	 */
+	private long export(File recording, long first, CsvSampleWriter writer)
+			throws IOException
+	{
+		MappedRecordingReader reader = new MappedRecordingReader(recording);
+
+		long samples = 0;
+
+		try
+		{
+			RecordingHeader header = reader.getHeader();
+
+			if (header.getColumns() != RecordingHeader.COLUMNS)
+			{
+				throw new IOException("Expected " + RecordingHeader.COLUMNS
+						+ " columns, found " + header.getColumns());
+			}
+
+			int capacity = header.getBlockCapacity();
+
+			long[] timestamps = new long[capacity];
+			float[] column = new float[capacity];
+
+			float[] acceleration = new float[capacity * 3];
+			float[] linearAcceleration = new float[capacity * 3];
+
+			RecordingSlice slice = reader.slice(first + toNanos(from), first
+					+ toNanos(to));
+
+			for (int block = 0; block < slice.getBlockCount(); block++)
+			{
+				LongBuffer blockTimestamps = slice.getTimestamps(block);
+
+				int length = blockTimestamps.remaining();
+
+				blockTimestamps.get(timestamps, 0, length);
+
+				for (int i = 0; i < length; i++)
+				{
+					timestamps[i] = (timestamps[i] - first) / NANOS_PER_MILLI;
+				}
+
+				for (int c = 0; c < RecordingHeader.COLUMNS; c++)
+				{
+					slice.getColumn(block, c).get(column, 0, length);
+
+					float[] values = (c < 3) ? acceleration : linearAcceleration;
+
+					for (int i = 0, j = c % 3; i < length; i++, j += 3)
+					{
+						values[j] = column[i];
+					}
+				}
+
+				writer.skip(slice.getDroppedCount(block));
+
+				writer.write(timestamps, acceleration, linearAcceleration,
+						length);
+
+				samples += length;
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+
+		return samples;
+	}
+
+	/**
+	 * Convert seconds to nanoseconds, saturating at a range that cannot
+	 * overflow when added to a timestamp.
+	 */
+	private static long toNanos(double seconds)
+	{
+		return (long) Math.max(-Long.MAX_VALUE / 4,
+				Math.min(Long.MAX_VALUE / 4, seconds * NANOS_PER_SECOND));
+	}
+
+	/**
+	 * Get the .csv log a recording is converted to.
+	 */
+	private File createOutput(File recording)
+	{
+		String name = recording.getAbsoluteFile().getName();
+
+		if (name.endsWith(RecordingHeader.EXTENSION))
+		{
+			name = name.substring(0,
+					name.length() - RecordingHeader.EXTENSION.length());
+		}
+
+		File dir = (outputDir != null) ? outputDir : recording
+				.getAbsoluteFile().getParentFile();
+
+		return new File(dir, name + ".csv");
+	}
+
+	/**
+	 * Parse the command line.
+	 *
+	 * @return True if the command line is valid.
+	 */
+	private boolean parseArgs(String[] args)
+	{
+		try
+		{
+			for (int i = 0; i < args.length; i++)
+			{
+				String arg = args[i];
+
+				if (arg.equals("--from"))
+				{
+					from = Double.parseDouble(args[++i]);
+				}
+				else if (arg.equals("--to"))
+				{
+					to = Double.parseDouble(args[++i]);
+				}
+				else if (arg.equals("--output"))
+				{
+					outputDir = new File(args[++i]);
+
+					if (!outputDir.isDirectory() && !outputDir.mkdirs())
+					{
+						System.err.println("Cannot create " + outputDir);
+
+						return false;
+					}
+				}
+				else if (arg.startsWith("--"))
+				{
+					return false;
+				}
+				else
+				{
+					addRecordings(new File(arg));
+				}
+			}
+		}
+		catch (ArrayIndexOutOfBoundsException e)
+		{
+			return false;
+		}
+		catch (NumberFormatException e)
+		{
+			return false;
+		}
+
+		return !recordings.isEmpty();
+	}
+
+	/**
+	 * Add a recording, a session, or every recording and session in a
+	 * directory.
+	 */
+	private void addRecordings(File file)
+	{
+		if (file.isDirectory() && !RecordingManifest.exists(file))
+		{
+			File[] files = file.listFiles();
+
+			if (files != null)
+			{
+				Arrays.sort(files);
+
+				for (File child : files)
+				{
+					if (child.isDirectory()
+							|| child.getName().endsWith(
+									RecordingHeader.EXTENSION))
+					{
+						addRecordings(child);
+					}
+				}
+			}
+		}
+		else
+		{
+			recordings.add(file);
+		}
+	}
+
+	private static void usage()
+	{
+		System.err
+				.println("Usage: ExportCsv [--from s] [--to s] [--output dir]\n"
+						+ "                 recording-session-or-directory...\n\n"
+						+ "  --from    start of the range to export in seconds since the first sample\n"
+						+ "  --to      end of the range to export in seconds since the first sample\n"
+						+ "  --output  directory for the .csv logs, defaults to the recording's");
+	}
+}
@@ -0,0 +1,342 @@
+package com.kircherelectronics.simplelinearacceleration.tools;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.kircherelectronics.simplelinearacceleration.filter.LPFButterworth;
+import com.kircherelectronics.simplelinearacceleration.filter.LPFWikipedia;
+import com.kircherelectronics.simplelinearacceleration.filter.LinearAccelerationConfig;
+import com.kircherelectronics.simplelinearacceleration.filter.SimpleLinearAcceleration;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Reprocesses a long recording in parallel on a ForkJoinPool. The recording is
+ * split into chunks and each chunk runs through its own
+ * SimpleLinearAcceleration, starting a warm-up overlap before the chunk so the
+ * median filter, low-pass filter, mean filter and standard deviation windows
+ * have converged by the first sample of the chunk. The warm-up output is
+ * discarded and the chunks are stitched back together in order.
+ * 
+ * The gravity estimate is only refreshed while the device is static, so
+ * converged filters alone are not enough: a chunk must also see the estimate
+ * refreshed after its filters have converged. When the gravity estimate is
+ * refreshed the linear acceleration is exactly zero on every axis. The overlap
+ * starts at twice the warm-up, so such a sample can show up in its second
+ * half, after the filters have converged, and a chunk whose overlap has none
+ * doubles it until it does or it reaches the start of the recording. The
+ * stitched output then matches a sequential run to within the settling
+ * tolerance of the low-pass filter. The chunks read the recording and write
+ * the output in place, without copying their ranges.
+ * 
+ * The Kalman gravity estimator updates on every sample instead, so the
+ * warm-up also covers the settling of its static gain. Its gain drops while
+ * the device moves, so after a warm-up that is mostly motion the estimate
+ * has not fully settled and the output agrees less closely.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class ParallelReprocessor
+{
+	// The residual of the low-pass filter state after the warm-up.
+	private static final double SETTLING_TOLERANCE = 1e-6;
+
+	// The smallest chunk worth forking.
+	private static final int MIN_CHUNK_SIZE = 16384;
+
+	private ForkJoinPool pool;
+
+	private LinearAccelerationConfig config;
+
+	/**
+	 * Create a reprocessor.
+	 * 
+	 * @param config
+	 *            The configuration of the pipeline.
+	 * @param pool
+	 *            The pool the chunks run on.
+	 */
+	public ParallelReprocessor(LinearAccelerationConfig config,
+			ForkJoinPool pool)
+	{
+		this.config = config;
+		this.pool = pool;
+	}
+
+	/**
+	 * Reprocess a recording.
+	 * 
+	 * @param acceleration
+	 *            The interleaved x, y, z acceleration of the recording.
+	 * @param timestamps
+	 *            The sensor timestamp of each sample in nanoseconds.
+	 * @param length
+	 *            The number of samples in the recording.
+	 * @param output
+	 *            The interleaved linear acceleration output.
+	 */
+	public void process(float[] acceleration, long[] timestamps, int length,
+			float[] output)
+	{
+		int warmUp = getWarmUp(timestamps, length);
+
+		// Keep chunks several times longer than the warm-up so the overlap
+		// stays a small fraction of the work.
+		int chunkSize = Math.max(Math.max(MIN_CHUNK_SIZE, warmUp * 8), length
+				/ (pool.getParallelism() * 4) + 1);
+
+		pool.invoke(new Chunk(acceleration, timestamps, output, 0, length,
+				warmUp, chunkSize));
+	}
+
+	/**
+	 * Get the number of warm-up samples each chunk needs for the recording.
+	 * 
+	 * @param timestamps
+	 *            The sensor timestamp of each sample in nanoseconds.
+	 * @param length
+	 *            The number of samples in the recording.
+	 * @return The number of warm-up samples.
+	 */
+	public int getWarmUp(long[] timestamps, int length)
+	{
+		int warmUp;
+
+		if (config.isGravityEstimatorKalman())
+		{
+			warmUp = settlingSamples(kalmanGain());
+		}
+		else
+		{
+			warmUp = Math.max(1, config.getSampleWindow());
+		}
+
+		if (config.isMedianFilterAccelerationActive())
+		{
+			warmUp += Math.max(1, config.getMedianFilterAccelerationWindow());
+		}
+
+		if (config.isMeanFilterAccelerationActive())
+		{
+			warmUp += Math.max(1, config.getMeanFilterAccelerationWindow());
+		}
+
+		if (config.isLpfAccelerationActive())
+		{
+			double alpha;
+
+			// Use the average sample period of the recording.
+			double dt = 0;
+
+			if (length > 1)
+			{
+				dt = (timestamps[length - 1] - timestamps[0]) / 1000000000.0
+						/ (length - 1);
+			}
+
+			if (!config.isLpfAccelerationStaticAlpha())
+			{
+				// Allow for the smoothed sample period to settle as well.
+				warmUp += settlingSamples(LPFWikipedia.DT_SMOOTHING);
+			}
+
+			if (config.isLpfAccelerationButterworth())
+			{
+				alpha = butterworthDecay(dt);
+			}
+			else if (config.isLpfAccelerationStaticAlpha())
+			{
+				alpha = config.getLpfAccelerationAlpha();
+			}
+			else
+			{
+				alpha = dt / (LPFWikipedia.TIME_CONSTANT + dt);
+			}
+
+			warmUp += settlingSamples(alpha);
+		}
+
+		return warmUp;
+	}
+
+	/**
+	 * Get the alpha of the single-pole filter that decays as slowly as the
+	 * slowest pole of the Butterworth low-pass filter, whose distance from the
+	 * imaginary axis is the cutoff times sin(pi / (2 * order)).
+	 */
+	private double butterworthDecay(double dt)
+	{
+		int order = Math.min(Math.max(config.getLpfAccelerationOrder(), 1),
+				LPFButterworth.MAX_ORDER);
+
+		// The cutoff in radians per sample.
+		double cutoff;
+
+		if (config.isLpfAccelerationStaticAlpha())
+		{
+			double alpha = config.getLpfAccelerationAlpha();
+
+			cutoff = (alpha < 1) ? alpha / (1 - alpha) : Math.PI;
+		}
+		else
+		{
+			cutoff = 2 * Math.PI * config.getLpfAccelerationCutoff() * dt;
+		}
+
+		return 1 - Math.exp(-cutoff * Math.sin(Math.PI / (2 * order)));
+	}
+
+	/**
+	 * Get the steady state gain of the Kalman gravity estimator while the
+	 * device is static, from the solution of the Riccati equation for the
+	 * predicted error variance, p^2 - q * p - q * r = 0.
+	 */
+	private double kalmanGain()
+	{
+		double q = config.getGravityProcessNoise();
+		double r = config.getGravityMeasurementNoise();
+
+		double p = (q + Math.sqrt(q * q + 4 * q * r)) / 2;
+
+		return p / (p + r);
+	}
+
+	/**
+	 * Get the number of samples a single-pole filter needs to settle.
+	 */
+	private static int settlingSamples(double alpha)
+	{
+		if (alpha >= 1)
+		{
+			return 1;
+		}
+
+		if (alpha <= 0)
+		{
+			return 0;
+		}
+
+		return (int) Math.ceil(Math.log(SETTLING_TOLERANCE)
+				/ Math.log(1 - alpha));
+	}
+
+	/**
+	 * A range of the recording, split in half until it is one chunk.
+	 */
+	private class Chunk extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private float[] acceleration;
+		private long[] timestamps;
+		private float[] output;
+
+		private int from;
+		private int to;
+		private int warmUp;
+		private int chunkSize;
+
+		Chunk(float[] acceleration, long[] timestamps, float[] output,
+				int from, int to, int warmUp, int chunkSize)
+		{
+			this.acceleration = acceleration;
+			this.timestamps = timestamps;
+			this.output = output;
+			this.from = from;
+			this.to = to;
+			this.warmUp = warmUp;
+			this.chunkSize = chunkSize;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (to - from > chunkSize)
+			{
+				int middle = (from + to) >>> 1;
+
+				invokeAll(new Chunk(acceleration, timestamps, output, from,
+						middle, warmUp, chunkSize), new Chunk(acceleration,
+						timestamps, output, middle, to, warmUp, chunkSize));
+
+				return;
+			}
+
+			boolean kalman = config.isGravityEstimatorKalman();
+
+			// The Kalman estimator only needs its filters to settle. Otherwise
+			// the overlap is twice the warm-up, so the second half can show a
+			// refresh of the gravity estimate by converged filters.
+			int start = Math.max(0, from - (kalman ? warmUp : 2 * warmUp));
+
+			SimpleLinearAcceleration simpleLinearAcceleration;
+
+			float[] warmUpOutput = null;
+
+			while (true)
+			{
+				simpleLinearAcceleration = new SimpleLinearAcceleration(config);
+
+				if (start == from)
+				{
+					break;
+				}
+
+				int length = from - start;
+
+				if (warmUpOutput == null || warmUpOutput.length < length * 3)
+				{
+					warmUpOutput = new float[length * 3];
+				}
+
+				simpleLinearAcceleration.addSamples(acceleration, timestamps,
+						start, length, warmUpOutput, 0);
+
+				if (start == 0 || kalman
+						|| isGravityRefreshed(warmUpOutput, warmUp, length))
+				{
+					break;
+				}
+
+				// Double the overlap to reach back to a static period.
+				start = Math.max(0, start - length);
+			}
+
+			simpleLinearAcceleration.addSamples(acceleration, timestamps, from,
+					to - from, output, from);
+		}
+
+		/**
+		 * Check if the gravity estimate was refreshed between two samples.
+		 */
+		private boolean isGravityRefreshed(float[] output, int from, int to)
+		{
+			for (int i = from * 3; i < to * 3; i += 3)
+			{
+				if (output[i] == 0 && output[i + 1] == 0 && output[i + 2] == 0)
+				{
+					return true;
+				}
+			}
+
+			return false;
+		}
+	}
+}
@@ -0,0 +1,435 @@
+package com.kircherelectronics.simplelinearacceleration.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import com.kircherelectronics.simplelinearacceleration.filter.LinearAccelerationConfig;
+import com.kircherelectronics.simplelinearacceleration.filter.SimpleLinearAcceleration;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * A command-line tool that reprocesses recorded .csv logs through the linear
+ * acceleration pipeline with a different filter configuration. Each log is
+ * streamed in batches through the batch entry point of
+ * SimpleLinearAcceleration and written to a new .csv or binary file next to
+ * it, or to an output directory. The throughput is reported in samples per
+ * second, and the exit status is 1 if any log could not be reprocessed.
+ * With --parallel each log is loaded into memory and split into chunks that
+ * run on a ForkJoinPool, see ParallelReprocessor.
+ *
+ * <pre>
+ * ReprocessLogs [--alpha a] [--butterworth order] [--cutoff hz] [--window n]
+ *               [--median n] [--threshold t] [--sample-window n] [--kalman]
+ *               [--format csv|binary] [--output dir] [--parallel]
+ *               log-or-directory...
+ * </pre>
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class ReprocessLogs
+{
+	// The number of samples processed per batch.
+	private static final int BATCH_SIZE = 8192;
+
+	private static final long NANOS_PER_MILLI = 1000000L;
+
+	private boolean binary = false;
+
+	private boolean parallel = false;
+
+	private File outputDir;
+
+	private LinearAccelerationConfig config = new LinearAccelerationConfig();
+
+	private List<File> logs = new ArrayList<File>();
+
+	private long[] timestamps = new long[BATCH_SIZE];
+	private long[] sensorTimestamps = new long[BATCH_SIZE];
+
+	private float[] acceleration = new float[BATCH_SIZE * 3];
+	private float[] linearAcceleration = new float[BATCH_SIZE * 3];
+
+	public static void main(String[] args)
+	{
+		ReprocessLogs reprocess = new ReprocessLogs();
+
+		if (!reprocess.parseArgs(args))
+		{
+			usage();
+
+			System.exit(1);
+		}
+
+		long samples = 0;
+		long start = System.nanoTime();
+
+		// The number of logs that could not be reprocessed.
+		int failed = 0;
+
+		for (File log : reprocess.logs)
+		{
+			try
+			{
+				samples += reprocess.reprocess(log);
+			}
+			catch (IOException e)
+			{
+				System.err.println(log + ": " + e.getMessage());
+
+				failed++;
+			}
+		}
+
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.printf("%d samples from %d logs in %.3f s (%.0f samples/s)%n",
+				samples, reprocess.logs.size() - failed, seconds, samples
+						/ seconds);
+
+		if (failed > 0)
+		{
+			System.err.println(failed + " of " + reprocess.logs.size()
+					+ " logs failed");
+
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Reprocess a single log.
+	 *
+	 * @param log
+	 *            The .csv log.
+	 * @return The number of samples reprocessed.
+	 * @throws IOException
+	 *             If the log cannot be read or the output cannot be written.
+	 */
+	private long reprocess(File log) throws IOException
+	{
+		if (parallel)
+		{
+			return reprocessParallel(log);
+		}
+
+		// Each log is an independent session with its own filter state.
+		SimpleLinearAcceleration simpleLinearAcceleration = new SimpleLinearAcceleration(
+				config);
+
+		CsvLogReader reader = new CsvLogReader(log);
+		SampleWriter writer = null;
+
+		long samples = 0;
+
+		try
+		{
+			writer = createWriter(log);
+
+			int length;
+
+			while ((length = reader.read(timestamps, acceleration, null,
+					BATCH_SIZE)) >= 0)
+			{
+				for (int i = 0; i < length; i++)
+				{
+					sensorTimestamps[i] = timestamps[i] * NANOS_PER_MILLI;
+				}
+
+				simpleLinearAcceleration.addSamples(acceleration,
+						sensorTimestamps, length, linearAcceleration);
+
+				writer.write(timestamps, acceleration, linearAcceleration,
+						length);
+
+				samples += length;
+			}
+		}
+		finally
+		{
+			reader.close();
+
+			if (writer != null)
+			{
+				writer.close();
+			}
+		}
+
+		return samples;
+	}
+
+	/**
+	 * Reprocess a single log in parallel chunks.
+	 *
+	 * @param log
+	 *            The .csv log.
+	 * @return The number of samples reprocessed.
+	 * @throws IOException
+	 *             If the log cannot be read or the output cannot be written.
+	 */
+	private long reprocessParallel(File log) throws IOException
+	{
+		long[] logTimestamps = new long[BATCH_SIZE];
+		float[] logAcceleration = new float[BATCH_SIZE * 3];
+
+		int samples = 0;
+
+		CsvLogReader reader = new CsvLogReader(log);
+
+		try
+		{
+			int length;
+
+			while ((length = reader.read(timestamps, acceleration, null,
+					BATCH_SIZE)) >= 0)
+			{
+				if (samples + length > logTimestamps.length)
+				{
+					int capacity = Math.max(samples + length,
+							logTimestamps.length * 2);
+
+					logTimestamps = Arrays.copyOf(logTimestamps, capacity);
+					logAcceleration = Arrays.copyOf(logAcceleration,
+							capacity * 3);
+				}
+
+				System.arraycopy(timestamps, 0, logTimestamps, samples, length);
+				System.arraycopy(acceleration, 0, logAcceleration, samples * 3,
+						length * 3);
+
+				samples += length;
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+
+		long[] logSensorTimestamps = new long[samples];
+
+		for (int i = 0; i < samples; i++)
+		{
+			logSensorTimestamps[i] = logTimestamps[i] * NANOS_PER_MILLI;
+		}
+
+		float[] logLinearAcceleration = new float[samples * 3];
+
+		new ParallelReprocessor(config, ForkJoinPool.commonPool()).process(
+				logAcceleration, logSensorTimestamps, samples,
+				logLinearAcceleration);
+
+		SampleWriter writer = createWriter(log);
+
+		try
+		{
+			writer.write(logTimestamps, logAcceleration,
+					logLinearAcceleration, samples);
+		}
+		finally
+		{
+			writer.close();
+		}
+
+		return samples;
+	}
+
+	/**
+	 * Create the writer for the reprocessed output of a log.
+	 */
+	private SampleWriter createWriter(File log) throws IOException
+	{
+		String name = log.getName();
+
+		if (name.toLowerCase().endsWith(".csv"))
+		{
+			name = name.substring(0, name.length() - 4);
+		}
+
+		File dir = (outputDir != null) ? outputDir : log.getAbsoluteFile()
+				.getParentFile();
+
+		if (binary)
+		{
+			return new BinarySampleWriter(new File(dir, name
+					+ "-reprocessed.bin"));
+		}
+
+		return new CsvSampleWriter(new File(dir, name + "-reprocessed.csv"));
+	}
+
+	/**
+	 * Parse the command line.
+	 *
+	 * @return True if the command line is valid.
+	 */
+	private boolean parseArgs(String[] args)
+	{
+		try
+		{
+			for (int i = 0; i < args.length; i++)
+			{
+				String arg = args[i];
+
+				if (arg.equals("--alpha"))
+				{
+					config.setLpfAccelerationActive(true);
+					config.setLpfAccelerationStaticAlpha(true);
+					config.setLpfAccelerationAlpha(Float.parseFloat(args[++i]));
+				}
+				else if (arg.equals("--butterworth"))
+				{
+					config.setLpfAccelerationActive(true);
+					config.setLpfAccelerationButterworth(true);
+					config.setLpfAccelerationOrder(Integer.parseInt(args[++i]));
+				}
+				else if (arg.equals("--cutoff"))
+				{
+					config.setLpfAccelerationCutoff(Float.parseFloat(args[++i]));
+				}
+				else if (arg.equals("--window"))
+				{
+					config.setMeanFilterAccelerationActive(true);
+					config.setMeanFilterAccelerationWindow(Integer
+							.parseInt(args[++i]));
+				}
+				else if (arg.equals("--median"))
+				{
+					config.setMedianFilterAccelerationActive(true);
+					config.setMedianFilterAccelerationWindow(Integer
+							.parseInt(args[++i]));
+				}
+				else if (arg.equals("--threshold"))
+				{
+					config.setVarianceThreshold(Double.parseDouble(args[++i]));
+				}
+				else if (arg.equals("--sample-window"))
+				{
+					config.setSampleWindow(Integer.parseInt(args[++i]));
+				}
+				else if (arg.equals("--kalman"))
+				{
+					config.setGravityEstimatorKalman(true);
+				}
+				else if (arg.equals("--format"))
+				{
+					String format = args[++i];
+
+					if (format.equals("binary"))
+					{
+						binary = true;
+					}
+					else if (!format.equals("csv"))
+					{
+						return false;
+					}
+				}
+				else if (arg.equals("--output"))
+				{
+					outputDir = new File(args[++i]);
+
+					if (!outputDir.isDirectory() && !outputDir.mkdirs())
+					{
+						System.err.println("Cannot create " + outputDir);
+
+						return false;
+					}
+				}
+				else if (arg.equals("--parallel"))
+				{
+					parallel = true;
+				}
+				else if (arg.startsWith("--"))
+				{
+					return false;
+				}
+				else
+				{
+					addLogs(new File(arg));
+				}
+			}
+		}
+		catch (ArrayIndexOutOfBoundsException e)
+		{
+			return false;
+		}
+		catch (NumberFormatException e)
+		{
+			return false;
+		}
+
+		return !logs.isEmpty();
+	}
+
+	/**
+	 * Add a log, or every .csv log in a directory, skipping output from
+	 * earlier runs.
+	 */
+	private void addLogs(File file)
+	{
+		if (file.isDirectory())
+		{
+			File[] files = file.listFiles();
+
+			if (files != null)
+			{
+				Arrays.sort(files);
+
+				for (File child : files)
+				{
+					String name = child.getName();
+
+					if (child.isDirectory()
+							|| (name.toLowerCase().endsWith(".csv") && !name
+									.endsWith("-reprocessed.csv")))
+					{
+						addLogs(child);
+					}
+				}
+			}
+		}
+		else
+		{
+			logs.add(file);
+		}
+	}
+
+	private static void usage()
+	{
+		System.err
+				.println("Usage: ReprocessLogs [--alpha a] [--butterworth order] [--cutoff hz]\n"
+						+ "                     [--window n] [--median n] [--threshold t]\n"
+						+ "                     [--sample-window n] [--kalman] [--format csv|binary]\n"
+						+ "                     [--output dir] [--parallel] log-or-directory...\n\n"
+						+ "  --alpha          enable the low-pass filter with a static alpha\n"
+						+ "  --butterworth    enable a Butterworth low-pass filter of the order\n"
+						+ "  --cutoff         cutoff of the Butterworth filter in Hz\n"
+						+ "  --window         enable the mean filter with a window of n samples\n"
+						+ "  --median         enable the median filter with a window of n samples\n"
+						+ "  --threshold      standard deviation below which gravity is updated\n"
+						+ "  --sample-window  samples in the standard deviation window\n"
+						+ "  --kalman         estimate gravity with the Kalman filter on every sample\n"
+						+ "  --format         output format, csv (default) or binary\n"
+						+ "  --output         directory for the output, defaults to the log's\n"
+						+ "  --parallel       split each log into chunks processed on all cores");
+	}
+}
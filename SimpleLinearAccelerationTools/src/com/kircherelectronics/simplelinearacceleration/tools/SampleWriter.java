@@ -0,0 +1,47 @@
+package com.kircherelectronics.simplelinearacceleration.tools;
+
+import java.io.IOException;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * An interface for classes that write reprocessed samples to a file.
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public interface SampleWriter
+{
+	/**
+	 * Write a batch of samples.
+	 * @param timestamps The timestamp of each sample in milliseconds.
+	 * @param acceleration The interleaved x, y, z acceleration.
+	 * @param linearAcceleration The interleaved x, y, z linear acceleration.
+	 * @param length The number of samples in the batch.
+	 * @throws IOException If the samples cannot be written.
+	 */
+	public void write(long[] timestamps, float[] acceleration,
+			float[] linearAcceleration, int length) throws IOException;
+
+	/**
+	 * Flush any buffered samples and close the file.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public void close() throws IOException;
+}
@@ -0,0 +1,89 @@
+package com.kircherelectronics.simplelinearacceleration.tools;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+
+import com.kircherelectronics.simplelinearacceleration.filter.Kernels;
+import com.kircherelectronics.simplelinearacceleration.filter.ScalarKernels;
+
+/*
+ * Simple Linear Acceleration
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * The pipeline kernels implemented with the incubating Vector API. The kernels
+ * use the preferred species of the platform and finish the tail of each range
+ * with the scalar kernels. Only lane-wise adds, subtracts, multiplies and
+ * divides are used, so the results are bit-identical to the scalar kernels.
+ * 
+ * This class is registered as a Kernels service and is only selected when the
+ * JVM runs with --add-modules jdk.incubator.vector; otherwise Kernels falls
+ * back to the scalar implementation.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class VectorKernels extends Kernels
+{
+	private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+	private final ScalarKernels scalar = new ScalarKernels();
+
+	@Override
+	public String getName()
+	{
+		return "vector-" + SPECIES.length() + "x32";
+	}
+
+	@Override
+	public void lowPass(float[] input, float[] output, float[] alpha,
+			int from, int to)
+	{
+		int i = from;
+		int bound = from + SPECIES.loopBound(to - from);
+
+		for (; i < bound; i += SPECIES.length())
+		{
+			FloatVector x = FloatVector.fromArray(SPECIES, input, i);
+			FloatVector y = FloatVector.fromArray(SPECIES, output, i);
+			FloatVector a = FloatVector.fromArray(SPECIES, alpha, i);
+
+			y.add(a.mul(x.sub(y))).intoArray(output, i);
+		}
+
+		scalar.lowPass(input, output, alpha, i, to);
+	}
+
+	@Override
+	public void subtractGravity(float[] acceleration, float[] components,
+			float[] output, float gravity, int from, int to)
+	{
+		int i = from;
+		int bound = from + SPECIES.loopBound(to - from);
+
+		for (; i < bound; i += SPECIES.length())
+		{
+			FloatVector a = FloatVector.fromArray(SPECIES, acceleration, i);
+			FloatVector g = FloatVector.fromArray(SPECIES, components, i);
+
+			a.sub(g).div(gravity).intoArray(output, i);
+		}
+
+		scalar.subtractGravity(acceleration, components, output, gravity, i,
+				to);
+	}
+}